@@ -1,18 +1,40 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 public class Converter {
   private final Set<String> varNames =
       Set.of("BUFLEN", "BUFOFS", "BUFPAG", "CLMWID", "DISKO", "EXTIO", "GETCMD", "KIMROM", "LINLEN", "NULCMD", "Q",
-          "RAMLOC", "ROMLOC", "ROMSW", "RORSW", "STKEND", "TIME");
+          "BLKOUT", "MEMTOP", "RAMLOC", "ROMLOC", "ROMSW", "RORSW", "STKEND", "TIME");
 
   // used to convert angled brackets in expressions to rounded brackets
   private final List<String> angledBracketsExpressions = List.of(
@@ -26,21 +48,28 @@ public class Converter {
       "ISVRET-1-<ISVRET-1>/256*256",
       "<<ISVRET-1>/256>");
 
-  // used to convert octal and decimal numbers in expressions
-  private final Map<String, String> expressions = Map.of(
-      "10*ADDPRC+30", "8*ADDPRC+24",
-      "8*ADDPRC+230", "8*ADDPRC+152",
-      "11+ADDPRC", "9+ADDPRC",
-      "3*ADDPRC+10", "3*ADDPRC+8",
-      "\"0\"+12", "\"0\"+10",
-      "^D256-7", "256-7",
-      "^D256-3-ADDPRC", "256-3-ADDPRC",
-      "^D256-3*ADDPRC-6", "256-3*ADDPRC-6",
-      "^D256-\"0\"", "256-\"0\"",
-      "RAMLOC/^D256", "RAMLOC/256");
-
   // store the value of symbols like "ROMSW=0"
-  private Map<String, String> symbols = new HashMap<>();
+  private Map<String, String> symbols = new ConcurrentHashMap<>(); // also read by the stages of a pipeline
+
+  // the conversion stages in order, the result of each stage only depends on its input lines
+  // except for convertSymbols which also collects the symbols for the following stages
+  public static final List<String> STAGES = List.of("convertClean", "replaceTextBlocks", "convertIf",
+      "convertMacros", "convertSymbols", "convertRepeat", "convertInstructions", "expandTabs");
+
+  // stages which must always run as they collect state for the following stages
+  public static final List<String> STATEFUL_STAGES = List.of("convertSymbols");
+
+  // stages which process the lines in order, with --pipeline they run concurrently and are connected
+  // by bounded queues, the last one streams into the output file
+  private static final List<String> STREAMING_STAGES =
+      List.of("convertMacros", "convertSymbols", "convertRepeat", "convertInstructions", "expandTabs");
+  private static final int QUEUE_SIZE = 256;
+  private static final String END = new String("END"); // end of the lines in a queue, compared by identity
+
+  // metrics of the stages which have been run as JSON objects and the counters of the current stage
+  private final List<String> metrics = new ArrayList<>();
+  private final Map<String, Integer> counters = new LinkedHashMap<>();
+  private int rules;
 
   private record Block(List<String> lines, String trailing) {
   }
@@ -48,29 +77,347 @@ public class Converter {
   private record Line(String label, String instruction, String comment, String line) {
   }
 
+  // the lines of a pipeline queue up to its END line
+  private static class QueueIterator implements Iterator<String> {
+    private final BlockingQueue<String> queue;
+    private String next;
+
+    QueueIterator(BlockingQueue<String> queue) {
+      this.queue = queue;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (next == null) {
+        try {
+          next = queue.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("pipeline stopped", e);
+        }
+      }
+      return next != END;
+    }
+
+    @Override
+    public String next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      String line = next;
+      next = null;
+      return line;
+    }
+  }
+
+  // pass the lines to the queue of the next stage
+  private static Consumer<String> toQueue(BlockingQueue<String> queue) {
+    return line -> {
+      try {
+        queue.put(line);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("pipeline stopped", e);
+      }
+    };
+  }
+
+  // result of converting one file in a batch
+  private record Result(Path inputFile, Path outputFile, int linesIn, int linesOut, Converter converter,
+      String error) {
+  }
+
   // args[0] - the original Microsoft m6502.asm file using MACOR-10 syntax
-  // args[1] - the converted files in cc65 syntax
+  //           or a directory or file name pattern (e.g. src/m6502-*.asm) to convert all matching files
+  // args[1] - the converted files in cc65 syntax, a directory for multiple files
+  // --metrics=<file> - optional, anywhere, write the metrics of each stage as JSON
+  // --pipeline - optional, anywhere, run the stages after convertIf concurrently
   public static void main(String... args) throws Exception {
-    if (args.length != 2) {
+    List<String> files = new ArrayList<>();
+    Path metricsFile = null;
+    boolean pipeline = false;
+    for (String arg : args) {
+      if (arg.startsWith("--metrics=")) {
+        metricsFile = Path.of(arg.substring(10));
+      } else if (arg.equals("--pipeline")) {
+        pipeline = true;
+      } else {
+        files.add(arg);
+      }
+    }
+    if (files.size() != 2) {
       throw new IllegalArgumentException("missing input and output filename");
     }
-    Path inputFile = Path.of(args[0]);
-    Path outputFile = Path.of(args[1]);
+    if (Files.isDirectory(Path.of(files.get(0))) || files.get(0).matches(".*[*?\\[{].*")) {
+      convertBatch(files.get(0), Path.of(files.get(1)), metricsFile, pipeline);
+      return;
+    }
+    Path inputFile = Path.of(files.get(0));
+    Path outputFile = Path.of(files.get(1));
 
     System.out.printf("Convert MACRO-10 source file to cc65 syntax in=%s out=%s\n", inputFile.getFileName(),
         outputFile.getFileName());
 
     Converter converter = new Converter();
+    converter.convertFile(inputFile, outputFile, pipeline);
+    if (metricsFile != null) {
+      Files.writeString(metricsFile, converter.getMetrics(inputFile, outputFile) + "\n");
+    }
+  }
+
+  // convert a file and get the number of lines written
+  private int convertFile(Path inputFile, Path outputFile, boolean pipeline) throws Exception {
     List<String> lines = Files.readAllLines(inputFile);
-    lines = converter.convertClean(lines);
-    lines = converter.replaceTextBlocks(lines);
-    lines = converter.convertUntilUnchanged(lines, converter::convertIf);
-    lines = converter.convertMacros(lines);
-    lines = converter.convertSymbols(lines);
-    lines = converter.convertRepeat(lines);
-    lines = converter.convertInstructions(lines);
-    lines = converter.expandTabs(lines);
+    for (String stage : STAGES) {
+      if (pipeline && stage.equals(STREAMING_STAGES.getFirst())) {
+        return convertPipelined(lines, outputFile);
+      }
+      lines = convert(stage, lines);
+    }
     Files.write(outputFile, lines);
+    return lines.size();
+  }
+
+  private interface Task {
+    void run() throws Exception;
+  }
+
+  // a task of the pipeline which adds the bytes allocated by its thread
+  private static Callable<Void> measure(AtomicLong allocated, Task task) {
+    return () -> {
+      long before = getAllocatedBytes();
+      try {
+        task.run();
+      } finally {
+        allocated.addAndGet(getAllocatedBytes() - before);
+      }
+      return null;
+    };
+  }
+
+  // run the streaming stages concurrently, the first failing stage stops the pipeline
+  private int convertPipelined(List<String> lines, Path outputFile) throws Exception {
+    List<BlockingQueue<String>> queues = new ArrayList<>();
+    for (int i = 0; i <= STREAMING_STAGES.size(); i++) {
+      queues.add(new ArrayBlockingQueue<>(QUEUE_SIZE));
+    }
+
+    // convertInstructions also looks up symbols which are defined further down, so a pre-pass collects
+    // all symbols first. It runs convertMacros a second time over the output of convertIf, which is held
+    // in memory until the pipeline has read it, its cost shows as the stage symbolPrePass in the metrics
+    counters.clear();
+    long allocatedPrePass = getAllocatedBytes();
+    long startPrePass = System.nanoTime();
+    convertMacros(lines.iterator(), this::convertSymbol);
+    addMetrics("symbolPrePass", System.nanoTime() - startPrePass, lines.size(), 0,
+        getAllocatedBytes() - allocatedPrePass);
+
+    counters.clear();
+    AtomicLong allocated = new AtomicLong();
+    long start = System.nanoTime();
+    int[] linesOut = {0};
+    ExecutorService pool = Executors.newFixedThreadPool(STREAMING_STAGES.size() + 2);
+    CompletionService<Void> tasks = new ExecutorCompletionService<>(pool);
+    try {
+      tasks.submit(measure(allocated, () -> {
+        Consumer<String> output = toQueue(queues.getFirst());
+        lines.forEach(output);
+        output.accept(END);
+      }));
+      for (int i = 0; i < STREAMING_STAGES.size(); i++) {
+        String stage = STREAMING_STAGES.get(i);
+        Iterator<String> input = new QueueIterator(queues.get(i));
+        Consumer<String> output = toQueue(queues.get(i + 1));
+        tasks.submit(measure(allocated, () -> {
+          switch (stage) {
+            case "convertMacros" -> convertMacros(input, output);
+            case "convertSymbols" -> convertSymbols(input, output);
+            case "convertRepeat" -> convertRepeat(input, output);
+            case "convertInstructions" -> convertInstructions(input, output);
+            case "expandTabs" -> expandTabs(input, output);
+            default -> throw new IllegalArgumentException("unknown stage " + stage);
+          }
+          output.accept(END);
+        }));
+      }
+      tasks.submit(measure(allocated, () -> {
+        try (BufferedWriter writer = Files.newBufferedWriter(outputFile)) {
+          Iterator<String> input = new QueueIterator(queues.getLast());
+          while (input.hasNext()) {
+            String line = input.next();
+            writer.write(line);
+            writer.newLine();
+            linesOut[0]++;
+          }
+        }
+      }));
+
+      for (int i = 0; i < STREAMING_STAGES.size() + 2; i++) {
+        try {
+          tasks.take().get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception cause) {
+            throw cause;
+          }
+          throw e;
+        }
+      }
+    } finally {
+      pool.shutdownNow(); // stop the other stages if one failed
+    }
+
+    // the stages ran at the same time, their counters and allocations are only known in total
+    addMetrics("pipeline", System.nanoTime() - start, lines.size(), linesOut[0], allocated.get());
+    return linesOut[0];
+  }
+
+  private String getMetrics(Path inputFile, Path outputFile) {
+    return String.format("""
+        {
+          "tool": "Converter",
+          "input": %s,
+          "output": %s,
+          "stages": [
+            %s
+          ]
+        }""", getJson(inputFile.toString()), getJson(outputFile.toString()), String.join(",\n    ", metrics));
+  }
+
+  // convert all files of a directory (*.asm) or matching a file name pattern on a bounded pool of threads,
+  // each file gets its own converter, a failing file is reported without stopping the others
+  private static void convertBatch(String input, Path outputDirectory, Path metricsFile, boolean pipeline)
+      throws Exception {
+    Path directory = Path.of(input);
+    String pattern = "*.asm";
+    if (!Files.isDirectory(directory)) {
+      pattern = directory.getFileName().toString();
+      directory = directory.getParent() == null ? Path.of(".") : directory.getParent();
+    }
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+    List<Path> inputFiles;
+    try (Stream<Path> list = Files.list(directory)) {
+      inputFiles = list.filter(file -> Files.isRegularFile(file) && matcher.matches(file.getFileName())).sorted()
+          .toList();
+    }
+    if (inputFiles.isEmpty()) {
+      throw new IllegalArgumentException("no files found for " + input);
+    }
+    Files.createDirectories(outputDirectory);
+    System.out.printf("Convert %d MACRO-10 source files to cc65 syntax in=%s out=%s\n", inputFiles.size(), input,
+        outputDirectory);
+
+    int threads = Math.min(inputFiles.size(), Runtime.getRuntime().availableProcessors());
+    List<Future<Result>> futures = new ArrayList<>();
+    try (ExecutorService pool = Executors.newFixedThreadPool(threads)) {
+      for (Path inputFile : inputFiles) {
+        String name = inputFile.getFileName().toString().replaceFirst("\\.[^.]*$", "") + ".s";
+        Path outputFile = outputDirectory.resolve(name);
+        futures.add(pool.submit(() -> {
+          Converter converter = new Converter();
+          int linesIn = 0;
+          try {
+            linesIn = Files.readAllLines(inputFile).size();
+            int linesOut = converter.convertFile(inputFile, outputFile, pipeline);
+            return new Result(inputFile, outputFile, linesIn, linesOut, converter, null);
+          } catch (Exception e) {
+            Files.deleteIfExists(outputFile); // do not leave the output of an earlier run
+            return new Result(inputFile, outputFile, linesIn, 0, converter, e.toString());
+          }
+        }));
+      }
+    }
+
+    int failures = 0;
+    List<String> metrics = new ArrayList<>();
+    System.out.printf("%-24s %-6s %8s %8s\n", "FILE", "RESULT", "IN", "OUT");
+    for (Future<Result> future : futures) {
+      Result result = future.get();
+      if (result.error() == null) {
+        System.out.printf("%-24s %-6s %8d %8d\n", result.inputFile().getFileName(), "OK", result.linesIn(),
+            result.linesOut());
+        metrics.add(result.converter().getMetrics(result.inputFile(), result.outputFile()));
+      } else {
+        System.out.printf("%-24s %-6s %8d %8s %s\n", result.inputFile().getFileName(), "FAILED", result.linesIn(),
+            "-", result.error());
+        failures++;
+      }
+    }
+    System.out.printf("%d converted, %d failed\n", futures.size() - failures, failures);
+
+    if (metricsFile != null) {
+      Files.writeString(metricsFile, "[\n" + String.join(",\n", metrics) + "\n]\n");
+    }
+    if (failures > 0) {
+      throw new IllegalStateException(failures + " of " + futures.size() + " files failed");
+    }
+  }
+
+  // run a single stage, the stages must run in the order of STAGES on the same converter
+  public List<String> convert(String stage, List<String> lines) {
+    counters.clear();
+    long allocated = getAllocatedBytes();
+    long start = System.nanoTime();
+    List<String> result = convertStage(stage, lines);
+    addMetrics(stage, System.nanoTime() - start, lines.size(), result.size(), getAllocatedBytes() - allocated);
+    return result;
+  }
+
+  // add the metrics of a stage with the current counters
+  private void addMetrics(String stage, long time, int linesIn, int linesOut, long allocated) {
+    List<String> counts = new ArrayList<>();
+    counters.forEach((name, count) -> counts.add(getJson(name) + ": " + count));
+    metrics.add(String.format(Locale.ROOT,
+        "{\"stage\": \"%s\", \"timeMs\": %.3f, \"linesIn\": %d, \"linesOut\": %d, \"allocatedBytes\": %d, "
+            + "\"counters\": {%s}}",
+        stage, time / 1e6, linesIn, linesOut, allocated, String.join(", ", counts)));
+  }
+
+  private synchronized void count(String name, int count) {
+    counters.merge(name, count, Integer::sum); // the stages of a pipeline count at the same time
+  }
+
+  // bytes allocated by this thread, -1 if the JVM does not support it
+  private static long getAllocatedBytes() {
+    if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean) {
+      return bean.getCurrentThreadAllocatedBytes();
+    }
+    return -1;
+  }
+
+  private static String getJson(String text) {
+    StringBuilder result = new StringBuilder("\"");
+    for (char c : text.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        result.append('\\').append(c);
+      } else if (c < ' ') {
+        result.append(String.format("\\u%04x", (int) c));
+      } else {
+        result.append(c);
+      }
+    }
+    return result.append('"').toString();
+  }
+
+  private List<String> convertStage(String stage, List<String> lines) {
+    List<String> input = new ArrayList<>(lines);
+    return switch (stage) {
+      case "convertClean" -> convertClean(input);
+      case "replaceTextBlocks" -> replaceTextBlocks(input);
+      case "convertIf" -> convertUntilUnchanged(input, this::convertIf);
+      case "convertMacros" -> convertLines(input, this::convertMacros);
+      case "convertSymbols" -> convertLines(input, this::convertSymbols);
+      case "convertRepeat" -> convertLines(input, this::convertRepeat);
+      case "convertInstructions" -> convertLines(input, this::convertInstructions);
+      case "expandTabs" -> convertLines(input, this::expandTabs);
+      default -> throw new IllegalArgumentException("unknown stage " + stage);
+    };
+  }
+
+  // run a stage which reads the lines in order on a list and collect its result
+  private static List<String> convertLines(List<String> lines, BiConsumer<Iterator<String>, Consumer<String>> stage) {
+    List<String> result = new ArrayList<>();
+    stage.accept(lines.iterator(), result::add);
+    return result;
   }
 
   // first cleanup of source
@@ -277,6 +624,2071 @@ public class Converter {
         \tLDX\tFACMOH
         """);
 
+    // insert new symbols for optional speed-ups (all disabled by default)
+    result = replaceTextBlock(result, """
+        LONGI==1\t\t\t;LONG INITIALIZATION SWITCH.
+        """, """
+        LONGI==1\t\t\t;LONG INITIALIZATION SWITCH.
+        CRNIDX .SET 0\t\t;INDEXED RESERVED WORD LOOKUP IN CRUNCH AND LIST
+        GRBCMP .SET 0\t\t;COMPACTING GARBAGE COLLECTION WITH BACK POINTERS
+        QSQMUL .SET 0\t\t;QUARTER-SQUARE TABLE MULTIPLICATION IN FMULT
+        FORINT .SET 0\t\t;16-BIT INTEGER ARITHMETIC IN NEXT
+        FOUTTB .SET 0\t\t;TABLE DRIVEN DIGITS IN FOUT
+        ARYCSH .SET 0\t\t;LAST ARRAY CACHE AND SHIFT MULTIPLY IN ISARY
+        BLTUNR .SET 0\t\t;UNROLLED WHOLE PAGE MOVES IN BLTU
+        TRNTAB .SET 0\t\t;PIECEWISE POLYNOMIAL TABLES IN SIN, ATN, LOG AND EXP
+        CRNSPC .SET 0\t\t;CRUNCH DROPS SPACES, LIST TYPES THEM AROUND WORDS
+        FINACC .SET 0\t\t;INTEGER DIGIT ACCUMULATOR IN FIN
+        """);
+
+    // fixed memory size, a non-zero MEMTOP is used as MEMSIZ instead of probing
+    // the RAM at start and the banner is not printed
+    result = replaceTextBlock(result, """
+        ROMLOC= ^O20000\t\t\t;ADDRESS OF START OF PURE SEGMENT.
+        """, """
+        ROMLOC= ^O20000\t\t\t;ADDRESS OF START OF PURE SEGMENT.
+        MEMTOP= 0\t\t\t;END OF RAM IF KNOWN, ELSE FOUND AT START.
+        """);
+
+    // block output, a non-zero BLKOUT is the address of a target routine which prints [A] characters
+    // at [INDEX] like OUTDO, STRPRT hands it whole strings instead of calling OUTDO for each character
+    result = replaceTextBlock(result, """
+        MEMTOP= 0\t\t\t;END OF RAM IF KNOWN, ELSE FOUND AT START.
+        """, """
+        MEMTOP= 0\t\t\t;END OF RAM IF KNOWN, ELSE FOUND AT START.
+        BLKOUT= 0\t\t\t;BLOCK OUTPUT ROUTINE OF THE TARGET, ELSE 0.
+        """);
+
+    result = replaceTextBlock(result, """
+        STRPRT: JSR\tFREFAC\t\t;RETURN TEMP POINTER.
+        """, """
+        STRPRT: JSR\tFREFAC\t\t;RETURN TEMP POINTER.
+        IFN\tBLKOUT,<
+        \tBIT\tCNTWFL\t\t;SUPPRESSED OUTPUT STILL GOES THROUGH OUTDO.
+        \tBPL\tSTRBLK>
+        """);
+
+    result = replaceTextBlock(result, """
+        \tJSR\tCRFIN\t\t;TYPE REST OF CARRIAGE RETURN.
+        \tJMP\tSTRPR2\t\t;AND ON AND ON.
+        """, """
+        \tJSR\tCRFIN\t\t;TYPE REST OF CARRIAGE RETURN.
+        \tJMP\tSTRPR2\t\t;AND ON AND ON.
+        IFN\tBLKOUT,<
+        STRBLK: JMP\tBLKOUT>\t\t;PRINT [A] CHARACTERS AT [INDEX].
+        """);
+
+    // PUSHF increments only the low byte of its return address,
+    // so keep the calls off the end of a page when an option moves the code
+    result = replaceTextBlock(result, """
+        ONEON:\tJSR\tSIGN\t\t;GET SIGN IN ACCA.
+        \tJSR\tPUSHF\t\t;PUSH FAC ONTO STACK (THRU A).
+        """, """
+        ONEON:\tJSR\tSIGN\t\t;GET SIGN IN ACCA.
+          .IF .LOBYTE(*+2) = 255
+        \tNOP\t\t\t;PUSHF CAN'T RETURN ACROSS A PAGE.
+          .ENDIF
+        \tJSR\tPUSHF\t\t;PUSH FAC ONTO STACK (THRU A).
+        """);
+
+    result = replaceTextBlock(result, """
+        \tLDA\tOPTAB+1,Y
+        \tPHA
+        \tJSR\tPUSHF1\t\t;SAVE FAC ON STACK UNPACKED.
+        """, """
+        \tLDA\tOPTAB+1,Y
+        \tPHA
+          .IF .LOBYTE(*+2) = 255
+        \tNOP\t\t\t;PUSHF CAN'T RETURN ACROSS A PAGE.
+          .ENDIF
+        \tJSR\tPUSHF1\t\t;SAVE FAC ON STACK UNPACKED.
+        """);
+
+    // revert the workaround for MACRO-10 doesn't like '<' and '>' in arguments
+    result = replaceTextBlock(result, """
+        \t190\t\t\t;A GREATER THAN SIGN
+        \tQ=Q+1
+        """, """
+        \tDCI">"\t\t\t;A GREATER THAN SIGN
+        """);
+
+    result = replaceTextBlock(result, """
+        \t188
+        \tQ=Q+1\t\t\t;A LESS THAN SIGN
+        """, """
+        \tDCI"<"\t\t\t;A LESS THAN SIGN
+        """);
+
+    // CRUNCH only tries reserved words starting with the same character
+    result = replaceTextBlock(result, """
+        MUSTCR: STY\tBUFPTR\t\t;SAVE BUFFER POINTER.
+        \tLDYI\t0\t\t;LOAD RESLST POINTER.
+        \tSTY\tCOUNT\t\t;ALSO CLEAR COUNT.
+        \tDEY
+        \tSTX\tTXTPTR\t\t;SAVE TEXT POINTER FOR LATER USE.
+        \tDEX
+        """, """
+        MUSTCR: STY\tBUFPTR\t\t;SAVE BUFFER POINTER.
+        IFE\tCRNIDX,<
+        \tLDYI\t0\t\t;LOAD RESLST POINTER.
+        \tSTY\tCOUNT\t\t;ALSO CLEAR COUNT.
+        \tDEY
+        \tSTX\tTXTPTR\t\t;SAVE TEXT POINTER FOR LATER USE.
+        \tDEX>
+        IFN\tCRNIDX,<
+        \tSTX\tTXTPTR\t\t;SAVE TEXT POINTER FOR LATER USE.
+        \tSEC
+        \tSBCI\t" "\t\t;ONLY " " THRU "_" ARE IN RESIDX.
+        \tCMPI\t64
+        \tBCS\tRESNON\t\t;CAN'T START A RESERVED WORD.
+        \tTAY
+        \tLDA\tRESIDX,Y\t;GET FIRST WORD STARTING WITH IT.
+        \tBMI\tRESNON\t\t;THERE IS NONE.
+        RESNEW: STA\tCOUNT\t\t;SAVE TOKEN OF THE WORD TO TRY.
+        \tTAY
+        \tLDA\tRESOFS,Y\t;GET ITS RESLST POINTER.
+        \tTAY
+        \tDEX>
+        """);
+
+    result = replaceTextBlock(result, """
+        NTHIS:\tLDX\tTXTPTR\t\t;RESTORE TEXT POINTER.
+        \tINC\tCOUNT\t\t;INCREMENT RES WORD COUNT.
+        NTHIS1: INY
+        \tLDA\tRESLST-1,Y\t;GET RES CHARACTER.
+        \tBPL\tNTHIS1\t\t;END OF ENTRY?
+        \tLDA\tRESLST,Y\t;YES. IS IT THE END?
+        \tBNE\tRESCON\t\t;NO, TRY THE NEXT WORD.
+        """, """
+        NTHIS:\tLDX\tTXTPTR\t\t;RESTORE TEXT POINTER.
+        IFE\tCRNIDX,<
+        \tINC\tCOUNT\t\t;INCREMENT RES WORD COUNT.
+        NTHIS1: INY
+        \tLDA\tRESLST-1,Y\t;GET RES CHARACTER.
+        \tBPL\tNTHIS1\t\t;END OF ENTRY?
+        \tLDA\tRESLST,Y\t;YES. IS IT THE END?
+        \tBNE\tRESCON>\t\t;NO, TRY THE NEXT WORD.
+        IFN\tCRNIDX,<
+        \tLDY\tCOUNT
+        \tLDA\tRESNXT,Y\t;GET NEXT WORD WITH THE SAME FIRST CHR.
+        \tBPL\tRESNEW\t\t;TRY IT IF THERE IS ONE.
+        RESNON:>
+        """);
+
+    // LIST gets the reserved word of a token without scanning RESLST
+    result = replaceTextBlock(result, """
+        \tSEC
+        \tSBCI\t127\t\t;GET RID OF SIGN BIT AND ADD 1.
+        \tTAX\t\t\t;MAKE IT A COUNTER.
+        \tSTY\tLSTPNT\t\t;SAVE POINTER TO LINE.
+        \tLDYI\t255\t\t;LOOK AT RES'D WORD LIST.
+        RESRCH: DEX\t\t\t;IS THIS THE RES'D WORD?
+        \tBEQ\tPRIT3\t\t;YES, GO TOSS IT UP..
+        RESCR1: INY
+        \tLDA\tRESLST,Y\t;END OF ENTRY?
+        \tBPL\tRESCR1\t\t;NO, CONTINUE PASSING.
+        \tBMI\tRESRCH
+        """, """
+        IFE\tCRNIDX,<
+        \tSEC
+        \tSBCI\t127\t\t;GET RID OF SIGN BIT AND ADD 1.
+        \tTAX\t\t\t;MAKE IT A COUNTER.
+        \tSTY\tLSTPNT\t\t;SAVE POINTER TO LINE.
+        \tLDYI\t255\t\t;LOOK AT RES'D WORD LIST.
+        RESRCH: DEX\t\t\t;IS THIS THE RES'D WORD?
+        \tBEQ\tPRIT3\t\t;YES, GO TOSS IT UP..
+        RESCR1: INY
+        \tLDA\tRESLST,Y\t;END OF ENTRY?
+        \tBPL\tRESCR1\t\t;NO, CONTINUE PASSING.
+        \tBMI\tRESRCH>
+        IFN\tCRNIDX,<
+        \tTAX
+        \tSTY\tLSTPNT\t\t;SAVE POINTER TO LINE.
+        \tLDY\tRESOFS-128,X>\t;GET RESLST POINTER OF THE TOKEN.
+        """);
+
+    // CRUNCH drops the spaces outside of strings, REM and DATA, so CHRGET does not loop over them
+    // when it runs the program, LIST types a space where a word would run into its neighbours
+    result = replaceTextBlock(result, """
+        CMPSPC: CMPI\t" "\t\t;IS IT A SPACE TO SAVE?
+        \tBEQ\tSTUFFH\t\t;YES, GO SAVE IT.
+        """, """
+        CMPSPC: CMPI\t" "\t\t;IS IT A SPACE TO SAVE?
+        IFE\tCRNSPC,<
+        \tBEQ\tSTUFFH>\t\t;YES, GO SAVE IT.
+        IFN\tCRNSPC,<
+        \tBNE\tCMPNSP\t\t;NO, LOOK AT IT.
+        \tBIT\tDORES\t\t;INSIDE "DATA"?
+        \tBVS\tSTUFFH\t\t;YES, SAVE IT.
+        \tINX\t\t\t;SKIP THE SPACE.
+        \tBNE\tKLOOP\t\t;ALWAYS GOES.
+        CMPNSP:>
+        """);
+
+    result = replaceTextBlock(result, """
+        PRIT3:\tINY
+        \tLDA\tRESLST,Y
+        \tBMI\tPRIT4\t\t;END OF RESERVED WORD.
+        \tJSR\tOUTDO\t\t;PRINT IT.
+        \tBNE\tPRIT3\t\t;END OF ENTRY? NO, TYPE REST.
+        """, """
+        IFE\tCRNSPC,<
+        PRIT3:\tINY
+        \tLDA\tRESLST,Y
+        \tBMI\tPRIT4\t\t;END OF RESERVED WORD.
+        \tJSR\tOUTDO\t\t;PRINT IT.
+        \tBNE\tPRIT3>\t\t;END OF ENTRY? NO, TYPE REST.
+        IFN\tCRNSPC,<
+        PRIT3:\tLDA\tRESLST+1,Y\t;DOES THE WORD START WITH A LETTER?
+        \tANDI\t127
+        \tCMPI\t"A"
+        \tBCC\tPRIT5\t\t;NO, NO SPACE IN FRONT OF IT.
+        \tTYA
+        \tTAX\t\t\t;SAVE RESLST POINTER.
+        \tLDY\tLSTPNT
+        \tCPYI\t5\t\t;FIRST CHARACTER OF THE LINE?
+        \tBCC\tPRIT6\t\t;YES, THE NUMBER HAS ITS SPACE.
+        \tDEY
+        \tLDADY\tLOWTR\t\t;GET THE CHARACTER IN FRONT OF IT.
+        \tJSR\tLSTJON\t\t;WOULD IT RUN INTO THE WORD?
+        \tBCC\tPRIT6\t\t;NO.
+        \tLDAI\t" "
+        \tJSR\tOUTDO\t\t;YES, TYPE A SPACE.
+        PRIT6:\tTXA
+        \tTAY\t\t\t;GET RESLST POINTER BACK.
+        PRIT5:\tINY
+        \tLDA\tRESLST,Y
+        \tBMI\tPRIT7\t\t;END OF RESERVED WORD.
+        \tJSR\tOUTDO\t\t;PRINT IT.
+        \tBNE\tPRIT5\t\t;END OF ENTRY? NO, TYPE REST.
+        PRIT7:\tANDI\t127
+        \tCMPI\t"A"\t\t;DOES THE WORD END WITH A LETTER?
+        \tBCC\tPRIT4\t\t;NO, TYPE IT AS USUAL.
+        \tJSR\tOUTDO
+        \tLDY\tLSTPNT
+        \tINY
+        \tLDADY\tLOWTR\t\t;GET THE CHARACTER AFTER IT.
+        \tBMI\tPRIT8\t\t;ANOTHER WORD, ALWAYS SEPARATE IT.
+        \tJSR\tLSTJON\t\t;WOULD IT RUN INTO THE WORD?
+        \tBCC\tPRIT9\t\t;NO.
+        PRIT8:\tLDAI\t" "
+        \tJSR\tOUTDO\t\t;TYPE A SPACE.
+        PRIT9:\tLDY\tLSTPNT\t\t;GET POINTER TO LINE BACK.
+        \tJMP\tPLOOP1
+        ;
+        ; LSTJON SETS CARRY IF THE CHARACTER IN ACCA RUNS INTO A WORD:
+        ; LETTERS, DIGITS, QUOTES, "$", "%" AND ")".
+        ;
+        LSTJON: CMPI\t128
+        \tBCS\tLSTJNO\t\t;A TOKEN OR PI.
+        \tCMPI\t"A"
+        \tBCS\tLSTJRT\t\t;A LETTER.
+        \tCMPI\t":"
+        \tBCS\tLSTJNO
+        \tCMPI\t"0"
+        \tBCS\tLSTJRT\t\t;A DIGIT.
+        \tCMPI\t")"
+        \tBEQ\tLSTJRT
+        \tCMPI\t"&"
+        \tBCS\tLSTJNO
+        \tCMPI\t34\t\t;QUOTE, "#", "$" OR "%".
+        \tRTS
+        LSTJNO: CLC
+        LSTJRT: RTS>
+        """);
+
+    // add index tables for CRUNCH and LIST, built from the symbols defined by DCI
+    result = replaceTextBlock(result, """
+        \t0\t\t\t;MARKS END OF RESERVED WORD LIST
+        """, """
+        \t0\t\t\t;MARKS END OF RESERVED WORD LIST
+        .IF CRNIDX<>0
+        ;
+        ; RESOFS HOLDS THE RESLST POINTER (OFFSET MINUS ONE) OF EVERY TOKEN.
+        ; RESNXT HOLDS THE NEXT TOKEN STARTING WITH THE SAME CHARACTER
+        ; AND RESIDX THE FIRST TOKEN FOR EACH CHARACTER FROM " " THRU "_".
+        ; TOKENS ARE STORED WITHOUT THE MSB, 255 MARKS THE END OF A CHAIN.
+        ;
+        RESOFS:
+        .REPEAT GOTK-127,I
+          .BYTE .IDENT(.SPRINTF("RESO%d", I))
+        .ENDREP
+        RESNXT:
+        .REPEAT GOTK-127,I
+          RESTMP .SET 255
+          .REPEAT GOTK-128-I,J
+            .IF .IDENT(.SPRINTF("RESC%d", GOTK-128-J)) = .IDENT(.SPRINTF("RESC%d", I))
+              RESTMP .SET GOTK-128-J
+            .ENDIF
+          .ENDREP
+          .BYTE RESTMP
+        .ENDREP
+        RESIDX:
+        .REPEAT 64,I
+          RESTMP .SET 255
+          .REPEAT GOTK-127,J
+            .IF .IDENT(.SPRINTF("RESC%d", GOTK-128-J)) = ' '+I
+              RESTMP .SET GOTK-128-J
+            .ENDIF
+          .ENDREP
+          .BYTE RESTMP
+        .ENDREP
+        .ENDIF
+        """);
+
+    // compacting garbage collection, every string is followed by its length and 255.
+    // the collection stores a pointer to the descriptor there instead and moves
+    // all strings in use to the top with a single pass through string space
+    result = replaceTextBlock(result, """
+        \tBCS\tTRYAG3
+        \tDEY
+        TRYAG3: CPY\tSTREND+1\t;COMPARE HIGH ORDERS.
+        """, """
+        \tBCS\tTRYAG3
+        \tDEY
+        IFN\tGRBCMP,<
+        TRYAG3: SEC
+        \tSBCI\t2\t\t;ROOM FOR THE BACK POINTER.
+        \tBCS\tTRYAG4
+        \tDEY
+        TRYAG4: CPY\tSTREND+1>\t;COMPARE HIGH ORDERS.
+        IFE\tGRBCMP,<
+        TRYAG3: CPY\tSTREND+1>\t;COMPARE HIGH ORDERS.
+        """);
+
+    result = replaceTextBlock(result, """
+        \tSTWD\tFRESPC\t\t;PUT IT THERE OLD MAN.
+        \tTAX\t\t\t;PRESERVE A IN X.
+        \tPLA\t\t\t;GET COUNT BACK IN ACCA.
+        \tRTS\t\t\t;ALL DONE.
+        """, """
+        \tSTWD\tFRESPC\t\t;PUT IT THERE OLD MAN.
+        IFE\tGRBCMP,<
+        \tTAX\t\t\t;PRESERVE A IN X.
+        \tPLA>\t\t\t;GET COUNT BACK IN ACCA.
+        IFN\tGRBCMP,<
+        \tPLA\t\t\t;GET COUNT BACK IN ACCA.
+        \tTAY
+        \tSTADY\tFRETOP\t\t;MARK THE STRING AS NOT IN USE.
+        \tINY
+        \tPHA
+        \tLDAI\t255
+        \tSTADY\tFRETOP
+        \tPLA
+        \tLDXY\tFRETOP>
+        \tRTS\t\t\t;ALL DONE.
+        """);
+
+    result = replaceTextBlock(result, """
+        \tJSR\tOUTDO>
+        \tLDX\tMEMSIZ
+        \tLDA\tMEMSIZ+1
+        FNDVAR: STX\tFRETOP\t\t;LIKE SO.
+        \tSTA\tFRETOP+1
+        \tLDYI\t0
+        \tSTY\tGRBPNT+1
+        \tSTY\tGRBPNT\t\t;BOTH BYTES SET TO ZERO (FIX BUG)
+        \tLDWX\tSTREND
+        \tSTWX\tGRBTOP
+        """, """
+        \tJSR\tOUTDO>
+        IFE\tGRBCMP,<
+        \tLDX\tMEMSIZ
+        \tLDA\tMEMSIZ+1
+        FNDVAR: STX\tFRETOP\t\t;LIKE SO.
+        \tSTA\tFRETOP+1
+        \tLDYI\t0
+        \tSTY\tGRBPNT+1
+        \tSTY\tGRBPNT\t\t;BOTH BYTES SET TO ZERO (FIX BUG)
+        \tLDWX\tSTREND
+        \tSTWX\tGRBTOP>
+        IFN\tGRBCMP,<
+        \tLDYI\t0>\t\t;FIRST STORE THE BACK POINTERS.
+        """);
+
+    result = replaceTextBlock(result, """
+        DVAR:\tLDADY\tINDEX1\t\t;IS LENGTH=0?
+        \tBEQ\tDVARTS\t\t;YES, RETURN.
+        \tINY
+        \tLDADY\tINDEX1\t\t;GET LOW(ADR).
+        \tTAX
+        \tINY
+        \tLDADY\tINDEX1
+        \tCMP\tFRETOP+1\t;COMPARE HIGHS.
+        \tBCC\tDVAR2\t\t;IF THIS STRING'S PNTR .GE. [FRETOP]
+        \tBNE\tDVARTS\t\t;NO NEED TO MESS WITH IT FURTHER.
+        \tCPX\tFRETOP\t\t;COMPARE LOWS.
+        \tBCS\tDVARTS
+        """, """
+        DVAR:\tLDADY\tINDEX1\t\t;IS LENGTH=0?
+        \tBEQ\tDVARTS\t\t;YES, RETURN.
+        IFN\tGRBCMP,<
+        \tSTA\tSIZE\t\t;SAVE THE LENGTH.
+        \tTYA
+        \tCLC
+        \tADC\tINDEX1
+        \tSTA\tGRBPNT\t\t;[GRBPNT]=ADDR OF THE DESCRIPTOR.
+        \tLDA\tINDEX1+1
+        \tADCI\t0
+        \tSTA\tGRBPNT+1>
+        \tINY
+        \tLDADY\tINDEX1\t\t;GET LOW(ADR).
+        \tTAX
+        \tINY
+        \tLDADY\tINDEX1
+        \tCMP\tFRETOP+1\t;COMPARE HIGHS.
+        IFN\tGRBCMP,<
+        \tBCC\tDVARTS\t\t;NOT IN STRING SPACE.
+        \tBNE\tGRBMRK
+        \tCPX\tFRETOP\t\t;COMPARE LOWS.
+        \tBCC\tDVARTS
+        GRBMRK: STA\tGRBTOP+1
+        \tTXA
+        \tCLC
+        \tADC\tSIZE\t\t;POINT BEHIND THE STRING.
+        \tSTA\tGRBTOP
+        \tBCC\tGRBMK1
+        \tINC\tGRBTOP+1
+        GRBMK1: LDYI\t0
+        \tLDA\tGRBPNT
+        \tSTADY\tGRBTOP\t\t;STORE THE BACK POINTER.
+        \tINY
+        \tLDA\tGRBPNT+1
+        \tSTADY\tGRBTOP
+        \tJMP\tDVARTS>\t\t;DESCRIPTORS MAY BE ON PAGE ZERO.
+        IFE\tGRBCMP,<
+        \tBCC\tDVAR2\t\t;IF THIS STRING'S PNTR .GE. [FRETOP]
+        \tBNE\tDVARTS\t\t;NO NEED TO MESS WITH IT FURTHER.
+        \tCPX\tFRETOP\t\t;COMPARE LOWS.
+        \tBCS\tDVARTS>
+        """);
+
+    result = replaceTextBlock(result, """
+        GRBPAS: LDA\tGRBPNT+1\t;VARIABLE POINTER.
+        """, """
+        IFN\tGRBCMP,<
+        ;
+        ; NOW MOVE THE STRINGS FROM THE TOP DOWN. [GRBPNT] IS THE
+        ; END OF THE NEXT STRING AND [HIGHDS] THE END OF THE FREE
+        ; SPACE ABOVE IT. A STRING IN USE HAS THE POINTER TO ITS
+        ; DESCRIPTOR IN THE TWO BYTES FOLLOWING IT, ANY OTHER
+        ; STRING HAS ITS LENGTH AND 255.
+        ;
+        GRBPAS: LDWX\tMEMSIZ\t\t;START FROM THE TOP.
+        \tSTWX\tHIGHDS
+        GRBNXT: STWX\tGRBPNT
+        \tCMP\tFRETOP\t\t;REACHED THE BOTTOM?
+        \tBNE\tGRBSTR
+        \tCPX\tFRETOP+1
+        \tBNE\tGRBSTR
+        \tLDWX\tHIGHDS\t\t;YES, ALL DONE.
+        \tSTWX\tFRETOP
+        \tRTS
+        GRBSTR: SEC
+        \tSBCI\t2\t\t;POINT TO THE BACK POINTER.
+        \tSTA\tLOWTR
+        \tBCS\tGRBST1
+        \tDEX
+        GRBST1: STX\tLOWTR+1
+        \tLDYI\t1
+        \tLDADY\tLOWTR
+        \tCMPI\t255\t\t;IS THE STRING IN USE?
+        \tBNE\tGRBUSE\t\t;YES.
+        \tJSR\tGRBBEG\t\t;NO, JUST SKIP IT.
+        \tJMP\tGRBNXT
+        GRBUSE: STA\tINDEX1+1
+        \tDEY
+        \tLDADY\tLOWTR
+        \tSTA\tINDEX1\t\t;[INDEX1]=ADDR OF THE DESCRIPTOR.
+        \tLDADY\tINDEX1\t\t;GET THE LENGTH.
+        \tSTADY\tLOWTR\t\t;MARK THE STRING AS NOT IN USE AGAIN.
+        \tINY
+        \tLDAI\t255
+        \tSTADY\tLOWTR
+        \tJSR\tGRBBEG\t\t;[LOWTR]=START OF THE STRING.
+        \tLDA\tHIGHDS
+        \tSEC
+        \tSBC\tGRBPNT
+        \tSTA\tHIGHTR
+        \tLDA\tHIGHDS+1
+        \tSBC\tGRBPNT+1
+        \tSTA\tHIGHTR+1
+        \tORA\tHIGHTR\t\t;DOES THE STRING HAVE TO MOVE?
+        \tBEQ\tGRBSKP\t\t;NO.
+        \tLDYI\t1
+        \tLDA\tHIGHTR
+        \tCLC
+        \tADC\tLOWTR
+        \tSTADY\tINDEX1\t\t;CHANGE ADDR OF STRING IN VAR.
+        \tINY
+        \tLDA\tHIGHTR+1
+        \tADC\tLOWTR+1
+        \tSTADY\tINDEX1
+        \tLDWX\tGRBPNT
+        \tSTWX\tHIGHTR
+        \tJSR\tBLTUC\t\t;MOVE IT WITH ITS BACK POINTER.
+        \tINC\tHIGHDS+1\t;[HIGHDS]=START OF RESULT.
+        \tLDWX\tLOWTR\t\t;CONTINUE BELOW THE OLD STRING.
+        \tJMP\tGRBNXT
+        GRBSKP: LDWX\tLOWTR
+        \tSTWX\tHIGHDS
+        \tJMP\tGRBNXT
+        GRBBEG: LDYI\t0\t\t;SUBTRACT THE LENGTH FROM [LOWTR].
+        \tLDADY\tLOWTR
+        \tEORI\t255
+        \tSEC
+        \tADC\tLOWTR
+        \tSTA\tLOWTR
+        \tLDX\tLOWTR+1
+        \tBCS\tGRBBG1
+        \tDEX
+        \tSTX\tLOWTR+1
+        GRBBG1: RTS>
+        IFE\tGRBCMP,<
+        GRBPAS: LDA\tGRBPNT+1\t;VARIABLE POINTER.
+        """);
+
+    result = replaceTextBlock(result, """
+        \tJMP\tFNDVAR\t\t;GO TO FNDVAR WITH SOMETHING FOR
+        \t\t\t\t;[FRETOP].
+        """, """
+        \tJMP\tFNDVAR>\t\t;GO TO FNDVAR WITH SOMETHING FOR
+        \t\t\t\t;[FRETOP].
+        """);
+
+    result = replaceTextBlock(result, """
+        \tPHA
+        \tCLC
+        \tADC\tFRETOP
+        \tSTA\tFRETOP
+        \tBCC\tFREPLA
+        \tINC\tFRETOP+1
+        FREPLA: PLA\t\t\t;GET COUNT BACK.
+        """, """
+        \tPHA
+        IFE\tGRBCMP,<
+        \tCLC
+        \tADC\tFRETOP
+        \tSTA\tFRETOP
+        \tBCC\tFREPLA
+        \tINC\tFRETOP+1>
+        IFN\tGRBCMP,<
+        \tSEC\t\t\t;ALSO FREE THE BACK POINTER.
+        \tADC\tFRETOP
+        \tSTA\tFRETOP
+        \tBCC\tFREPL1
+        \tINC\tFRETOP+1
+        FREPL1: INC\tFRETOP
+        \tBNE\tFREPLA
+        \tINC\tFRETOP+1>
+        FREPLA: PLA\t\t\t;GET COUNT BACK.
+        """);
+
+    // quarter-square multiplication, FMULT gets the product of a byte of the FAC
+    // and a byte of ARG from two table lookups using x*y=(x+y)^2/4-(x-y)^2/4
+    result = replaceTextBlock(result, """
+        \tJSR\tMULDIV\t\t;FIX UP THE EXPONENTS.
+        \tLDAI\t0\t\t;TO CLEAR RESULT.
+        """, """
+        \tJSR\tMULDIV\t\t;FIX UP THE EXPONENTS.
+        IFN\tQSQMUL,<
+        \tLDA\tDEFPNT\t\t;SAVE TEMPF3, IT HOLDS TWO TABLE POINTERS.
+        \tPHA
+        \tLDA\tDEFPNT+1
+        \tPHA
+        \tLDA\tDSCPNT
+        \tPHA
+        \tLDA\tDSCPNT+1
+        \tPHA
+        \tLDAI\tQSQ1L/^D256\t;SET UP THE HIGH ORDERS OF THE POINTERS.
+        \tSTA\tINDEX1+1
+        \tLDAI\tQSQ2L/^D256
+        \tSTA\tINDEX2+1
+        \tLDAI\tQSQ1H/^D256
+        \tSTA\tDEFPNT+1
+        \tLDAI\tQSQ2H/^D256
+        \tSTA\tDSCPNT+1>
+        \tLDAI\t0\t\t;TO CLEAR RESULT.
+        """);
+
+    result = replaceTextBlock(result, """
+        \tJSR\tMLTPL1
+        \tJMP\tMOVFR\t\t;MOVE RESULT INTO FAC,
+        """, """
+        \tJSR\tMLTPL1
+        IFN\tQSQMUL,<
+        \tPLA\t\t\t;RESTORE TEMPF3.
+        \tSTA\tDSCPNT+1
+        \tPLA
+        \tSTA\tDSCPNT
+        \tPLA
+        \tSTA\tDEFPNT+1
+        \tPLA
+        \tSTA\tDEFPNT>
+        \tJMP\tMOVFR\t\t;MOVE RESULT INTO FAC,
+        """);
+
+    result = replaceTextBlock(result, """
+        MLTPL1: LSR\tA
+        """, """
+        IFN\tQSQMUL,<
+        MLTPL1: STA\tINDEX1\t\t;POINT TO THE SQUARES OF [ACCA]+X
+        \tSTA\tDEFPNT
+        \tEORI\t377
+        \tSTA\tINDEX2\t\t;AND OF X-[ACCA].
+        \tSTA\tDSCPNT
+        \tLDY\tARGLO\t\t;[Y,X]=ARGLO*[ACCA].
+        \tLDADY\tINDEX1
+        \tSEC
+        \tSBCDY\tINDEX2
+        \tTAX
+        \tLDADY\tDEFPNT
+        \tSBCDY\tDSCPNT
+        \tTAY
+        \tTXA
+        \tCLC
+        \tADC\tRESLO\t\t;ADD THE PRODUCTS TO THE RESULT
+        \tSTA\tFACOV\t\t;AND SHIFT IT RIGHT 1 BYTE.
+        \tTYA
+        \tADC\tRESMO
+        \tSTA\tRESLO
+        \tPHP
+        IFN\tADDPRC,<
+        \tLDY\tARGMOH\t\t;[Y,X]=ARGMOH*[ACCA].
+        \tLDADY\tINDEX1
+        \tSEC
+        \tSBCDY\tINDEX2
+        \tTAX
+        \tLDADY\tDEFPNT
+        \tSBCDY\tDSCPNT
+        \tTAY
+        \tPLP
+        \tTXA
+        \tADC\tRESMOH
+        \tSTA\tRESMO
+        \tTYA
+        \tADC\tRESHO
+        \tSTA\tRESMOH>
+        IFE\tADDPRC,<
+        \tLDY\tARGHO\t\t;[Y,X]=ARGHO*[ACCA].
+        \tLDADY\tINDEX1
+        \tSEC
+        \tSBCDY\tINDEX2
+        \tTAX
+        \tLDADY\tDEFPNT
+        \tSBCDY\tDSCPNT
+        \tTAY
+        \tPLP
+        \tTXA
+        \tADC\tRESHO
+        \tSTA\tRESMO
+        \tTYA>
+        \tLDAI\t0
+        \tADCI\t0
+        \tSTA\tRESHO
+        \tLDY\tARGMO\t\t;[Y,X]=ARGMO*[ACCA].
+        \tLDADY\tINDEX1
+        \tSEC
+        \tSBCDY\tINDEX2
+        \tTAX
+        \tLDADY\tDEFPNT
+        \tSBCDY\tDSCPNT
+        \tTAY
+        \tTXA
+        \tCLC
+        \tADC\tRESLO
+        \tSTA\tRESLO
+        \tTYA
+        \tADC\tRESMO
+        \tSTA\tRESMO
+        IFN\tADDPRC,<
+        \tPHP
+        \tLDY\tARGHO\t\t;[Y,X]=ARGHO*[ACCA].
+        \tLDADY\tINDEX1
+        \tSEC
+        \tSBCDY\tINDEX2
+        \tTAX
+        \tLDADY\tDEFPNT
+        \tSBCDY\tDSCPNT
+        \tTAY
+        \tPLP
+        \tTXA
+        \tADC\tRESMOH
+        \tSTA\tRESMOH
+        \tTYA>
+        IFE\tADDPRC,<
+        \tLDAI\t0>
+        \tADC\tRESHO
+        \tSTA\tRESHO
+        \tSEC>\t\t\t;LEAVE WITH CARRY SET LIKE THE LOOP.
+        IFE\tQSQMUL,<
+        MLTPL1: LSR\tA
+        """);
+
+    result = replaceTextBlock(result, """
+        \tBNE\tMLTPL2\t\t;SLOW AS A TURTLE !
+        """, """
+        \tBNE\tMLTPL2>\t\t;SLOW AS A TURTLE !
+        """);
+
+    // add the tables of the quarter-squares, page aligned to avoid extra cycles
+    result = replaceTextBlock(result, """
+        ; SUBTTL\tSYSTEM INITIALIZATION CODE.
+        """, """
+        .IF QSQMUL<>0
+        ;
+        ; QSQ1L AND QSQ1H HOLD THE LOW AND HIGH ORDER OF X*X/4
+        ; FOR X=0 THRU 511, QSQ2L AND QSQ2H THE SAME FOR X-255.
+        ;
+          .IF (* & 255) <> 0
+            .RES 256 - (* & 255)
+          .ENDIF
+        QSQ1L:
+        .REPEAT 512,I
+          .BYTE <(I*I/4)
+        .ENDREP
+        QSQ1H:
+        .REPEAT 512,I
+          .BYTE >(I*I/4)
+        .ENDREP
+        QSQ2L:
+        .REPEAT 512,I
+          .BYTE <((I-255)*(I-255)/4)
+        .ENDREP
+        QSQ2H:
+        .REPEAT 512,I
+          .BYTE >((I-255)*(I-255)/4)
+        .ENDREP
+        .ENDIF
+        ; SUBTTL\tSYSTEM INITIALIZATION CODE.
+        """);
+
+    // integer FOR loops, the entry on the stack gets the step and the upper limit
+    // as 16-bit integers and NEXT adds and compares them without the FAC
+    result = replaceTextBlock(result, """
+        FORSIZ==2*ADDPRC+16
+        """, """
+        IFE\tFORINT,<
+        FORSIZ==2*ADDPRC+16>
+        IFN\tFORINT,<
+        FORSIZ==2*ADDPRC+20>
+        """);
+
+    result = replaceTextBlock(result, """
+        \tLDAI\t8+ADDPRC
+        \tJSR\tGETSTK\t\t;MAKE SURE 16 BYTES ARE AVAILABLE.
+        """, """
+        IFE\tFORINT,<
+        \tLDAI\t8+ADDPRC>
+        IFN\tFORINT,<
+        \tLDAI\t10+ADDPRC
+        \tJSR\tGETSTK\t\t;MAKE SURE 20 BYTES ARE AVAILABLE.
+        \tPHA\t\t\t;ROOM FOR THE INTEGER LIMIT
+        \tPHA
+        \tPHA\t\t\t;AND THE INTEGER STEP.
+        \tPHA>
+        IFE\tFORINT,<
+        \tJSR\tGETSTK>\t\t;MAKE SURE 16 BYTES ARE AVAILABLE.
+        """);
+
+    result = replaceTextBlock(result, """
+        NXTCON: LDAI\tFORTK\t\t;PUT A FORTK ONTO STACK.
+        \tPHA
+        """, """
+        NXTCON: LDAI\tFORTK\t\t;PUT A FORTK ONTO STACK.
+        \tPHA
+        IFN\tFORINT,<
+        \tJSR\tFORSET>\t\t;SET UP THE INTEGER STEP AND LIMIT.
+        """);
+
+    result = replaceTextBlock(result, """
+        HAVFOR: TXS\t\t\t;SETUP STACK. CHOP FIRST.
+        """, """
+        HAVFOR: TXS\t\t\t;SETUP STACK. CHOP FIRST.
+        IFN\tFORINT,<
+        \tJMP\tFORNXT\t\t;TRY IT WITH INTEGERS FIRST.
+        NXTFLT: TSX>
+        """);
+
+    result = replaceTextBlock(result, """
+        \t\t\t\t;THEN LOOP IS DONE.
+        \tLDA\t2*ADDPRC+12+257,X
+        """, """
+        \t\t\t\t;THEN LOOP IS DONE.
+        IFN\tFORINT,<
+        NXTLOP:>
+        \tLDA\t2*ADDPRC+12+257,X
+        """);
+
+    result = replaceTextBlock(result, """
+        \tADCI\t2*ADDPRC+15\t\t;ADDS 16 WITH CARRY.
+        """, """
+        \tADCI\tFORSIZ-1\t\t;ADDS 16 WITH CARRY.
+        """);
+
+    result = replaceTextBlock(result, """
+        ERRGO4: JMP\tERROR
+        """, """
+        ERRGO4: JMP\tERROR
+        IFN\tFORINT,<
+        ;
+        ; "NEXT" WITH AN INTEGER STEP. THE LOOP VARIABLE IS ADDED AND COMPARED
+        ; AS AN INTEGER IF IT IS ONE, OTHERWISE THE FAC DOES IT.
+        ;
+        FORNXT: LDA\t2*ADDPRC+16+257,X
+        \tORA\t2*ADDPRC+17+257,X
+        \tBEQ\tFORNFL\t\t;NO INTEGER STEP.
+        \tLDWD\tFORPNT
+        \tJSR\tFORQNT\t\t;GET THE LOOP VARIABLE AS AN INTEGER.
+        \tBCS\tFORNFL
+        \tTSX
+        \tCLC
+        \tLDA\tFACLO\t\t;ADD THE STEP.
+        \tADC\t2*ADDPRC+16+257,X
+        \tSTA\tFACLO
+        \tLDA\tFACMO
+        \tADC\t2*ADDPRC+17+257,X
+        \tSTA\tFACMO
+        \tBVS\tFORNFL\t\t;OVERFLOW.
+        \tORA\tFACLO
+        \tBEQ\tFORNFL\t\t;LET FADD MAKE THE ZERO.
+        \tSEC
+        \tLDA\t2*ADDPRC+17+257,X
+        \tBMI\tFORNNG
+        \tLDA\t2*ADDPRC+18+257,X
+        \tSBC\tFACLO\t\t;LIMIT-CURRENT IF STEP IS POSITIVE.
+        \tLDA\t2*ADDPRC+19+257,X
+        \tSBC\tFACMO
+        \tJMP\tFORNSG
+        FORNNG: LDA\tFACLO\t\t;CURRENT-LIMIT IF STEP IS NEGATIVE.
+        \tSBC\t2*ADDPRC+18+257,X
+        \tLDA\tFACMO
+        \tSBC\t2*ADDPRC+19+257,X
+        FORNSG: BVC\tFORNDF
+        \tEORI\t128\t\t;SIGN OF THE TRUE DIFFERENCE.
+        FORNDF: STA\tFACEXP\t\t;NEGATIVE IF THE LOOP IS DONE.
+        \tJSR\tFORFLT\t\t;STORE THE NEW VALUE.
+        \tTSX
+        \tSEC
+        \tLDA\tFACEXP
+        \tBMI\tFORNDN
+        \tJMP\tNXTLOP
+        FORNDN: JMP\tLOOPDN
+        FORNFL: JMP\tNXTFLT
+        ;
+        ; SET UP THE INTEGER STEP AND LIMIT OF A NEW "FOR" ENTRY.
+        ; THE STEP IS LEFT ZERO IF ONE OF THEM IS NOT AN INTEGER.
+        ;
+        FORSET: TSX
+        \tLDA\tADDPRC+9+257,X\t;PACK THE SIGN OF THE STEP,
+        \tORAI\t127\t\t;MOVFM IGNORES IT.
+        \tAND\t6+257,X
+        \tSTA\t6+257,X
+        \tTXA
+        \tCLC
+        \tADCI\t6\t\t;POINT TO THE STEP.
+        \tLDYI\t1
+        \tJSR\tFORQNT
+        \tBCS\tFORSNO
+        \tTSX
+        \tLDA\tFACLO
+        \tSTA\t2*ADDPRC+18+257,X
+        \tLDA\tFACMO
+        \tSTA\t2*ADDPRC+19+257,X
+        \tTXA
+        \tCLC
+        \tADCI\tADDPRC+11\t;POINT TO UPPER LIMIT.
+        \tLDYI\t1
+        \tJSR\tFORQNT
+        \tTSX
+        \tBCS\tFORSNO
+        \tLDA\tFACLO
+        \tSTA\t2*ADDPRC+20+257,X
+        \tLDA\tFACMO
+        \tSTA\t2*ADDPRC+21+257,X
+        \tRTS
+        FORSNO: TSX
+        \tLDAI\t0
+        \tSTA\t2*ADDPRC+18+257,X
+        \tSTA\t2*ADDPRC+19+257,X
+        \tRTS
+        ;
+        ; GET THE PACKED NUMBER AT [Y,A] AS AN INTEGER INTO [FACMO,FACLO].
+        ; C=1 IF IT IS NOT AN INTEGER FROM -32767 THRU 32767.
+        ;
+        FORQNT: STWD\tINDEX
+        \tLDYI\t0
+        \tSTY\tFACMO
+        \tSTY\tFACLO
+        \tLDADY\tINDEX
+        \tBEQ\tFORQOK\t\t;ZERO.
+        \tCMPI\t129
+        \tBCC\tFORQBD\t\t;NO INTEGER PART.
+        \tCMPI\t144
+        \tBCS\tFORQRT\t\t;TOO BIG.
+        \tTAX
+        \tLDYI\t3
+        \tLDADY\tINDEX
+        \tBNE\tFORQBD\t\t;FRACTION IN THE LOW ORDERS.
+        IFN\tADDPRC,<
+        \tINY
+        \tLDADY\tINDEX
+        \tBNE\tFORQBD>
+        \tLDYI\t2
+        \tLDADY\tINDEX
+        \tSTA\tFACLO
+        \tDEY
+        \tLDADY\tINDEX
+        \tORAI\t128
+        \tTAY
+        \tTXA
+        \tEORI\t255
+        \tCPXI\t137
+        \tBCC\tFORQB1\t\t;LESS THAN 256.
+        \tADCI\t144\t\t;NUMBER OF BITS TO SHIFT OUT.
+        \tTAX
+        \tTYA
+        FORQS2: LSR\tA
+        \tROR\tFACLO
+        \tBCS\tFORQBD\t\t;FRACTION.
+        \tDEX
+        \tBNE\tFORQS2
+        \tSTA\tFACMO
+        \tBEQ\tFORQSG
+        FORQB1: LDX\tFACLO
+        \tBNE\tFORQBD
+        \tADCI\t137
+        \tTAX
+        \tTYA
+        \tCPXI\t0
+        \tBEQ\tFORQS0
+        FORQS1: LSR\tA
+        \tBCS\tFORQBD
+        \tDEX
+        \tBNE\tFORQS1
+        FORQS0: STA\tFACLO
+        FORQSG: LDYI\t1
+        \tLDADY\tINDEX
+        \tBPL\tFORQOK
+        \tSEC\t\t\t;NEGATE.
+        \tLDAI\t0
+        \tSBC\tFACLO
+        \tSTA\tFACLO
+        \tLDAI\t0
+        \tSBC\tFACMO
+        \tSTA\tFACMO
+        FORQOK: CLC
+        \tRTS
+        FORQBD: SEC
+        FORQRT: RTS
+        ;
+        ; STORE THE NON-ZERO INTEGER IN [FACMO,FACLO] INTO THE LOOP VARIABLE,
+        ; PACKED THE SAME WAY MOVVF DOES.
+        ;
+        FORFLT: LDXI\t0
+        \tLDA\tFACMO
+        \tBPL\tFORFPS
+        \tSEC\t\t\t;MAKE IT POSITIVE.
+        \tLDAI\t0
+        \tSBC\tFACLO
+        \tSTA\tFACLO
+        \tLDAI\t0
+        \tSBC\tFACMO
+        \tLDXI\t128
+        FORFPS: STX\tFACSGN
+        \tTAY
+        \tBNE\tFORFN2
+        \tLDA\tFACLO\t\t;LESS THAN 256.
+        \tSTY\tFACLO
+        \tLDXI\t137
+        FORFN1: DEX
+        \tASL\tA
+        \tBCC\tFORFN1
+        \tBCS\tFORFST
+        FORFN2: LDXI\t145
+        FORFNM: DEX
+        \tASL\tFACLO
+        \tROL\tA
+        \tBCC\tFORFNM\t\t;SHIFT UNTIL THE LEADING ONE IS OUT.
+        FORFST: LSR\tA
+        \tROR\tFACLO
+        \tORA\tFACSGN
+        \tLDYI\t1
+        \tSTADY\tFORPNT
+        \tDEY
+        \tTXA
+        \tSTADY\tFORPNT
+        \tLDYI\t2
+        \tLDA\tFACLO
+        \tSTADY\tFORPNT
+        \tLDAI\t0
+        \tINY
+        \tSTADY\tFORPNT
+        IFN\tADDPRC,<
+        \tINY
+        \tSTADY\tFORPNT>
+        \tRTS>
+        """);
+
+    // table driven FOUT, the digits of the integer in the FAC are added up in pairs
+    // from tables indexed by its bytes, and integers skip the MUL10 loop entirely
+    result = replaceTextBlock(result, """
+        \tJEQ\tFOUT19
+        """, """
+        \tJEQ\tFOUT19
+        IFN\tFOUTTB,<
+        \tLDA\tFACOV
+        \tBNE\tFOUTFL\t\t;NOT EXACT.
+        \tCPXI\t201
+        \tBCC\tFOUTFL\t\t;LESS THAN 1.
+        \tCPXI\t236
+        \tBCS\tFOUTFL\t\t;2^29 OR MORE.
+        \tTXA
+        \tEORI\t377
+        \tADCI\t241\t\t;NUMBER OF BITS BEHIND THE POINT.
+        \tLDXI\t3
+        FOUTI1: CMPI\t10
+        \tBCC\tFOUTI2
+        \tLDY\tFACHO,X
+        \tBNE\tFOUTFL\t\t;NOT AN INTEGER.
+        \tSBCI\t10
+        \tDEX
+        \tBPL\tFOUTI1
+        FOUTI2: TAY
+        \tLDA\tFACHO,X
+        \tAND\tFOUTMK,Y
+        \tBNE\tFOUTFL
+        \tJSR\tQINT
+        \tJSR\tFOUTPR
+        \tLDAI\t0
+        \tSTA\tDECCNT\t\t;NO DECIMAL POINT
+        \tSTA\tTENEXP\t\t;AND NO EXPONENT.
+        \tJSR\tFOUTEM
+        \tLDY\tFBUFPT
+        \tINY
+        \tLDAI\t"."\t\t;FOULDY REMOVES IT AGAIN,
+        \tSTA\tFBUFFR-1,Y\t;BUT NOT THE ZEROES BEFORE IT.
+        \tSTY\tFBUFPT
+        \tJMP\tFOULDY
+        FOUTMK: 0
+        \t1
+        \t3
+        \t7
+        \t17
+        \t37
+        \t77
+        \t177
+        FOUTFL: LDX\tFACEXP>
+        """);
+
+    result = replaceTextBlock(result, """
+        FOUT8:\tLDYI\t0
+        """, """
+        IFN\tFOUTTB,<
+        FOUT8:\tJSR\tFOUTPR
+        \tJSR\tFOUTEM
+        \tJMP\tFOULDY
+        \tLDYI\t0>
+        IFE\tFOUTTB,<
+        FOUT8:\tLDYI\t0>
+        """);
+
+    result = replaceTextBlock(result, """
+        TIMEND:>
+        """, """
+        TIMEND:>
+        IFN\tFOUTTB,<
+        ;
+        ; GET THE INTEGER IN THE FAC AS FIVE PAIRS OF DECIMAL DIGITS
+        ; INTO ARGEXP THRU ARGLO, HIGH PAIR FIRST. EVERY BYTE OF THE
+        ; FAC ADDS UP ITS PAIRS FROM THE TABLES, ASSUMES ADDPRC.
+        ;
+        FOUTPR: LDX\tFACHO
+        \tLDA\tFOT3P0,X
+        \tSTA\tARGLO
+        \tLDA\tFOT3P1,X
+        \tSTA\tARGMO
+        \tLDA\tFOT3P2,X
+        \tSTA\tARGMOH
+        \tLDA\tFOT3P3,X
+        \tSTA\tARGHO
+        \tLDA\tFOT3P4,X
+        \tSTA\tARGEXP
+        \tLDX\tFACMOH
+        \tCLC
+        \tLDA\tFOT2P0,X
+        \tADC\tARGLO
+        \tCMPI\t144\t\t;A PAIR IS LESS THAN 100.
+        \tBCC\tFOUTA1
+        \tSBCI\t144\t\t;LEAVES C ON FOR THE NEXT PAIR.
+        FOUTA1: STA\tARGLO
+        \tLDA\tFOT2P1,X
+        \tADC\tARGMO
+        \tCMPI\t144
+        \tBCC\tFOUTA2
+        \tSBCI\t144
+        FOUTA2: STA\tARGMO
+        \tLDA\tFOT2P2,X
+        \tADC\tARGMOH
+        \tCMPI\t144
+        \tBCC\tFOUTA3
+        \tSBCI\t144
+        FOUTA3: STA\tARGMOH
+        \tLDA\tFOT2P3,X
+        \tADC\tARGHO
+        \tCMPI\t144
+        \tBCC\tFOUTA4
+        \tSBCI\t144
+        FOUTA4: STA\tARGHO
+        \tLDYI\t0
+        \tJSR\tFOUTCY
+        \tLDX\tFACMO
+        \tLDA\tFOT1P0,X
+        \tADC\tARGLO
+        \tCMPI\t144
+        \tBCC\tFOUTA5
+        \tSBCI\t144
+        FOUTA5: STA\tARGLO
+        \tLDA\tFOT1P1,X
+        \tADC\tARGMO
+        \tCMPI\t144
+        \tBCC\tFOUTA6
+        \tSBCI\t144
+        FOUTA6: STA\tARGMO
+        \tLDA\tFOT1P2,X
+        \tADC\tARGMOH
+        \tCMPI\t144
+        \tBCC\tFOUTA7
+        \tSBCI\t144
+        FOUTA7: STA\tARGMOH
+        \tLDYI\t1
+        \tJSR\tFOUTCY
+        \tLDX\tFACLO
+        \tLDA\tFOT0P0,X
+        \tADC\tARGLO
+        \tCMPI\t144
+        \tBCC\tFOUTA8
+        \tSBCI\t144
+        FOUTA8: STA\tARGLO
+        \tLDA\tFOT0P1,X
+        \tADC\tARGMO
+        \tCMPI\t144
+        \tBCC\tFOUTA9
+        \tSBCI\t144
+        FOUTA9: STA\tARGMO
+        \tLDYI\t2
+        \t\t\t\t;FALL INTO FOUTCY.
+        ;
+        ; ADD THE CARRY TO THE PAIRS FROM ARGEXP+[Y] UP.
+        ;
+        FOUTCY: BCC\tFOUTC2
+        \tLDA\tARGEXP,Y
+        \tADCI\t0
+        \tCMPI\t144
+        \tBCC\tFOUTC1
+        \tSBCI\t144
+        FOUTC1: STA\tARGEXP,Y
+        \tDEY
+        \tBPL\tFOUTCY
+        FOUTC2: RTS
+        ;
+        ; PUT THE DIGITS OF THE PAIRS INTO FBUFFR LIKE FOUTYP,
+        ; BUT WITHOUT THE LEADING ZEROES.
+        ;
+        FOUTEM: LDAI\t0
+        \tSTA\tARGSGN\t\t;NO DIGIT YET.
+        \tTAX
+        FOUTE1: LDY\tARGEXP,X
+        \tLDA\tFOUTDT,Y\t;GET BOTH DIGITS OF THE PAIR.
+        \tPHA
+        \tLSR\tA
+        \tLSR\tA
+        \tLSR\tA
+        \tLSR\tA
+        \tJSR\tFOUTED
+        \tPLA
+        \tANDI\t17
+        \tJSR\tFOUTED
+        \tINX
+        \tCPXI\t5
+        \tBNE\tFOUTE1
+        \tRTS
+        FOUTED: ORA\tARGSGN
+        \tBEQ\tFOUTE3\t\t;A LEADING ZERO.
+        \tORAI\t"0"
+        \tLDY\tFBUFPT
+        \tINY
+        \tSTA\tFBUFFR-1,Y
+        \tLDAI\t"0"
+        \tSTA\tARGSGN
+        \tDEC\tDECCNT
+        \tBNE\tFOUTE2\t\t;NOT TIME FOR DP YET.
+        \tLDAI\t"."
+        \tINY
+        \tSTA\tFBUFFR-1,Y\t;STORE DP.
+        FOUTE2: STY\tFBUFPT
+        FOUTE3: RTS>
+        """);
+
+    // add the tables of the digit pairs
+    result = replaceTextBlock(result, """
+        ; SUBTTL\tSYSTEM INITIALIZATION CODE.
+        """, """
+        .IF FOUTTB<>0
+        ;
+        ; FOTKPJ HOLDS PAIR J OF THE DECIMAL DIGITS OF X*256^K, X IS THE
+        ; VALUE OF BYTE K OF THE INTEGER IN THE FAC (K=0 IS FACLO).
+        ; FOUTDT HOLDS BOTH DIGITS OF X=0 THRU 99 AS TWO NIBBLES.
+        ;
+        FOT3P0:
+        .REPEAT 60,I
+          .BYTE (I*16777216) .MOD 100
+        .ENDREP
+        FOT3P1:
+        .REPEAT 60,I
+          .BYTE (I*16777216/100) .MOD 100
+        .ENDREP
+        FOT3P2:
+        .REPEAT 60,I
+          .BYTE (I*16777216/10000) .MOD 100
+        .ENDREP
+        FOT3P3:
+        .REPEAT 60,I
+          .BYTE (I*16777216/1000000) .MOD 100
+        .ENDREP
+        FOT3P4:
+        .REPEAT 60,I
+          .BYTE I*16777216/100000000
+        .ENDREP
+        FOT2P0:
+        .REPEAT 256,I
+          .BYTE (I*65536) .MOD 100
+        .ENDREP
+        FOT2P1:
+        .REPEAT 256,I
+          .BYTE (I*65536/100) .MOD 100
+        .ENDREP
+        FOT2P2:
+        .REPEAT 256,I
+          .BYTE (I*65536/10000) .MOD 100
+        .ENDREP
+        FOT2P3:
+        .REPEAT 256,I
+          .BYTE I*65536/1000000
+        .ENDREP
+        FOT1P0:
+        .REPEAT 256,I
+          .BYTE (I*256) .MOD 100
+        .ENDREP
+        FOT1P1:
+        .REPEAT 256,I
+          .BYTE (I*256/100) .MOD 100
+        .ENDREP
+        FOT1P2:
+        .REPEAT 256,I
+          .BYTE I*256/10000
+        .ENDREP
+        FOT0P0:
+        .REPEAT 256,I
+          .BYTE I .MOD 100
+        .ENDREP
+        FOT0P1:
+        .REPEAT 256,I
+          .BYTE I/100
+        .ENDREP
+        FOUTDT:
+        .REPEAT 100,I
+          .BYTE I/10*16+I .MOD 10
+        .ENDREP
+        .ENDIF
+        ; SUBTTL\tSYSTEM INITIALIZATION CODE.
+        """);
+
+    // array cache, ISARY remembers the name and the address of the last array found
+    // and multiplies the index by the element size with shifts instead of UMULTD
+    result = replaceTextBlock(result, """
+        IFN\tADDPRC,<89>\t\t;ONE MORE BYTE.
+        """, """
+        IFN\tADDPRC,<89>\t\t;ONE MORE BYTE.
+        IFN\tARYCSH,<
+        IFN\tREALIO-3,<
+        ARYNAM: BLOCK\t2\t\t;NAME OF THE LAST ARRAY FOUND BY "ISARY".
+        ARYADR: BLOCK\t2>\t\t;POINTER TO ITS ENTRY IN THE ARRAY TABLE.
+        IFE\tREALIO-3,<
+        STKEND==503\t\t\t;THE PAGE ZERO IS FULL, SO THE STACK
+        ARYNAM=$01F8\t\t\t;GIVES UP ITS TOP FOUR BYTES.
+        ARYADR=$01FA>>
+        """);
+
+    result = replaceTextBlock(result, """
+        \tSTWD\tSTREND\t\t;ARRAYS.
+        """, """
+        \tSTWD\tSTREND\t\t;ARRAYS.
+        IFN\tARYCSH,<
+        \tLDAI\t0
+        \tSTA\tARYNAM>\t\t;FORGET THE LAST ARRAY.
+        """);
+
+    result = replaceTextBlock(result, """
+        \tJSR\tBLTU\t\t;MOVE IT ALL.
+        """, """
+        IFE\tARYCSH,<
+        \tJSR\tBLTU>\t\t;MOVE IT ALL.
+        IFN\tARYCSH,<
+        \tJSR\tARYBLT>
+        """);
+
+    result = replaceTextBlock(result, """
+        FINNOW: STWD\tVARPNT\t\t;THIS IS IT.
+        \tRTS
+        """, """
+        FINNOW: STWD\tVARPNT\t\t;THIS IS IT.
+        \tRTS
+        IFN\tARYCSH,<
+        ARYBLT: LDXI\t0\t\t;THE ARRAYS MOVE UP, SO
+        \tSTX\tARYNAM\t\t;FORGET THE LAST ONE.
+        \tJMP\tBLTU>
+        """);
+
+    result = replaceTextBlock(result, """
+        \tSTA\tDIMFLG\t\t;DIMFLG OFF STACK.
+        """, """
+        \tSTA\tDIMFLG\t\t;DIMFLG OFF STACK.
+        IFN\tARYCSH,<
+        \tJMP\tARYFND>
+        """);
+
+    result = replaceTextBlock(result, """
+        \tBEQ\tGOTARY\t\t;WELL, HERE IT IS !!
+        """, """
+        IFE\tARYCSH,<
+        \tBEQ\tGOTARY>\t\t;WELL, HERE IT IS !!
+        IFN\tARYCSH,<
+        \tBEQ\tARYSET>
+        """);
+
+    result = replaceTextBlock(result, """
+        GOTARY: LDXI\tERRDD\t\t;PERHAPS A "RE-DIMENSION" ERROR
+        """, """
+        IFN\tARYCSH,<
+        ARYMIS: LDX\tARYTAB\t\t;PLACE TO START SEARCH.
+        \tLDA\tARYTAB+1
+        \tJMP\tLOPFDA
+        ARYSET: LDA\tVARNAM\t\t;REMEMBER IT FOR NEXT TIME.
+        \tSTA\tARYNAM
+        \tLDA\tVARNAM+1
+        \tSTA\tARYNAM+1
+        \tLDA\tLOWTR
+        \tSTA\tARYADR
+        \tLDA\tLOWTR+1
+        \tSTA\tARYADR+1
+        \tBNE\tGOTARY\t\t;ALWAYS.
+        ARYFND: LDA\tVARNAM\t\t;SAME ARRAY AS LAST TIME?
+        \tCMP\tARYNAM
+        \tBNE\tARYMIS
+        \tLDA\tVARNAM+1
+        \tCMP\tARYNAM+1
+        \tBNE\tARYMIS
+        \tLDA\tARYADR\t\t;YES, NO NEED TO SEARCH.
+        \tSTA\tLOWTR
+        \tLDA\tARYADR+1
+        \tSTA\tLOWTR+1>
+        GOTARY: LDXI\tERRDD\t\t;PERHAPS A "RE-DIMENSION" ERROR
+        """);
+
+    result = replaceTextBlock(result, """
+        NOTFDD: JSR\tFMAPTR\t\t;FORM ARYPNT.
+        """, """
+        IFN\tARYCSH,<
+        NOTFDD: LDAI\t0
+        \tSTA\tARYNAM\t\t;FORGET THE LAST ARRAY.
+        \tJSR\tFMAPTR>\t\t;FORM ARYPNT.
+        IFE\tARYCSH,<
+        NOTFDD: JSR\tFMAPTR>\t\t;FORM ARYPNT.
+        """);
+
+    result = replaceTextBlock(result, """
+        \tSTA\tCURTOL+1\t;FIX ARRAY BUG ****
+        IFE\tADDPRC,<
+        \tLDXI\t4>
+        IFN\tADDPRC,<
+        \tLDXI\t5\t\t;THIS CODE ONLY WORKS FOR INTPRC=1
+        \tLDA\tVARNAM\t\t;IF ADDPRC=1.
+        \tBPL\tNOTFL1
+        \tDEX>
+        NOTFL1: LDA\tVARNAM+1
+        \tBPL\tSTOML1
+        \tDEX
+        IFN\tADDPRC,<
+        \tDEX>
+        STOML1: STX\tADDEND
+        \tLDAI\t0
+        \tJSR\tUMULTD\t\t;ON RTS, A&Y=HI . X=LO.
+        """, """
+        \tSTA\tCURTOL+1\t;FIX ARRAY BUG ****
+        IFE\tARYCSH,<
+        IFE\tADDPRC,<
+        \tLDXI\t4>
+        IFN\tADDPRC,<
+        \tLDXI\t5\t\t;THIS CODE ONLY WORKS FOR INTPRC=1
+        \tLDA\tVARNAM\t\t;IF ADDPRC=1.
+        \tBPL\tNOTFL1
+        \tDEX>
+        NOTFL1: LDA\tVARNAM+1
+        \tBPL\tSTOML1
+        \tDEX
+        IFN\tADDPRC,<
+        \tDEX>
+        STOML1: STX\tADDEND
+        \tLDAI\t0
+        \tJSR\tUMULTD>\t\t;ON RTS, A&Y=HI . X=LO.
+        IFN\tARYCSH,<
+        \tTXA\t\t\t;ELEMENTS HAVE 2, 3 OR 5 BYTES,
+        \tASL\tA\t\t;SO SHIFT AND ADD INSTEAD OF "UMULTD".
+        \tSTA\tADDEND
+        \tLDA\tCURTOL+1
+        \tROL\tA
+        \tSTA\tADDEND+1\t;[ADDEND]=[CURTOL]*2.
+        \tBIT\tVARNAM
+        \tBMI\tARYMUD\t\t;INTEGER.
+        \tBIT\tVARNAM+1
+        \tBMI\tARYMU3\t\t;STRING.
+        \tASL\tADDEND
+        \tROL\tADDEND+1\t;[CURTOL]*4 FOR A REAL.
+        ARYMU3: TXA
+        \tCLC
+        \tADC\tADDEND
+        \tSTA\tADDEND
+        \tLDA\tCURTOL+1
+        \tADC\tADDEND+1
+        \tSTA\tADDEND+1
+        ARYMUD: LDX\tADDEND\t\t;CARRY IS CLEAR SINCE THE
+        \tLDY\tADDEND+1>\t;OFFSET FITS THE ARRAY.
+        """);
+
+    // unrolled block transfer, BLTU moves whole pages eight bytes per loop
+    // and only the partial page at the top with the original loop
+    result = replaceTextBlock(result, """
+        DECBLT: DEC\tHIGHTR+1
+        \tDEC\tHIGHDS+1\t;START ON NEW BLOCKS.
+        \tDEX
+        \tBNE\tMOREN1
+        \tRTS\t\t\t;RETURN TO CALLER.
+        """, """
+        DECBLT: DEC\tHIGHTR+1
+        \tDEC\tHIGHDS+1\t;START ON NEW BLOCKS.
+        \tDEX
+        IFE\tBLTUNR,<
+        \tBNE\tMOREN1>
+        IFN\tBLTUNR,<
+        \tBNE\tBLTUPG>
+        \tRTS\t\t\t;RETURN TO CALLER.
+        IFN\tBLTUNR,<
+        BLTUPG:""" + """
+        \tDEY
+        \tLDADY\tHIGHTR
+        \tSTADY\tHIGHDS
+        """.repeat(8) + """
+        \tCPYI\t0\t\t;WHOLE PAGE DONE?
+        \tBNE\tBLTUPG
+        \tBEQ\tDECBLT>\t\t;ALWAYS.
+        """);
+
+    // fixed memory size, skip the memory size question, the RAM probe and the banner
+    result = replaceTextBlock(result, """
+        \tSTX\tTEMPPT\t\t;SET UP STRING TEMPORARIES.
+        IFN\tREALIO!LONGI,<
+        """, """
+        \tSTX\tTEMPPT\t\t;SET UP STRING TEMPORARIES.
+        IFN\tMEMTOP,<
+        \tLDWDI\tMEMTOP>\t\t;SIZE OF MEMORY IS KNOWN.
+        IFE\tMEMTOP,<
+        IFN\tREALIO!LONGI,<
+        """);
+
+    result = replaceTextBlock(result, """
+        USEDEF: >\t\t\t;HIGHEST ADDRESS.
+        """, """
+        USEDEF: >>\t\t\t;HIGHEST ADDRESS.
+        """);
+
+    result = replaceTextBlock(result, """
+        \tJSR\tREASON
+        IFE\tREALIO-3,<
+        \tLDWDI\tFREMES
+        """, """
+        \tJSR\tREASON
+        IFE\tMEMTOP,<
+        IFE\tREALIO-3,<
+        \tLDWDI\tFREMES
+        """);
+
+    result = replaceTextBlock(result, """
+        \tLDWDI\tWORDS\t\t;MORE BULLSHIT.
+        \tJSR\tSTROUT
+        """, """
+        \tLDWDI\tWORDS\t\t;MORE BULLSHIT.
+        \tJSR\tSTROUT>
+        """);
+
+    result = replaceTextBlock(result, """
+        WORDS:\tDT" BYTES FREE"
+        """, """
+        IFE\tMEMTOP,<
+        WORDS:\tDT" BYTES FREE"
+        """);
+
+    result = replaceTextBlock(result, """
+        \tDT"COPYRIGHT 1978 MICROSOFT"
+        \tACRLF>
+        \t0
+        """, """
+        \tDT"COPYRIGHT 1978 MICROSOFT"
+        \tACRLF>
+        \t0>
+        """);
+
+    // transcendental tables, SIN, ATN, LOG and EXP find the interval of the reduced argument
+    // and evaluate a short polynomial of the offset into it instead of the long series
+    result = replaceTextBlock(result, """
+        LOG1:\tLDA\tFACEXP\t\t;GET EXPONENT INTO ACCA.
+        \tSBCI\t177\t\t;REMOVE BIAS. (CARRY IS OFF)
+        \tPHA\t\t\t;SAVE AWHILE.
+        \tLDAI\t200
+        \tSTA\tFACEXP\t\t;RESULT IS FAC IN RANGE [0.5,1].
+        \tLDWDI\tSQRHLF\t\t;GET POINTER TO SQR(0.5).
+        """, """
+        LOG1:\tLDA\tFACEXP\t\t;GET EXPONENT INTO ACCA.
+        IFE\tTRNTAB,<
+        \tSBCI\t177>\t\t;REMOVE BIAS. (CARRY IS OFF)
+        IFN\tTRNTAB,<
+        \tSBCI\t200>\t\t;ONE MORE AS LOG2(F)=LOG2(2*F)-1.
+        \tPHA\t\t\t;SAVE AWHILE.
+        \tLDAI\t200
+        \tSTA\tFACEXP\t\t;RESULT IS FAC IN RANGE [0.5,1].
+        IFE\tTRNTAB,<
+        \tLDWDI\tSQRHLF\t\t;GET POINTER TO SQR(0.5).
+        """);
+
+    result = replaceTextBlock(result, """
+        \tLDWDI\tNEGHLF\t\t;ADD IN LAST CONSTANT.
+        \tJSR\tFADD
+        \tPLA\t\t\t;GET EXPONENT BACK.
+        """, """
+        \tLDWDI\tNEGHLF\t\t;ADD IN LAST CONSTANT.
+        \tJSR\tFADD>
+        IFN\tTRNTAB,<
+        \tLDWDI\tNEGHLF\t\t;F-1/2 IN RANGE [0,0.5].
+        \tJSR\tFADD
+        \tLDXI\t204\t\t;16 INTERVALS PER UNIT.
+        \tLDWDI\tLOGTBL
+        \tJSR\tTBLPOL>\t\t;LOG2(2*F).
+        \tPLA\t\t\t;GET EXPONENT BACK.
+        """);
+
+    result = replaceTextBlock(result, """
+        \tLDWDI\tEXPCON
+        \tJSR\tPOLY
+        """, """
+        IFE\tTRNTAB,<
+        \tLDWDI\tEXPCON
+        \tJSR\tPOLY>
+        IFN\tTRNTAB,<
+        \tLDXI\t205\t\t;8 INTERVALS PER UNIT.
+        \tLDWDI\tEXPTBL
+        \tJSR\tTBLPOL>
+        """);
+
+    result = replaceTextBlock(result, """
+        RANDRT: RTS\t\t\t;YES.
+        """, """
+        RANDRT: RTS\t\t\t;YES.
+        IFN\tTRNTAB,<
+        ;
+        ; EVALUATE THE PIECEWISE POLYNOMIAL OF THE TABLE AT [Y,A] FOR
+        ; A POSITIVE FAC. [X] IS 210 MINUS LOG2 OF THE INTERVALS PER UNIT.
+        ; EACH INTERVAL HAS THE NEGATIVE OF ITS START FOLLOWED BY ITS
+        ; POLYNOMIAL IN THE FORMAT OF "POLY", OF DEGREE 7 AT MOST.
+        ; A ZERO ENDS THE TABLE, BEYOND IT THE LAST INTERVAL IS USED.
+        ;
+        TBLPOL: STWD\tPOLYPT
+        \tTXA
+        \tSEC
+        \tSBC\tFACEXP\t\t;SHIFTS TO GET THE INTERVAL FROM FACHO.
+        \tTAY
+        \tLDA\tFACHO
+        \tINY
+        TBLPL1: DEY
+        \tBEQ\tTBLPL2
+        \tLSR\tA
+        \tBNE\tTBLPL1\t\t;ZERO IN THE FIRST INTERVAL.
+        TBLPL2: TAX\t\t\t;NUMBER OF INTERVALS TO SKIP.
+        TBLPL3: DEX
+        \tBMI\tTBLPL4
+        \tLDYI\t5
+        \tLDADY\tPOLYPT\t\t;GET THE DEGREE.
+        \tSTA\tDEGREE
+        \tASL\tA
+        \tASL\tA
+        \tADC\tDEGREE\t\t;FIVE BYTES FOR EACH COEFFICIENT
+        \tADCI\t13\t\t;AND ELEVEN FOR THE REST.
+        \tTAY
+        \tLDADY\tPOLYPT\t\t;END OF THE TABLE?
+        \tBEQ\tTBLPL4\t\t;YES, USE THE LAST INTERVAL.
+        \tTYA
+        \tADC\tPOLYPT\t\t;CARRY IS OFF.
+        \tSTA\tPOLYPT
+        \tBCC\tTBLPL3
+        \tINC\tPOLYPT+1
+        \tBNE\tTBLPL3\t\t;ALWAYS.
+        TBLPL4: LDWD\tPOLYPT
+        \tJSR\tFADD\t\t;SUBTRACT THE START OF THE INTERVAL.
+        \tLDWD\tPOLYPT
+        \tCLC
+        \tADCI\t5\t\t;POINT TO THE POLYNOMIAL.
+        \tBCC\tTBLPL5
+        \tINY
+        TBLPL5: JMP\tPOLY>
+        .IF TRNTAB<>0
+        ;
+        ; THE POLYNOMIALS INTERPOLATE THE FUNCTION AT THE CHEBYSHEV
+        ; NODES OF EACH INTERVAL. THE FIRST INTERVAL OF A FUNCTION WHICH
+        ; IS ZERO AT ZERO HAS NO CONSTANT TERM TO KEEP SMALL RESULTS EXACT.
+        ;
+        SINTBL:\t\t\t\t;SIN(2*PI*X), 8 INTERVALS OF .03125.
+          .BYTE $00,$00,$00,$00,$00\t; 0
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $87,$22,$9A,$37,$14\t; 81.301201463
+          .BYTE $7A,$33,$98,$11,$35\t; .010961548618
+          .BYTE $86,$A5,$5E,$0A,$BC\t; -41.341837823
+          .BYTE $6C,$14,$71,$E3,$5E\t; 5.5300025492E-07
+          .BYTE $83,$49,$0F,$DA,$A2\t; 6.2831853069
+          .BYTE $00,$00,$00,$00,$00\t; 0
+          .BYTE $7C,$80,$00,$00,$00\t; -.03125
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $87,$1C,$21,$03,$3D\t; 78.064477831
+          .BYTE $84,$4B,$E3,$7E,$E6\t; 12.743040942
+          .BYTE $86,$A2,$31,$BB,$95\t; -40.548567131
+          .BYTE $82,$F6,$75,$76,$C3\t; -3.8509194283
+          .BYTE $83,$45,$32,$D6,$2B\t; 6.1624556389
+          .BYTE $7E,$47,$C5,$C1,$E3\t; .195090322
+          .BYTE $7D,$80,$00,$00,$00\t; -.0625
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $87,$0F,$E3,$A7,$0C\t; 71.944633842
+          .BYTE $85,$47,$D0,$79,$88\t; 24.976794302
+          .BYTE $86,$98,$C9,$8B,$1F\t; -38.196819767
+          .BYTE $83,$F1,$B9,$29,$BE\t; -7.553852912
+          .BYTE $83,$39,$C1,$CA,$C8\t; 5.8049062639
+          .BYTE $7F,$43,$EF,$15,$36\t; .38268343243
+          .BYTE $7D,$C0,$00,$00,$00\t; -.09375
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $86,$7C,$3D,$70,$54\t; 63.05999881
+          .BYTE $86,$11,$00,$B8,$64\t; 36.250703394
+          .BYTE $86,$89,$82,$3E,$1B\t; -34.377190039
+          .BYTE $84,$AF,$76,$C4,$93\t; -10.966496062
+          .BYTE $83,$27,$2D,$48,$35\t; 5.2242775951
+          .BYTE $80,$0E,$39,$D9,$CE\t; .55557023315
+          .BYTE $7E,$80,$00,$00,$00\t; -.125
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $86,$4F,$02,$0D,$58\t; 51.752004027
+          .BYTE $86,$38,$86,$AC,$B9\t; 46.13151826
+          .BYTE $85,$E9,$E4,$47,$55\t; -29.23646418
+          .BYTE $84,$DF,$52,$C0,$4C\t; -13.95770292
+          .BYTE $83,$0E,$2C,$18,$B2\t; 4.4428828694
+          .BYTE $80,$35,$04,$F3,$34\t; .70710678119
+          .BYTE $7E,$A0,$00,$00,$00\t; -.15625
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $86,$19,$D2,$22,$13\t; 38.455208108
+          .BYTE $86,$58,$F5,$45,$FB\t; 54.239524767
+          .BYTE $85,$B7,$C7,$0F,$6F\t; -22.972197406
+          .BYTE $85,$83,$4C,$D8,$E7\t; -16.412523083
+          .BYTE $82,$5F,$68,$75,$67\t; 3.4907506471
+          .BYTE $80,$54,$DB,$31,$49\t; .83146961243
+          .BYTE $7E,$C0,$00,$00,$00\t; -.1875
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $85,$3D,$71,$DE,$4F\t; 23.680599801
+          .BYTE $86,$71,$0D,$73,$BC\t; 60.263136804
+          .BYTE $84,$FD,$33,$B3,$15\t; -15.825121958
+          .BYTE $85,$91,$E4,$98,$9A\t; -18.236619189
+          .BYTE $82,$19,$E2,$D9,$A3\t; 2.4044708339
+          .BYTE $80,$6C,$83,$5E,$7A\t; .92387953261
+          .BYTE $7E,$E0,$00,$00,$00\t; -.21875
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $83,$7F,$DE,$E6,$B0\t; 7.9959596097
+          .BYTE $86,$7F,$E2,$2B,$CF\t; 63.970870242
+          .BYTE $84,$81,$1E,$4B,$38\t; -8.0698959529
+          .BYTE $85,$9A,$E1,$0F,$2F\t; -19.359892242
+          .BYTE $81,$1C,$E6,$A3,$B0\t; 1.225788556
+          .BYTE $80,$7B,$14,$BE,$80\t; .98078528047
+          .BYTE 0\t\t\t;END OF TABLE.
+        ATNTBL:\t\t\t\t;ATN(X), 8 INTERVALS OF .125.
+          .BYTE $00,$00,$00,$00,$00\t; 0
+          .BYTE 7\t\t\t;DEGREE
+          .BYTE $7E,$85,$77,$C4,$0D\t; -.13033968286
+          .BYTE $78,$B9,$E2,$64,$21\t; -.0028363699394
+          .BYTE $7E,$4D,$13,$5E,$79\t; .2002691995
+          .BYTE $70,$D0,$99,$70,$B1\t; -1.2433491694E-05
+          .BYTE $7F,$AA,$AA,$A1,$B7\t; -.33333306655
+          .BYTE $64,$91,$46,$4C,$99\t; -2.1140237555E-09
+          .BYTE $81,$00,$00,$00,$00\t; 1
+          .BYTE $00,$00,$00,$00,$00\t; 0
+          .BYTE $7E,$80,$00,$00,$00\t; -.125
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $7D,$61,$2D,$AC,$BD\t; .10995039894
+          .BYTE $7D,$7A,$B1,$F9,$E6\t; .1224097751
+          .BYTE $7F,$9B,$80,$65,$AD\t; -.30371396767
+          .BYTE $7D,$F8,$28,$24,$14\t; -.12117031275
+          .BYTE $80,$7C,$0F,$BE,$9E\t; .98461524351
+          .BYTE $7D,$7E,$AD,$D4,$DE\t; .1243549948
+          .BYTE $7F,$80,$00,$00,$00\t; -.25
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $7A,$17,$65,$C3,$B7\t; .0092405711439
+          .BYTE $7E,$43,$38,$A1,$5D\t; .19064571505
+          .BYTE $7E,$E7,$A8,$19,$F4\t; -.22622719337
+          .BYTE $7E,$E2,$C1,$5B,$5D\t; -.22144072299
+          .BYTE $80,$70,$F0,$EE,$B1\t; .94117633649
+          .BYTE $7E,$7A,$DB,$AF,$CD\t; .24497866334
+          .BYTE $7F,$C0,$00,$00,$00\t; -.375
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $7C,$F7,$A1,$5F,$59\t; -.060456631138
+          .BYTE $7E,$46,$C5,$7A,$16\t; .19411268958
+          .BYTE $7E,$85,$36,$9B,$A9\t; -.13009112567
+          .BYTE $7F,$93,$92,$8E,$FD\t; -.28822752798
+          .BYTE $80,$60,$70,$36,$ED\t; .87671225821
+          .BYTE $7F,$37,$B0,$CA,$10\t; .35877067037
+          .BYTE $80,$80,$00,$00,$00\t; -.5
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $7D,$AB,$C4,$78,$BE\t; -.083870833681
+          .BYTE $7E,$1D,$ED,$05,$40\t; .15422447398
+          .BYTE $7C,$AE,$E6,$B2,$F9\t; -.042700480568
+          .BYTE $7F,$A3,$D6,$EC,$5E\t; -.31999910972
+          .BYTE $80,$4C,$CC,$CC,$A6\t; .79999999097
+          .BYTE $7F,$6D,$63,$38,$2B\t; .46364760899
+          .BYTE $80,$A0,$00,$00,$00\t; -.625
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $7D,$9A,$1B,$64,$1C\t; -.075247556786
+          .BYTE $7D,$4E,$4F,$05,$9F\t; .10073665992
+          .BYTE $7B,$2F,$21,$9B,$93\t; .021378330093
+          .BYTE $7F,$A5,$79,$A6,$28\t; -.32319373358
+          .BYTE $80,$38,$17,$03,$47\t; .71910114749
+          .BYTE $80,$0F,$00,$5D,$5F\t; .55859931535
+          .BYTE $80,$C0,$00,$00,$00\t; -.75
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $7C,$DE,$5C,$F2,$90\t; -.054287860403
+          .BYTE $7C,$5B,$17,$01,$60\t; .053488736507
+          .BYTE $7C,$76,$7B,$15,$08\t; .060175974038
+          .BYTE $7F,$9D,$49,$B5,$20\t; -.30720296875
+          .BYTE $80,$23,$D7,$0A,$C6\t; .6400000318
+          .BYTE $80,$24,$BC,$7D,$19\t; .64350110875
+          .BYTE $80,$E0,$00,$00,$00\t; -.875
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $7C,$89,$91,$AB,$60\t; -.033586186823
+          .BYTE $7B,$21,$C8,$F0,$21\t; .019749135019
+          .BYTE $7D,$21,$06,$2A,$C6\t; .078625044029
+          .BYTE $7F,$8F,$B5,$97,$17\t; -.28068229824
+          .BYTE $80,$10,$FD,$BC,$7D\t; .56637170841
+          .BYTE $80,$38,$05,$3E,$2C\t; .71882999968
+          .BYTE 0\t\t\t;END OF TABLE.
+        LOGTBL:\t\t\t\t;LOG2(1+2*X), 8 INTERVALS OF .0625.
+          .BYTE $00,$00,$00,$00,$00\t; 0
+          .BYTE 7\t\t\t;DEGREE
+          .BYTE $85,$12,$40,$2D,$78\t; 18.281336725
+          .BYTE $84,$EB,$E7,$63,$54\t; -14.743991211
+          .BYTE $84,$13,$4E,$EB,$9D\t; 9.2067676671
+          .BYTE $83,$B8,$A5,$94,$E6\t; -5.7702126019
+          .BYTE $82,$76,$38,$36,$60\t; 3.8471809328
+          .BYTE $82,$B8,$AA,$3B,$11\t; -2.8853900591
+          .BYTE $82,$38,$AA,$3B,$29\t; 2.8853900814
+          .BYTE $00,$00,$00,$00,$00\t; 0
+          .BYTE $7D,$80,$00,$00,$00\t; -.0625
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $82,$7A,$FD,$76,$7D\t; 3.9217201443
+          .BYTE $82,$E1,$76,$47,$3F\t; -3.5228441348
+          .BYTE $82,$2C,$C4,$58,$0F\t; 2.6994838854
+          .BYTE $82,$91,$E7,$E2,$07\t; -2.2797780102
+          .BYTE $82,$24,$25,$89,$1C\t; 2.5647909902
+          .BYTE $7E,$2E,$00,$D1,$D3\t; .16992500162
+          .BYTE $7E,$80,$00,$00,$00\t; -.125
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $82,$18,$16,$6E,$90\t; 2.3763691336
+          .BYTE $82,$94,$80,$BA,$F1\t; -2.3203570703
+          .BYTE $81,$7B,$F4,$25,$25\t; 1.968388217
+          .BYTE $81,$EC,$5E,$5D,$A5\t; -1.8466298156
+          .BYTE $82,$13,$BB,$62,$16\t; 2.3083119597
+          .BYTE $7F,$24,$D3,$C2,$5F\t; .32192809496
+          .BYTE $7E,$C0,$00,$00,$00\t; -.1875
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $81,$40,$EE,$B8,$59\t; 1.5072851595
+          .BYTE $81,$CB,$75,$C7,$E3\t; -1.589531885
+          .BYTE $81,$3D,$53,$CB,$7C\t; 1.4791197162
+          .BYTE $81,$C3,$58,$BA,$AC\t; -1.5261452999
+          .BYTE $82,$06,$4D,$42,$0B\t; 2.0984654529
+          .BYTE $7F,$6B,$3A,$9F,$02\t; .45943161868
+          .BYTE $7F,$80,$00,$00,$00\t; -.25
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $80,$7E,$3C,$BF,$32\t; .99311442347
+          .BYTE $81,$8F,$FC,$C6,$35\t; -1.1249015578
+          .BYTE $81,$11,$D8,$DC,$CD\t; 1.1394306184
+          .BYTE $81,$A4,$25,$4F,$F9\t; -1.2823886839
+          .BYTE $81,$76,$38,$4E,$93\t; 1.9235933512
+          .BYTE $80,$15,$C0,$1A,$3A\t; .58496250072
+          .BYTE $7F,$A0,$00,$00,$00\t; -.3125
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $80,$2C,$FC,$BE,$03\t; .67573154042
+          .BYTE $80,$D1,$75,$7A,$4B\t; -.81819881755
+          .BYTE $80,$65,$71,$DF,$4B\t; .89626880246
+          .BYTE $81,$8B,$DD,$31,$50\t; -1.0926877633
+          .BYTE $81,$63,$47,$AB,$15\t; 1.7756246426
+          .BYTE $80,$33,$50,$04,$72\t; .70043971809
+          .BYTE $7F,$C0,$00,$00,$00\t; -.375
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $7F,$71,$FC,$15,$0D\t; .47262635978
+          .BYTE $80,$9B,$F4,$7E,$9D\t; -.60919944127
+          .BYTE $80,$37,$B7,$CD,$03\t; .71764832805
+          .BYTE $80,$F1,$31,$BF,$F5\t; -.94216537219
+          .BYTE $81,$53,$0B,$B1,$34\t; 1.6487943176
+          .BYTE $80,$4E,$AE,$CF,$EB\t; .80735492217
+          .BYTE $7F,$E0,$00,$00,$00\t; -.4375
+          .BYTE 5\t\t\t;DEGREE
+          .BYTE $7F,$2D,$57,$31,$15\t; .33855584508
+          .BYTE $7F,$EC,$F9,$36,$BD\t; -.46283885057
+          .BYTE $80,$15,$60,$70,$5E\t; .58350279136
+          .BYTE $80,$D2,$1B,$72,$37\t; -.82073129504
+          .BYTE $81,$44,$F9,$D8,$9F\t; 1.5388747002
+          .BYTE $80,$68,$29,$FB,$69\t; .90689059556
+          .BYTE 0\t\t\t;END OF TABLE.
+        EXPTBL:\t\t\t\t;2^X, 8 INTERVALS OF .125.
+          .BYTE $00,$00,$00,$00,$00\t; 0
+          .BYTE 4\t\t\t;DEGREE
+          .BYTE $7A,$24,$92,$B7,$5B\t; .010044745501
+          .BYTE $7C,$63,$26,$FB,$71\t; .055457098191
+          .BYTE $7E,$75,$FE,$7D,$4C\t; .24022861267
+          .BYTE $80,$31,$72,$17,$6A\t; .69314714754
+          .BYTE $81,$00,$00,$00,$00\t; 1
+          .BYTE $7E,$80,$00,$00,$00\t; -.125
+          .BYTE 4\t\t\t;DEGREE
+          .BYTE $7A,$33,$77,$DF,$2F\t; .010953872636
+          .BYTE $7C,$77,$B6,$18,$83\t; .060476394414
+          .BYTE $7F,$06,$21,$15,$77\t; .26197115972
+          .BYTE $80,$41,$81,$81,$07\t; .75588232442
+          .BYTE $81,$0B,$95,$C1,$E4\t; 1.0905077327
+          .BYTE $7F,$80,$00,$00,$00\t; -.25
+          .BYTE 4\t\t\t;DEGREE
+          .BYTE $7A,$43,$B6,$25,$C9\t; .01194528284
+          .BYTE $7D,$07,$10,$C7,$E8\t; .065949975746
+          .BYTE $7F,$12,$44,$DA,$FF\t; .28568157542
+          .BYTE $80,$53,$05,$07,$FB\t; .82429551962
+          .BYTE $81,$18,$37,$F0,$52\t; 1.1892071152
+          .BYTE $7F,$C0,$00,$00,$00\t; -.375
+          .BYTE 4\t\t\t;DEGREE
+          .BYTE $7A,$55,$6C,$C7,$81\t; .01302642329
+          .BYTE $7D,$13,$4A,$3F,$37\t; .071918958536
+          .BYTE $7F,$1F,$81,$E7,$88\t; .31153796706
+          .BYTE $80,$66,$1E,$5A,$2B\t; .8989006381
+          .BYTE $81,$25,$FE,$D6,$AA\t; 1.2968395548
+          .BYTE $80,$80,$00,$00,$00\t; -.5
+          .BYTE 4\t\t\t;DEGREE
+          .BYTE $7A,$68,$BD,$D4,$92\t; .014205415333
+          .BYTE $7D,$20,$9E,$F4,$2F\t; .078428180394
+          .BYTE $7F,$2D,$F1,$B0,$43\t; .33973456209
+          .BYTE $80,$7A,$F2,$31,$D4\t; .98025809694
+          .BYTE $81,$35,$04,$F3,$34\t; 1.4142135624
+          .BYTE $80,$A0,$00,$00,$00\t; -.625
+          .BYTE 4\t\t\t;DEGREE
+          .BYTE $7A,$7D,$CE,$72,$57\t; .015491115246
+          .BYTE $7D,$2F,$28,$89,$81\t; .085526537179
+          .BYTE $7F,$3D,$AF,$F8,$3C\t; .370483167
+          .BYTE $81,$08,$D4,$4E,$15\t; 1.0689790347
+          .BYTE $81,$45,$67,$2A,$12\t; 1.5422108257
+          .BYTE $80,$C0,$00,$00,$00\t; -.75
+          .BYTE 4\t\t\t;DEGREE
+          .BYTE $7B,$0A,$63,$91,$7C\t; .016893180989
+          .BYTE $7D,$3F,$02,$F3,$D5\t; .093267350137
+          .BYTE $7F,$4E,$DB,$05,$BD\t; .40401475842
+          .BYTE $81,$15,$36,$A3,$31\t; 1.1657299032
+          .BYTE $81,$57,$44,$FC,$CB\t; 1.6817928306
+          .BYTE $80,$E0,$00,$00,$00\t; -.875
+          .BYTE 4\t\t\t;DEGREE
+          .BYTE $7B,$16,$EA,$09,$89\t; .018422144531
+          .BYTE $7D,$50,$4C,$AF,$90\t; .10170876654
+          .BYTE $7F,$61,$93,$DC,$87\t; .44058121822
+          .BYTE $81,$22,$B7,$E8,$D8\t; 1.2712374739
+          .BYTE $81,$6A,$C0,$C6,$E8\t; 1.8340080865
+          .BYTE 0\t\t\t;END OF TABLE.
+        .ENDIF
+        """);
+
+    result = replaceTextBlock(result, """
+        SIN3:\tLDWDI\tSINCON
+        GPOLYX: JMP\tPOLYX\t\t;DO APPROXIMATION POLYNOMIAL.
+        """, """
+        IFE\tTRNTAB,<
+        SIN3:\tLDWDI\tSINCON
+        GPOLYX: JMP\tPOLYX>\t\t;DO APPROXIMATION POLYNOMIAL.
+        IFN\tTRNTAB,<
+        SIN3:\tJSR\tMOV1F\t\t;TAN GETS THE REDUCED ARGUMENT FROM TEMPF1.
+        \tLDA\tFACSGN\t\t;USE SIN(-X)=-SIN(X).
+        \tPHA
+        \tLDAI\t0
+        \tSTA\tFACSGN
+        \tLDXI\t203\t\t;32 INTERVALS PER UNIT.
+        \tLDWDI\tSINTBL
+        \tJSR\tTBLPOL
+        \tPLA
+        \tBPL\tSIN4
+        \tJMP\tNEGOP\t\t;NEGATE THE RESULT.
+        SIN4:\tRTS>
+        """);
+
+    result = replaceTextBlock(result, """
+        ATN2:\tLDWDI\tATNCON\t\t;PNTR TO ARCTAN CONSTANTS.
+        \tJSR\tPOLYX
+        """, """
+        IFE\tTRNTAB,<
+        ATN2:\tLDWDI\tATNCON\t\t;PNTR TO ARCTAN CONSTANTS.
+        \tJSR\tPOLYX>
+        IFN\tTRNTAB,<
+        ATN2:\tLDXI\t205\t\t;8 INTERVALS PER UNIT.
+        \tLDWDI\tATNTBL
+        \tJSR\tTBLPOL>
+        """);
+
+    // FIN collects the digits as an integer in the mantissa of the FAC while ten times it fits, FACEXP stays zero
+    // until it is floated, the original adds the digits exactly up to there, so the result is the same
+    result = replaceTextBlock(result, """
+        FINE1:\tSEC
+        \tSBC\tDECCNT\t\t;GET NUMBER OF PLACES TO SHIFT.
+        \tSTA\tTENEXP
+        """, """
+        FINE1:\tSEC
+        \tSBC\tDECCNT\t\t;GET NUMBER OF PLACES TO SHIFT.
+        \tSTA\tTENEXP
+        IFN\tFINACC,<
+        \tBMI\tFINE3\t\t;DIVIDE THE FLOATED NUMBER.
+        \tBEQ\tFINE3
+        FINE2:\tLDAI\t"0"
+        \tJSR\tFINTEN\t\t;MULTIPLY THE INTEGER WHILE IT FITS.
+        \tBCS\tFINE3
+        \tDEC\tTENEXP\t\t;DONE?
+        \tBNE\tFINE2\t\t;NO.
+        FINE3:\tJSR\tFINFLO\t\t;FLOAT THE INTEGER.
+        \tLDA\tTENEXP>
+        """);
+
+    result = replaceTextBlock(result, """
+        FINDG1: JSR\tMUL10
+        \tPLA\t\t\t;GET IT BACK.
+        \tSEC
+        \tSBCI\t"0"
+        \tJSR\tFINLOG\t\t;ADD IT IN.
+        \tJMP\tFINC
+        """, """
+        IFE\tFINACC,<
+        FINDG1: JSR\tMUL10>
+        IFN\tFINACC,<
+        FINDG1: JSR\tFINTEN\t\t;ADD IT TO THE INTEGER.
+        \tBCS\tFINDG2\t\t;NO ROOM.
+        \tPLA
+        \tJMP\tFINC
+        FINDG2: JSR\tFINFLO\t\t;FLOAT THE INTEGER.
+        \tJSR\tMUL10>
+        \tPLA\t\t\t;GET IT BACK.
+        \tSEC
+        \tSBCI\t"0"
+        \tJSR\tFINLOG\t\t;ADD IT IN.
+        \tJMP\tFINC
+        """);
+
+    result = replaceTextBlock(result, """
+        MLEXMI: STA\tTENEXP\t\t;SAVE RESULT.
+        \tJMP\tFINEC
+        """, """
+        MLEXMI: STA\tTENEXP\t\t;SAVE RESULT.
+        \tJMP\tFINEC
+        IFN\tFINACC,<
+        ;
+        ; FINTEN MULTIPLIES THE INTEGER IN THE MANTISSA OF THE FAC BY TEN
+        ; AND ADDS THE DIGIT IN ACCA. C=1 IF THE FAC IS FLOATED ALREADY
+        ; OR THE RESULT MIGHT NOT FIT.
+        ;
+        FINTEN: LDX\tFACEXP
+        \tCPXI\t1\t\t;STILL AN INTEGER?
+        \tBCS\tFINTRT\t\t;NO.
+        \tLDX\tFACHO
+        \tCPXI\t31\t\t;WILL TEN TIMES IT FIT?
+        \tBCS\tFINTRT\t\t;MAYBE NOT.
+        \tANDI\t17\t\t;GET THE VALUE OF THE DIGIT.
+        \tTAY
+        \tLDA\tFACLO\t\t;COPY THE INTEGER INTO ARG.
+        \tSTA\tARGLO
+        \tLDA\tFACMO
+        \tSTA\tARGMO
+        IFN\tADDPRC,<
+        \tLDA\tFACMOH
+        \tSTA\tARGMOH>
+        \tLDA\tFACHO
+        \tSTA\tARGHO
+        \tLDXI\t2
+        FINTN1: ASL\tFACLO\t\t;MULTIPLY BY FOUR.
+        \tROL\tFACMO
+        IFN\tADDPRC,<
+        \tROL\tFACMOH>
+        \tROL\tFACHO
+        \tDEX
+        \tBNE\tFINTN1
+        \tCLC\t\t\t;ADD IN THE COPY.
+        \tLDA\tFACLO
+        \tADC\tARGLO
+        \tSTA\tFACLO
+        \tLDA\tFACMO
+        \tADC\tARGMO
+        \tSTA\tFACMO
+        IFN\tADDPRC,<
+        \tLDA\tFACMOH
+        \tADC\tARGMOH
+        \tSTA\tFACMOH>
+        \tLDA\tFACHO
+        \tADC\tARGHO
+        \tASL\tFACLO\t\t;AND NOW BY TEN.
+        \tROL\tFACMO
+        IFN\tADDPRC,<
+        \tROL\tFACMOH>
+        \tROL\tA
+        \tSTA\tFACHO
+        \tTYA\t\t\t;ADD THE DIGIT, C IS CLEAR.
+        \tADC\tFACLO
+        \tSTA\tFACLO
+        \tBCC\tFINTN2
+        \tINC\tFACMO
+        \tBNE\tFINTN2
+        IFN\tADDPRC,<
+        \tINC\tFACMOH
+        \tBNE\tFINTN2>
+        \tINC\tFACHO
+        FINTN2: STX\tFACOV\t\t;ZERO IT LIKE FLOAT.
+        \tCLC
+        FINTRT: RTS
+        ;
+        ; FINFLO FLOATS THE INTEGER IN THE MANTISSA OF THE FAC UNLESS
+        ; IT IS FLOATED ALREADY. ZERO IS THE SAME EITHER WAY.
+        ;
+        FINFLO: PHA
+        \tLDA\tFACEXP
+        \tBNE\tFINFL1\t\t;FLOATED ALREADY.
+        \tLDA\tFACHO
+        IFN\tADDPRC,<
+        \tORA\tFACMOH>
+        \tORA\tFACMO
+        \tORA\tFACLO
+        \tBEQ\tFINFL1\t\t;ZERO.
+        \tLDXI\t230+10*ADDPRC\t;2^24 OR 2^32.
+        \tLDAI\t0
+        \tSEC\t\t\t;POSITIVE.
+        \tJSR\tFLOATB
+        FINFL1: PLA
+        \tRTS>
+        """);
+
     // insert missing NOP for Commodore
     result = replaceTextBlock(result, """
         \tBEQ\tDIRCON
@@ -392,6 +2804,7 @@ public class Converter {
       List<String> input, Function<List<String>, List<String>> converter) {
     List<String> lines = input;
     while (true) {
+      count("iterations", 1);
       List<String> before = new ArrayList<>(lines);
       lines = converter.apply(lines);
       if (lines.equals(before)) {
@@ -404,9 +2817,18 @@ public class Converter {
   // convert MACRO-10 IF conditions (IFE, IFN, IF1, IF2)
   private List<String> convertIf(List<String> lines) {
     List<String> result = new ArrayList<>();
+    int radix = 8;
 
-    while (!lines.isEmpty()) {
-      String line = lines.removeFirst();
+    Iterator<String> input = lines.iterator();
+    while (input.hasNext()) {
+      String line = input.next();
+      if (line.startsWith("RADIX")) {
+        radix = getRadix(line, radix);
+      }
+      if (!line.startsWith("IF")) {
+        result.add(line); // skip compiling the patterns below for most lines
+        continue;
+      }
 
       Matcher matchIfEqual = Pattern.compile("^IFE\\s*(\\S+),<(.*)").matcher(line);
       Matcher matchIfNotEqual = Pattern.compile("^IFN\\s*(\\S+),<(.*)").matcher(line);
@@ -416,22 +2838,30 @@ public class Converter {
       if (matchIfEqual.find()) {
         String expr = matchIfEqual.group(1);
         String code = matchIfEqual.group(2);
-        processIf(code, expr, true, lines, result);
+        count("IFE converted", 1);
+        processIf(code, expr, true, radix, input, result);
       } else if (matchIfNotEqual.find()) {
         String expr = matchIfNotEqual.group(1);
         String code = matchIfNotEqual.group(2);
-        processIf(code, expr, false, lines, result);
+        count("IFN converted", 1);
+        processIf(code, expr, false, radix, input, result);
       } else if (matchIfPass1.find()) {
         String code = matchIfPass1.group(1);
-        Block block = getAngledBlock(code, lines);
+        Block block = getAngledBlock(code, input);
         if (block.lines().getLast().contains("PRINTX")) {
+          count("IF1 kept", 1);
           result.addAll(getConfigLines());
-        } // else other IF1 blocks are ignored
+        } else {
+          count("IF1 dropped", 1); // other IF1 blocks are ignored
+        }
       } else if (matchIfPass2.find()) {
         String code = matchIfPass2.group(1);
-        Block block = getAngledBlock(code, lines);
+        Block block = getAngledBlock(code, input);
         if (block.lines().stream().noneMatch(s -> s.contains("PURGE"))) {
+          count("IF2 kept", 1);
           result.addAll(block.lines); // add block if they are not using MACRO-10 PURGE instruction
+        } else {
+          count("IF2 dropped", 1);
         }
       } else {
         result.add(line);
@@ -441,49 +2871,37 @@ public class Converter {
     return result;
   }
 
-  // process MACRO-10 IF condition
-  private void processIf(String code, String expr, boolean testEqual, List<String> lines,
+  // process MACRO-10 IF condition, a condition without symbols is decided here
+  private void processIf(String code, String expr, boolean testEqual, int radix, Iterator<String> lines,
       List<String> result) {
     Block block = getAngledBlock(code, lines);
 
-    if (expr.equals("REALIO")) {
-      expr = "REALIO-0";
-    }
-
-    String condition = "";
-    Matcher matcherSymbol = Pattern.compile("^[A-Z]+$").matcher(expr);
-    Matcher matcherTarget = Pattern.compile("^REALIO-(\\d)$").matcher(expr);
-    Matcher matcherOr = Pattern.compile("^([A-Z]+)!([A-Z]+)$").matcher(expr);
-    if (matcherSymbol.matches()) {
-      if (testEqual) {
-        condition = expr + "=0";
-      } else {
-        condition = expr + "<>0";
-      }
-    } else if (matcherTarget.matches()) {
-      String target = matcherTarget.group(1);
-      if (testEqual) {
-        condition = "REALIO=" + target;
-      } else {
-        condition = "REALIO<>" + target;
-      }
-    } else if (matcherOr.matches()) {
-      String sym0 = matcherOr.group(1);
-      String sym1 = matcherOr.group(2);
-      if (testEqual) {
-        condition = "(" + sym0 + "|" + sym1 + ")=0";
+    String condition;
+    if (!testEqual && expr.equals("<<BUF+BUFLEN>/256>-<<BUF-1>/256>")) {
+      condition = "BUFPAG<>0"; // buffer crosses a page boundary, BUFPAG is defined like this
+    } else {
+      Expression parsed = Expression.parse(expr, radix);
+      Long value = parsed.evaluate(name -> null);
+      String operator = testEqual ? "=" : "<>";
+      if (value != null) {
+        count("IF folded", 1);
+        if ((value == 0) != testEqual) {
+          return;
+        }
+        condition = null;
+      } else if (parsed instanceof Expression.Symbol) {
+        condition = expr + operator + "0";
+      } else if (parsed instanceof Expression.Binary(char op, Expression.Symbol symbol, Expression.Number number)
+          && op == '-') {
+        condition = symbol.name() + operator + number.text(); // e.g. REALIO-3 -> REALIO=3
       } else {
-        condition = "(" + sym0 + "|" + sym1 + ")<>0";
+        condition = "(" + parsed.toCa65() + ")" + operator + "0";
       }
-    } else if (!testEqual && expr.equals("STKEND-511")) {
-      condition = "STKEND<>511";
-    } else if (!testEqual && expr.equals("<<BUF+BUFLEN>/256>-<<BUF-1>/256>")) {
-      condition = "BUFPAG<>0";
-    } else {
-      throw new IllegalArgumentException("unsupported expression " + expr);
     }
 
-    result.add(".IF " + condition);
+    if (condition != null) {
+      result.add(".IF " + condition);
+    }
     List<String> blockLines = new ArrayList<>(block.lines());
     if (blockLines.getLast().isEmpty()) {
       blockLines.removeLast();
@@ -493,7 +2911,9 @@ public class Converter {
       blockLines.add(lastLine + block.trailing());
     }
     result.addAll(blockLines);
-    result.add(".ENDIF");
+    if (condition != null) {
+      result.add(".ENDIF");
+    }
   }
 
   // get statements to print out configuration during assemble
@@ -536,28 +2956,71 @@ public class Converter {
         .IF RORSW<>0
           .OUT "CONFIG: USE ROR INSTRUCTION"
         .ENDIF
+        .IF CRNIDX<>0
+          .OUT "CONFIG: INDEXED RESERVED WORD LOOKUP"
+        .ENDIF
+        .IF GRBCMP<>0
+          .OUT "CONFIG: COMPACTING GARBAGE COLLECTION"
+        .ENDIF
+        .IF QSQMUL<>0
+          .OUT "CONFIG: QUARTER-SQUARE MULTIPLICATION"
+        .ENDIF
+        .IF FORINT<>0
+          .OUT "CONFIG: INTEGER FOR LOOPS"
+        .ENDIF
+        .IF FOUTTB<>0
+          .OUT "CONFIG: TABLE DRIVEN FOUT"
+        .ENDIF
+        .IF FOUTTB<>0 .AND ADDPRC=0
+          .ERROR "FOUTTB needs ADDPRC=1, FOUTPR and FOUTCY convert a 32 bit mantissa"
+        .ENDIF
+        .IF ARYCSH<>0
+          .OUT "CONFIG: ARRAY CACHE"
+        .ENDIF
+        .IF ARYCSH<>0 .AND ADDPRC=0
+          .ERROR "ARYCSH needs ADDPRC=1, ISARY multiplies the index of a real by 5"
+        .ENDIF
+        .IF BLTUNR<>0
+          .OUT "CONFIG: UNROLLED BLOCK TRANSFER"
+        .ENDIF
+        .IF MEMTOP<>0
+          .OUT "CONFIG: FIXED MEMORY SIZE"
+        .ENDIF
+        .IF BLKOUT<>0
+          .OUT "CONFIG: BLOCK OUTPUT"
+        .ENDIF
+        .IF TRNTAB<>0
+          .OUT "CONFIG: TRANSCENDENTAL TABLES"
+        .ENDIF
+        .IF TRNTAB<>0 .AND ADDPRC=0
+          .ERROR "TRNTAB needs ADDPRC=1, the tables of TBLPOL hold 5 byte numbers"
+        .ENDIF
+        .IF CRNSPC<>0
+          .OUT "CONFIG: SPACE-STRIPPING CRUNCH"
+        .ENDIF
+        .IF FINACC<>0
+          .OUT "CONFIG: INTEGER ACCUMULATOR IN FIN"
+        .ENDIF
         """;
     return config.lines().toList();
   }
 
   // convert all MACRO-10 macros to cc65 macros
-  private List<String> convertMacros(List<String> lines) {
-    List<String> result = new ArrayList<>();
-    while (!lines.isEmpty()) {
-      String line = lines.removeFirst();
+  private void convertMacros(Iterator<String> lines, Consumer<String> result) {
+    while (lines.hasNext()) {
+      String line = lines.next();
 
       Matcher matcher = Pattern.compile("^DEFINE(.*),\\s*<(.*)").matcher(line);
       if (matcher.matches()) {
         String def = matcher.group(1).trim().replace("\t", " ");
         String code = matcher.group(2);
         getAngledBlock(code, lines); // consume/delete
-        result.addAll(getMacroLines(def));
+        count("macros", 1);
+        getMacroLines(def).forEach(result);
       } else {
-        result.add(line);
+        result.accept(line);
       }
     }
-
-    return result;
   }
 
   // convert single MACRO-10 macro to cc65 macro
@@ -784,6 +3247,10 @@ public class Converter {
 
       case "DCI(A)" -> """
           .MACRO DCI STR
+          .IF CRNIDX<>0
+            .IDENT(.SPRINTF("RESO%d", Q-127)) = <(*-RESLST-1)
+            .IDENT(.SPRINTF("RESC%d", Q-127)) = .STRAT(STR,0) & $7F
+          .ENDIF
             .REPEAT .STRLEN(STR)-1,I
               .BYTE .STRAT(STR,I)
             .ENDREP
@@ -811,75 +3278,94 @@ public class Converter {
   // convert symbol definitions like e.g. ROMLOC= ^O20000
   // convert octal numbers to hexadecimal
   // make symbol values available for further processing
-  private List<String> convertSymbols(List<String> lines) {
-    List<String> result = new ArrayList<>();
-    for (String line : lines) {
-      Line parsed = getLine(line);
-      Matcher matchSimpleSymbolDefinition =
-          Pattern.compile("^(\\s*)([A-Z]+)\\s*={1,2}\\s*(.*)$").matcher(parsed.instruction());
-      if (matchSimpleSymbolDefinition.matches()) {
-        String space = matchSimpleSymbolDefinition.group(1);
-        String name = matchSimpleSymbolDefinition.group(2);
-        String value = matchSimpleSymbolDefinition.group(3);
-        if (value.startsWith("^O")) {
-          int number = Integer.parseInt(value.substring(2), 8);
-          value = String.format("$%04X", number);
-        }
-        symbols.put(name, value);
+  private void convertSymbols(Iterator<String> lines, Consumer<String> result) {
+    while (lines.hasNext()) {
+      String line = lines.next();
+      result.accept(convertSymbol(line));
+    }
+  }
 
-        if (varNames.contains(name)) {
-          String replace = space + name + " .SET " + value + parsed.comment();
-          result.add(replace);
-        } else {
-          String replace = space + name + "=" + value + parsed.comment();
-          result.add(replace);
-        }
-        continue;
-      }
-      result.add(line);
+  // convert a symbol definition and store its value, other lines are returned unchanged
+  private String convertSymbol(String line) {
+    Line parsed = getLine(line);
+    Matcher matchSimpleSymbolDefinition =
+        Pattern.compile("^(\\s*)([A-Z]+)\\s*={1,2}\\s*(.*)$").matcher(parsed.instruction());
+    if (!matchSimpleSymbolDefinition.matches()) {
+      return line;
     }
 
-    return result;
+    String space = matchSimpleSymbolDefinition.group(1);
+    String name = matchSimpleSymbolDefinition.group(2);
+    String value = matchSimpleSymbolDefinition.group(3);
+    if (value.startsWith("^O")) {
+      int number = Integer.parseInt(value.substring(2), 8);
+      value = String.format("$%04X", number);
+    }
+    symbols.put(name, value);
+    count("symbols", 1);
+
+    if (varNames.contains(name)) {
+      return space + name + " .SET " + value + parsed.comment();
+    }
+    return space + name + "=" + value + parsed.comment();
+  }
+
+  // value of a symbol defined by convertSymbols, null if unknown or not a constant
+  private Long getValue(String name) {
+    String value = symbols.get(name);
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Expression.parse(value, 10).evaluate(this::getValue); // values are written in ca65 syntax
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  // radix of a MACRO-10 RADIX statement, the current radix for other lines
+  private static int getRadix(String line, int radix) {
+    Matcher matchRadix = Pattern.compile("^RADIX\\s+(\\d+)").matcher(line);
+    return matchRadix.find() ? Integer.parseInt(matchRadix.group(1)) : radix;
   }
 
   // convert MACRO-10 REPEAT statement
-  private List<String> convertRepeat(List<String> lines) {
-    List<String> result = new ArrayList<>();
-    while (!lines.isEmpty()) {
-      String line = lines.removeFirst();
+  private void convertRepeat(Iterator<String> lines, Consumer<String> result) {
+    int radix = 8;
+    while (lines.hasNext()) {
+      String line = lines.next();
+      if (line.startsWith("RADIX")) {
+        radix = getRadix(line, radix);
+      }
       Matcher matcher = Pattern.compile("^(\\s*)REPEAT\\s+(\\S+),\\s*<(.*)").matcher(line);
       if (matcher.matches()) {
         String space = matcher.group(1);
         String expr = matcher.group(2);
-        int count = 0;
-        if (expr.matches("\\d")) {
-          count = Integer.parseInt(expr);
-        } else if (expr.equals("3+ADDPRC")) {
-          count = 3 + Integer.parseInt(symbols.get("ADDPRC"));
-        } else {
-          throw new IllegalArgumentException("unsupported expression" + expr);
+        Long count = Expression.parse(expr, radix).evaluate(this::getValue);
+        if (count == null) {
+          throw new IllegalArgumentException("unknown value of expression " + expr);
         }
         String code = matcher.group(3);
         Block block = getAngledBlock(code, lines); // consume/delete block
+        count("repeats", 1);
         String expand = block.lines().get(0);
         if (block.lines.size() > 1) {
           expand = block.lines().get(1);
         }
         for (int i = 0; i < count; i++) {
-          result.add(space + expand);
+          result.accept(space + expand);
         }
       } else {
-        result.add(line);
+        result.accept(line);
       }
     }
-    return result;
   }
 
   // convert operation instructions and data definitions
-  private List<String> convertInstructions(List<String> lines) {
+  private void convertInstructions(Iterator<String> lines, Consumer<String> result) {
     int radix = 8;
-    List<String> result = new ArrayList<>();
-    for (String line : lines) {
+    while (lines.hasNext()) {
+      String line = lines.next();
       Line parsed = getLine(line);
 
       // look for radix statement and store radix value
@@ -909,7 +3395,7 @@ public class Converter {
       Matcher matchAdr = Pattern.compile("^ADR\\t*\\((\\S+)\\)$").matcher(parsed.instruction());
       if (matchAdr.matches()) {
         String replace = parsed.label() + ".WORD " + matchAdr.group(1) + parsed.comment();
-        result.add(replace);
+        result.accept(replace);
         continue;
       }
 
@@ -917,7 +3403,7 @@ public class Converter {
       Matcher matchBlock = Pattern.compile("^BLOCK\\s+(.*)$").matcher(parsed.instruction());
       if (matchBlock.matches() && !line.contains("BLOCK TRANSFER")) {
         String replace = parsed.label() + ".RES " + matchBlock.group(1) + parsed.comment();
-        result.add(replace);
+        result.accept(replace);
         continue;
       }
 
@@ -926,7 +3412,7 @@ public class Converter {
       if (matchByteDec.matches()) {
         int number = Integer.parseInt(matchByteDec.group(1), radix);
         String replace = parsed.label() + ".BYTE " + number + parsed.comment();
-        result.add(replace);
+        result.accept(replace);
         continue;
       }
 
@@ -935,7 +3421,7 @@ public class Converter {
       if (matchByteHex.matches()) {
         int number = Integer.parseInt(matchByteHex.group(1), 16);
         String replace = parsed.label() + ".BYTE " + number + parsed.comment();
-        result.add(replace);
+        result.accept(replace);
         continue;
       }
 
@@ -944,7 +3430,7 @@ public class Converter {
         Matcher matchExp = Pattern.compile("^EXP\\s+(.*)$").matcher(parsed.instruction());
         if (matchExp.matches()) {
           String replace = parsed.label() + ".BYTE " + matchExp.group(1) + parsed.comment();
-          result.add(replace);
+          result.accept(replace);
           continue;
         }
       }
@@ -952,14 +3438,14 @@ public class Converter {
       // expression "333-ADDPRC" -> .BYTE
       if (radix == 8 && parsed.instruction().equals("333-ADDPRC")) {
         String replace = parsed.label() + ".BYTE 219-ADDPRC" + parsed.comment();
-        result.add(replace);
+        result.accept(replace);
         continue;
       }
 
       // expression <symbol> -> .BYTE
       if (symbols.containsKey(parsed.instruction())) {
         String replace = parsed.label() + ".BYTE " + parsed.instruction() + parsed.comment();
-        result.add(replace);
+        result.accept(replace);
         continue;
       }
 
@@ -967,14 +3453,12 @@ public class Converter {
       String converted = convertMnemonic(parsed.instruction(), radix);
       if (converted != null) {
         String replace = parsed.label() + converted + parsed.comment();
-        result.add(replace);
+        result.accept(replace);
         continue;
       }
 
-      result.add(line);
+      result.accept(line);
     }
-
-    return result;
   }
 
   // convert mnemonics to cc65 syntax
@@ -992,7 +3476,7 @@ public class Converter {
           int number = Integer.parseInt(arg, radix);
           arg = String.format("$%02X", number); // convert octal number to hexadecimal
         }
-        arg = expressions.getOrDefault(arg, arg);
+        arg = toCa65(arg, radix);
         return mnemonic.substring(0, mnemonic.length() - 1) + "\t#" + arg.replace("\"", "\'");
 
       case "ADCDY", "CMPDY", "LDADY", "SBCDY", "STADY":
@@ -1006,6 +3490,15 @@ public class Converter {
     }
   }
 
+  // translate an expression to ca65 syntax, the numbers are converted to the current radix
+  private static String toCa65(String expr, int radix) {
+    try {
+      return Expression.parse(expr, radix).toCa65();
+    } catch (IllegalArgumentException e) {
+      return expr; // e.g. a character constant with more than one character
+    }
+  }
+
   private String expandTabs(String line) {
     StringBuilder result = new StringBuilder();
     int col = 0;
@@ -1023,15 +3516,13 @@ public class Converter {
     return result.toString();
   }
 
-  private List<String> expandTabs(List<String> lines) {
-    List<String> result = new ArrayList<>();
+  private void expandTabs(Iterator<String> lines, Consumer<String> result) {
 
-    while (!lines.isEmpty()) {
-      String line = lines.removeFirst();
+    while (lines.hasNext()) {
+      String line = lines.next();
       line = expandTabs(line);
-      result.add(line);
+      result.accept(line);
     }
-    return result;
   }
 
   // search and replace text block supporting blocks with multiple lines
@@ -1042,6 +3533,7 @@ public class Converter {
     List<String> result = new ArrayList<>();
 
     int i = 0;
+    int matches = 0;
     int inputLinesSize = inputLines.size();
     int searchLinesSize = searchLines.size();
 
@@ -1057,6 +3549,7 @@ public class Converter {
         if (match) {
           result.addAll(replaceLines);
           i += searchLinesSize;
+          matches++;
           continue;
         }
       }
@@ -1064,6 +3557,9 @@ public class Converter {
       i++;
     }
 
+    // a rule which no longer matches shows with a count of zero
+    rules++;
+    count(String.format("rule %d: %s", rules, searchLines.getFirst().strip().replaceAll("\\s+", " ")), matches);
     return result;
   }
 
@@ -1102,7 +3598,7 @@ public class Converter {
   // get all text starting after the first opening angle bracket up to the closing angle bracket.
   // text may contain nested blocks which are treated as transparent text
   // the remaining text after the closing angle bracket is returned in trailing
-  private Block getAngledBlock(String code, List<String> lines) {
+  private Block getAngledBlock(String code, Iterator<String> lines) {
     List<String> result = new ArrayList<>();
     String line = code;
     int level = 1;
@@ -1128,9 +3624,214 @@ public class Converter {
         }
       }
       result.add(line);
-      line = lines.isEmpty() ? null : lines.removeFirst(); // fetch next line
+      line = lines.hasNext() ? lines.next() : null; // fetch next line
     }
 
     throw new IllegalArgumentException("missing '>'");
   }
+
+  // MACRO-10 constant expression, the logical operators bind stronger than * and / which bind stronger than
+  // + and -, numbers are in the current radix unless prefixed by ^D, ^O or ^B, <> groups like ()
+  private sealed interface Expression {
+    // text is the number in ca65 syntax, decimal and hexadecimal numbers are kept as written
+    record Number(long value, String text) implements Expression {
+    }
+
+    record Text(String text) implements Expression {
+    }
+
+    record Symbol(String name) implements Expression {
+    }
+
+    record Group(Expression inner) implements Expression {
+    }
+
+    record Negate(Expression operand) implements Expression {
+    }
+
+    record Binary(char operator, Expression left, Expression right) implements Expression {
+    }
+
+    // parse an expression, throws IllegalArgumentException for anything else
+    static Expression parse(String text, int radix) {
+      Parser parser = new Parser(text, radix);
+      Expression result = parser.parseSum();
+      if (parser.index != text.length()) {
+        throw new IllegalArgumentException("unsupported expression " + text);
+      }
+      return result;
+    }
+
+    // value of the expression, null if a symbol has no known value
+    default Long evaluate(Function<String, Long> symbols) {
+      return switch (this) {
+        case Number number -> number.value();
+        case Text text -> text.text().length() == 3 ? Long.valueOf(text.text().charAt(1)) : null;
+        case Symbol symbol -> symbols.apply(symbol.name());
+        case Group group -> group.inner().evaluate(symbols);
+        case Negate negate -> {
+          Long value = negate.operand().evaluate(symbols);
+          yield value == null ? null : -value;
+        }
+        case Binary binary -> {
+          Long left = binary.left().evaluate(symbols);
+          Long right = binary.right().evaluate(symbols);
+          if (left == null || right == null || (binary.operator() == '/' && right == 0)) {
+            yield null;
+          }
+          yield switch (binary.operator()) {
+            case '+' -> left + right;
+            case '-' -> left - right;
+            case '*' -> left * right;
+            case '/' -> left / right;
+            case '&' -> left & right;
+            default -> left | right;
+          };
+        }
+      };
+    }
+
+    // the expression in ca65 syntax without octal numbers, brackets are added where ca65 would group
+    // differently as it handles & like * and | like +
+    default String toCa65() {
+      return switch (this) {
+        case Number number -> number.text();
+        case Text text -> text.text();
+        case Symbol symbol -> symbol.name();
+        case Group group -> "(" + group.inner().toCa65() + ")";
+        case Negate negate -> "-" + negate.operand().toCa65();
+        case Binary binary -> {
+          int level = getLevel(binary.operator());
+          String left = binary.left().toCa65();
+          if (binary.left() instanceof Binary inner && getLevel(inner.operator()) < level) {
+            left = "(" + left + ")";
+          }
+          String right = binary.right().toCa65();
+          if (binary.right() instanceof Binary inner && getLevel(inner.operator()) <= level) {
+            right = "(" + right + ")";
+          }
+          yield left + (binary.operator() == '!' ? '|' : binary.operator()) + right;
+        }
+      };
+    }
+
+    private static int getLevel(char operator) {
+      return operator == '+' || operator == '-' || operator == '!' ? 1 : 2;
+    }
+  }
+
+  // recursive descent parser for MACRO-10 expressions
+  private static class Parser {
+    private final String text;
+    private final int radix;
+    private int index;
+
+    Parser(String text, int radix) {
+      this.text = text;
+      this.radix = radix;
+    }
+
+    private boolean accept(char c) {
+      if (index < text.length() && text.charAt(index) == c) {
+        index++;
+        return true;
+      }
+      return false;
+    }
+
+    private Expression parseSum() {
+      Expression result = parseProduct();
+      while (index < text.length() && (text.charAt(index) == '+' || text.charAt(index) == '-')) {
+        char operator = text.charAt(index++);
+        result = new Expression.Binary(operator, result, parseProduct());
+      }
+      return result;
+    }
+
+    private Expression parseProduct() {
+      Expression result = parseLogical();
+      while (index < text.length() && (text.charAt(index) == '*' || text.charAt(index) == '/')) {
+        char operator = text.charAt(index++);
+        result = new Expression.Binary(operator, result, parseLogical());
+      }
+      return result;
+    }
+
+    private Expression parseLogical() {
+      Expression result = parseUnary();
+      while (index < text.length() && (text.charAt(index) == '&' || text.charAt(index) == '!')) {
+        char operator = text.charAt(index++);
+        result = new Expression.Binary(operator, result, parseUnary());
+      }
+      return result;
+    }
+
+    private Expression parseUnary() {
+      if (accept('-')) {
+        return new Expression.Negate(parseUnary());
+      }
+      accept('+');
+      return parsePrimary();
+    }
+
+    private Expression parsePrimary() {
+      if (accept('<')) {
+        return parseGroup('>');
+      }
+      if (accept('(')) {
+        return parseGroup(')');
+      }
+      if (accept('^')) {
+        int prefixRadix = accept('D') ? 10 : accept('O') ? 8 : accept('B') ? 2 : 0;
+        if (prefixRadix == 0) {
+          throw new IllegalArgumentException("unsupported expression " + text);
+        }
+        return parseNumber(prefixRadix, "[0-9]+");
+      }
+      if (accept('$')) {
+        return parseNumber(16, "[0-9A-F]+"); // octal number already converted to hexadecimal
+      }
+      if (accept('"')) {
+        int end = text.indexOf('"', index);
+        if (end < 0) {
+          throw new IllegalArgumentException("unsupported expression " + text);
+        }
+        String quoted = text.substring(index - 1, end + 1);
+        index = end + 1;
+        return new Expression.Text(quoted);
+      }
+      Matcher matcher = Pattern.compile("[0-9]+|[A-Z.%][A-Z0-9.%]*").matcher(text).region(index, text.length());
+      if (!matcher.lookingAt()) {
+        throw new IllegalArgumentException("unsupported expression " + text);
+      }
+      if (Character.isDigit(text.charAt(index))) {
+        return parseNumber(radix, "[0-9]+");
+      }
+      index = matcher.end();
+      return new Expression.Symbol(matcher.group());
+    }
+
+    private Expression parseGroup(char close) {
+      Expression inner = parseSum();
+      if (!accept(close)) {
+        throw new IllegalArgumentException("unsupported expression " + text);
+      }
+      return new Expression.Group(inner);
+    }
+
+    // like MACRO-10 the digits 8 and 9 are accepted in radix 8 and just added to the value
+    private Expression parseNumber(int numberRadix, String digits) {
+      Matcher matcher = Pattern.compile(digits).matcher(text).region(index, text.length());
+      if (!matcher.lookingAt()) {
+        throw new IllegalArgumentException("unsupported expression " + text);
+      }
+      index = matcher.end();
+      long value = 0;
+      for (char c : matcher.group().toCharArray()) {
+        value = value * numberRadix + Character.digit(c, 16);
+      }
+      String number = numberRadix == 16 ? "$" + matcher.group() : numberRadix == 10 ? matcher.group() : "" + value;
+      return new Expression.Number(value, number);
+    }
+  }
 }
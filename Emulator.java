@@ -0,0 +1,1972 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+// emulates a 6502 running the Commodore build of BASIC, the kernal routines used by BASIC are
+// handled in Java, programs are typed in like on the keyboard and routines of the ROM can be
+// called directly with the labels written by ld65 -Ln
+public final class Emulator {
+  private static final int ROMLOC = 0xC000; // start of the ROM like in m6502-cbm.cfg
+  private static final int RAMEND = 0x8000; // first address without RAM, found by INIT
+  private static final int KERNAL = 0xFFC0; // kernal jump table, called routines return to $FFFF
+  private static final int BLKOUT = 0xFFF0; // block output for builds with BLKOUT=$FFF0, not in the real kernal
+  private static final int SCRATCH = RAMEND - 16; // operands of called routines
+  private static final int CELL_BITS = 8; // each binade has 2^CELL_BITS operands for COMPARE by default
+  private static final int TEXT = SCRATCH - 64; // text parsed by FIN for COMPARE
+  private static final int RANDOM_CASES = 1 << 16; // default random operands of each routine for COMPARE
+
+  // math functions compared with COMPARE for |x| from 2^low up to 2^(high+1)
+  private record Function(String name, DoubleUnaryOperator exact, int low, int high, boolean negative) {
+  }
+
+  private static final List<Function> FUNCTIONS = List.of(
+      new Function("SIN", Math::sin, -16, 6, true),
+      new Function("COS", Math::cos, -16, 6, true),
+      new Function("TAN", Math::tan, -16, 6, true),
+      new Function("ATN", Math::atan, -16, 16, true),
+      new Function("LOG", Math::log, -32, 32, false),
+      new Function("EXP", Math::exp, -16, 6, true));
+
+  // operations compared with COMPARE, x OP y for x in memory and y in FAC
+  private record Operation(String name, DoubleBinaryOperator exact) {
+  }
+
+  private static final List<Operation> OPERATIONS = List.of(
+      new Operation("FADD", (x, y) -> x + y),
+      new Operation("FMULT", (x, y) -> x * y),
+      new Operation("FDIV", (x, y) -> x / y));
+
+  // base cycles of the documented opcodes, zero for the undocumented ones
+  private static final int[] CYCLES = {
+      7, 6, 0, 0, 0, 3, 5, 0, 3, 2, 2, 0, 0, 4, 6, 0, // 00
+      2, 5, 0, 0, 0, 4, 6, 0, 2, 4, 0, 0, 0, 4, 7, 0, // 10
+      6, 6, 0, 0, 3, 3, 5, 0, 4, 2, 2, 0, 4, 4, 6, 0, // 20
+      2, 5, 0, 0, 0, 4, 6, 0, 2, 4, 0, 0, 0, 4, 7, 0, // 30
+      6, 6, 0, 0, 0, 3, 5, 0, 3, 2, 2, 0, 3, 4, 6, 0, // 40
+      2, 5, 0, 0, 0, 4, 6, 0, 2, 4, 0, 0, 0, 4, 7, 0, // 50
+      6, 6, 0, 0, 0, 3, 5, 0, 4, 2, 2, 0, 5, 4, 6, 0, // 60
+      2, 5, 0, 0, 0, 4, 6, 0, 2, 4, 0, 0, 0, 4, 7, 0, // 70
+      0, 6, 0, 0, 3, 3, 3, 0, 2, 0, 2, 0, 4, 4, 4, 0, // 80
+      2, 6, 0, 0, 4, 4, 4, 0, 2, 5, 2, 0, 0, 5, 0, 0, // 90
+      2, 6, 2, 0, 3, 3, 3, 0, 2, 2, 2, 0, 4, 4, 4, 0, // A0
+      2, 5, 0, 0, 4, 4, 4, 0, 2, 4, 2, 0, 4, 4, 4, 0, // B0
+      2, 6, 0, 0, 3, 3, 5, 0, 2, 2, 2, 0, 4, 4, 6, 0, // C0
+      2, 5, 0, 0, 0, 4, 6, 0, 2, 4, 0, 0, 0, 4, 7, 0, // D0
+      2, 6, 0, 0, 3, 3, 5, 0, 2, 2, 2, 0, 4, 4, 6, 0, // E0
+      2, 5, 0, 0, 0, 4, 6, 0, 2, 4, 0, 0, 0, 4, 7, 0}; // F0
+
+  private final byte[] memory = new byte[0x10000];
+  private final Map<String, Integer> labels;
+  private int a;
+  private int x;
+  private int y;
+  private int s = 0xFF;
+  private int pc;
+  private int negative; // N is bit 7, both flags are computed when they are tested
+  private int zero; // Z is set if zero
+  private boolean v;
+  private boolean d;
+  private boolean i;
+  private boolean c;
+  private long cycles;
+  private long functionCycles; // cycles of the last callFunction without moving the operands
+
+  private byte[] input = new byte[0];
+  private int inputPos;
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  private int errorAddress = -1; // stop at ERROR while a routine is called
+
+  // translated blocks of the ROM by start address, the ROM never changes so they are kept forever,
+  // code in RAM like CHRGET is always interpreted
+  private final boolean translate;
+  private final Block[] blocks = new Block[KERNAL - ROMLOC];
+  private final int[] entries = new int[KERNAL - ROMLOC];
+  private long translatedInstructions;
+  private TraceWriter trace; // null if not tracing
+  private Profile profile; // null if not profiling
+
+  // a trace through the ROM translated to a hidden class, see translateBlock and BlockWriter
+  private interface Block {
+    void run(Emulator emulator);
+  }
+
+  // call of an emulator method with constant arguments in a translated block, a branch returns true
+  // if it is taken to leave the block or to continue at its start
+  private record Call(String method, Exit exit, int... args) {
+    Call(String method, int... args) {
+      this(method, Exit.NONE, args);
+    }
+  }
+
+  private enum Exit {
+    NONE, RETURN, LOOP
+  }
+
+  private static final Block UNTRANSLATED = emulator -> {
+  };
+  private static final int HOT_ENTRIES = 16; // a block is translated when it is entered this often
+  private static final int MAX_INSTRUCTIONS = 256;
+
+  // addressing modes of the translated instructions
+  private enum Mode {
+    IMPLIED(1), IMMEDIATE(2), ZERO_PAGE(2), ZERO_PAGE_X(2), ZERO_PAGE_Y(2), ABSOLUTE(3), ABSOLUTE_X(3), ABSOLUTE_Y(3),
+    INDIRECT_X(2), INDIRECT_Y(2), RELATIVE(2), INDIRECT(3);
+
+    private final int length;
+
+    Mode(int length) {
+      this.length = length;
+    }
+  }
+
+  // operations with an operand, the bits aaa of the opcode aaabbbcc plus 8 for cc=10 and 16 for cc=00
+  private static final int ORA = 0;
+  private static final int AND = 1;
+  private static final int EOR = 2;
+  private static final int ADC = 3;
+  private static final int STA = 4;
+  private static final int LDA = 5;
+  private static final int CMP = 6;
+  private static final int SBC = 7;
+  private static final int ASL = 8;
+  private static final int ROL = 9;
+  private static final int LSR = 10;
+  private static final int ROR = 11;
+  private static final int STX = 12;
+  private static final int LDX = 13;
+  private static final int DEC = 14;
+  private static final int INC = 15;
+  private static final int BIT = 17;
+  private static final int STY = 20;
+  private static final int LDY = 21;
+  private static final int CPY = 22;
+  private static final int CPX = 23;
+
+  // load the ROM and its labels and run INIT until BASIC waits for input
+  public Emulator(byte[] rom, Map<String, Integer> labels) {
+    this(rom, labels, true);
+  }
+
+  // translate is false to interpret each instruction
+  public Emulator(byte[] rom, Map<String, Integer> labels, boolean translate) {
+    System.arraycopy(rom, 0, memory, ROMLOC, Math.min(rom.length, KERNAL - ROMLOC));
+    this.labels = labels;
+    this.translate = translate;
+    pc = getLabel("INIT");
+    run();
+  }
+
+  public static Emulator load(Path romFile, boolean translate) throws IOException {
+    return new Emulator(Files.readAllBytes(romFile), readLabels(getLabelFile(romFile)), translate);
+  }
+
+  // the label file has the name of the binary with the extension .lbl
+  public static Path getLabelFile(Path romFile) {
+    String name = romFile.getFileName().toString().replaceFirst("\\.[^.]*$", "");
+    return romFile.resolveSibling(name + ".lbl");
+  }
+
+  // read a VICE label file like created by ld65 -Ln, e.g. "al 00C000 .STMDSP"
+  public static Map<String, Integer> readLabels(Path file) throws IOException {
+    Map<String, Integer> result = new HashMap<>();
+    for (String line : Files.readAllLines(file)) {
+      String[] parts = line.trim().split("\\s+");
+      if (parts.length == 3 && parts[0].equals("al") && parts[2].startsWith(".")) {
+        result.put(parts[2].substring(1), Integer.parseInt(parts[1], 16));
+      }
+    }
+    return result;
+  }
+
+  public int getLabel(String name) {
+    Integer address = labels.get(name);
+    if (address == null) {
+      throw new IllegalArgumentException("missing label " + name);
+    }
+    return address;
+  }
+
+  public long getCycles() {
+    return cycles;
+  }
+
+  public long getFunctionCycles() {
+    return functionCycles;
+  }
+
+  // number of instructions executed by translated blocks
+  public long getTranslatedInstructions() {
+    return translatedInstructions;
+  }
+
+  // record each executed instruction in a trace file, the instructions are interpreted while tracing
+  public void startTrace(Path file, int records) throws IOException {
+    stopTrace();
+    trace = new TraceWriter(file, records);
+  }
+
+  public void stopTrace() throws IOException {
+    if (trace != null) {
+      trace.close();
+      trace = null;
+    }
+  }
+
+  // count the accesses to each RAM address by the operands of the executed instructions, the instructions are
+  // interpreted while profiling
+  public void startProfile() {
+    profile = new Profile();
+  }
+
+  public int read(int address) {
+    return memory[address] & 0xFF;
+  }
+
+  // only RAM is written, the ROM and the missing I/O area stay unchanged
+  public void write(int address, int value) {
+    if (trace != null) {
+      trace.write(address, value);
+    }
+    if (address < RAMEND) {
+      memory[address] = (byte) value;
+    }
+  }
+
+  // type text like on the keyboard, a carriage return ends each line, the output is returned
+  public String type(String text) {
+    input = text.replace('\n', '\r').getBytes(StandardCharsets.ISO_8859_1);
+    inputPos = 0;
+    output.reset();
+    run();
+    return output.toString(StandardCharsets.ISO_8859_1);
+  }
+
+  // call a routine of the ROM with the registers, false if it ended in ERROR
+  public boolean call(int address, int a, int x, int y) {
+    this.a = a;
+    this.x = x;
+    this.y = y;
+    int stack = s;
+    push(0xFF);
+    push(0xFE);
+    pc = address;
+    errorAddress = getLabel("ERROR");
+    run();
+    errorAddress = -1;
+    if (pc != 0xFFFF) {
+      s = stack; // ERROR continues with READY
+      return false;
+    }
+    return true;
+  }
+
+  // call a function of the math package with FAC, e.g. SIN, the numbers are packed like in memory
+  public long callFunction(String name, long value) {
+    setNumber(SCRATCH, value);
+    call(getLabel("MOVFM"), SCRATCH & 0xFF, 0, SCRATCH >> 8);
+    long start = cycles;
+    boolean success = call(getLabel(name), 0, 0, 0);
+    functionCycles = cycles - start;
+    return success ? getFac() : -1;
+  }
+
+  // call an operation of the math package like FMULT with y in FAC and x in memory, e.g. x*y
+  public long callOperation(String name, long x, long y) {
+    setNumber(SCRATCH, y);
+    call(getLabel("MOVFM"), SCRATCH & 0xFF, 0, SCRATCH >> 8);
+    setNumber(SCRATCH + 8, x);
+    long start = cycles;
+    boolean success = call(getLabel(name), (SCRATCH + 8) & 0xFF, 0, (SCRATCH + 8) >> 8);
+    functionCycles = cycles - start;
+    return success ? getFac() : -1;
+  }
+
+  private void setNumber(int address, long value) {
+    for (int offset = 0; offset < 5; offset++) {
+      write(address + offset, (int) (value >>> (32 - offset * 8)));
+    }
+  }
+
+  // parse text with FIN like VAL, the number is packed like in memory, -1 if it ended in ERROR
+  public long callFin(String text) {
+    byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+    for (int offset = 0; offset <= bytes.length; offset++) {
+      write(TEXT + offset, offset < bytes.length ? bytes[offset] : 0);
+    }
+    int txtptr = getLabel("TXTPTR");
+    write(txtptr, (TEXT - 1) & 0xFF);
+    write(txtptr + 1, (TEXT - 1) >> 8);
+    call(getLabel("CHRGET"), 0, 0, 0); // FIN expects the flags of CHRGET
+    long start = cycles;
+    boolean success = call(getLabel("FIN"), a, 0, 0);
+    functionCycles = cycles - start;
+    return success ? getFac() : -1;
+  }
+
+  // convert a packed number with FOUT like STR$, null if it ended in ERROR
+  public String callFout(long value) {
+    setNumber(SCRATCH, value);
+    call(getLabel("MOVFM"), SCRATCH & 0xFF, 0, SCRATCH >> 8);
+    long start = cycles;
+    boolean success = call(getLabel("FOUT"), 0, 0, 0);
+    functionCycles = cycles - start;
+    if (!success) {
+      return null;
+    }
+    StringBuilder text = new StringBuilder();
+    for (int address = a | y << 8; read(address) != 0; address++) {
+      text.append((char) read(address));
+    }
+    return text.toString();
+  }
+
+  // the FAC packed like in memory
+  private long getFac() {
+    call(getLabel("MOVMF"), 0, SCRATCH & 0xFF, SCRATCH >> 8);
+    long result = 0;
+    for (int offset = 0; offset < 5; offset++) {
+      result = result << 8 | read(SCRATCH + offset);
+    }
+    return result;
+  }
+
+  // run until a called routine returns, BASIC waits for more input or ERROR is reached
+  private void run() {
+    while (pc != errorAddress) {
+      if (pc >= KERNAL && !kernal()) {
+        return;
+      }
+      if (trace != null || profile != null) {
+        if (trace != null) {
+          trace.begin(pc, read(pc), a, x, y, s, getP(), cycles);
+        }
+        if (profile != null) {
+          profile();
+        }
+        step();
+        if (trace != null) {
+          trace.end();
+        }
+        continue;
+      }
+      if (translate && pc >= ROMLOC) {
+        Block block = getBlock(pc);
+        if (block != null) {
+          block.run(this);
+          continue;
+        }
+      }
+      step();
+    }
+  }
+
+  // kernal routines used by the Commodore build, false to stop the emulation
+  private boolean kernal() {
+    switch (pc) {
+      case 0xFFCF -> { // CQINCH
+        if (inputPos == input.length) {
+          return false;
+        }
+        a = setNZ(input[inputPos++] & 0xFF);
+      }
+      case 0xFFD2 -> outch(); // OUTCH
+      case BLKOUT -> blkout();
+      case 0xFFE1 -> zero = 1; // ISCNTC, STOP key not pressed
+      case 0xFFE4 -> a = setNZ(0); // CZGETL, no key pressed
+      case 0xFFC0, 0xFFC3, 0xFFC6, 0xFFC9, 0xFFCC, 0xFFD5, 0xFFD8, 0xFFDB, 0xFFDE, 0xFFE7 -> c = false;
+      default -> {
+        return false; // return of a called routine
+      }
+    }
+    cycles += 6;
+    pc = (pull() | pull() << 8) + 1;
+    return true;
+  }
+
+  // print to the screen like the PET editor, the column is kept in TRMPOS for commas and POS,
+  // the skip character 29 moves the cursor over a blank and the line feed after a return is ignored
+  private void outch() {
+    int trmpos = getLabel("TRMPOS");
+    if (a == 13) {
+      output.write('\n');
+      write(trmpos, 0);
+    } else if (a == 29 || a >= ' ' && a < 128 || a >= 160) {
+      output.write(a == 29 ? ' ' : a);
+      write(trmpos, (read(trmpos) + 1) % 80);
+    }
+  }
+
+  // print [A] characters at [INDEX] like OUTCH, registers are left like at the end of STRPRT
+  private void blkout() {
+    int index = getLabel("INDEX");
+    int address = read(index) | read(index + 1) << 8;
+    int length = a;
+    for (int offset = 0; offset < length; offset++) {
+      a = read((address + offset) & 0xFFFF);
+      outch();
+    }
+    x = 0;
+    y = length;
+    zero = 0;
+  }
+
+  private void push(int value) {
+    if (trace != null) {
+      trace.write(0x100 + s, value);
+    }
+    memory[0x100 + s] = (byte) value;
+    s = (s - 1) & 0xFF;
+  }
+
+  private int pull() {
+    s = (s + 1) & 0xFF;
+    return memory[0x100 + s] & 0xFF;
+  }
+
+  private int fetch() {
+    int value = memory[pc] & 0xFF;
+    pc = (pc + 1) & 0xFFFF;
+    return value;
+  }
+
+  private int fetchWord() {
+    int value = fetch();
+    return value | fetch() << 8;
+  }
+
+  private int zeroPageX() {
+    return (fetch() + x) & 0xFF;
+  }
+
+  private int zeroPageY() {
+    return (fetch() + y) & 0xFF;
+  }
+
+  private int absoluteX(boolean read) {
+    return indexed(fetchWord(), x, read);
+  }
+
+  private int absoluteY(boolean read) {
+    return indexed(fetchWord(), y, read);
+  }
+
+  private int indirectX() {
+    return pointer((fetch() + x) & 0xFF);
+  }
+
+  private int indirectY(boolean read) {
+    return indexed(pointer(fetch()), y, read);
+  }
+
+  // indexed addresses take a cycle more if a page is crossed while reading
+  private int indexed(int base, int index, boolean read) {
+    int address = (base + index) & 0xFFFF;
+    if (read && (base ^ address) > 0xFF) {
+      cycles++;
+    }
+    return address;
+  }
+
+  // the address in the zero page, the high byte wraps around to $00
+  private int pointer(int address) {
+    return read(address) | read((address + 1) & 0xFF) << 8;
+  }
+
+  private int setNZ(int value) {
+    negative = value;
+    zero = value;
+    return value;
+  }
+
+  private boolean isNegative() {
+    return (negative & 0x80) != 0;
+  }
+
+  private boolean isZero() {
+    return zero == 0;
+  }
+
+  private int getP() {
+    return (isNegative() ? 0x80 : 0) | (v ? 0x40 : 0) | 0x30 | (d ? 0x08 : 0) | (i ? 0x04 : 0) | (isZero() ? 0x02 : 0)
+        | (c ? 0x01 : 0);
+  }
+
+  private void setP(int p) {
+    negative = p;
+    v = (p & 0x40) != 0;
+    d = (p & 0x08) != 0;
+    i = (p & 0x04) != 0;
+    zero = ~p & 0x02;
+    c = (p & 0x01) != 0;
+  }
+
+  private void branch(boolean condition) {
+    int offset = (byte) fetch();
+    if (condition) {
+      int target = (pc + offset) & 0xFFFF;
+      cycles += (pc ^ target) > 0xFF ? 2 : 1;
+      pc = target;
+    }
+  }
+
+  private void adc(int value) {
+    int carry = c ? 1 : 0;
+    int sum = a + value + carry;
+    v = ((a ^ sum) & (value ^ sum) & 0x80) != 0;
+    if (d) {
+      int low = (a & 0x0F) + (value & 0x0F) + carry;
+      int high = (a & 0xF0) + (value & 0xF0);
+      if (low > 9) {
+        high += 0x10;
+        low += 6;
+      }
+      if (high > 0x90) {
+        high += 0x60;
+      }
+      c = high > 0xFF;
+      a = setNZ((high & 0xF0 | low & 0x0F) & 0xFF);
+    } else {
+      c = sum > 0xFF;
+      a = setNZ(sum & 0xFF);
+    }
+  }
+
+  private void sbc(int value) {
+    if (d) {
+      int borrow = c ? 0 : 1;
+      int difference = a - value - borrow;
+      v = ((a ^ value) & (a ^ difference) & 0x80) != 0;
+      int low = (a & 0x0F) - (value & 0x0F) - borrow;
+      int high = (a & 0xF0) - (value & 0xF0);
+      if (low < 0) {
+        low -= 6;
+        high -= 0x10;
+      }
+      if (high < 0) {
+        high -= 0x60;
+      }
+      c = difference >= 0;
+      a = setNZ((high & 0xF0 | low & 0x0F) & 0xFF);
+    } else {
+      adc(value ^ 0xFF);
+    }
+  }
+
+  // condition of a branch opcode
+  private boolean isTaken(int opcode) {
+    return switch (opcode) {
+      case 0x90 -> !c;
+      case 0xB0 -> c;
+      case 0xF0 -> isZero();
+      case 0x30 -> isNegative();
+      case 0xD0 -> !isZero();
+      case 0x10 -> !isNegative();
+      case 0x50 -> !v;
+      default -> v;
+    };
+  }
+
+  private void bit(int value) {
+    negative = value;
+    v = (value & 0x40) != 0;
+    zero = a & value;
+  }
+
+  private void compare(int register, int value) {
+    c = register >= value;
+    setNZ((register - value) & 0xFF);
+  }
+
+  private int asl(int value) {
+    c = value >= 0x80;
+    return setNZ(value << 1 & 0xFF);
+  }
+
+  private int lsr(int value) {
+    c = (value & 1) != 0;
+    return setNZ(value >> 1);
+  }
+
+  private int rol(int value) {
+    int result = value << 1 & 0xFF | (c ? 1 : 0);
+    c = value >= 0x80;
+    return setNZ(result);
+  }
+
+  private int ror(int value) {
+    int result = value >> 1 | (c ? 0x80 : 0);
+    c = (value & 1) != 0;
+    return setNZ(result);
+  }
+
+  // execute one instruction
+  private void step() {
+    int opcode = fetch();
+    if (CYCLES[opcode] == 0) {
+      throw new IllegalStateException(String.format("illegal opcode $%02X at $%04X", opcode, (pc - 1) & 0xFFFF));
+    }
+    cycles += CYCLES[opcode];
+    int address;
+    switch (opcode) {
+      case 0x69 -> adc(fetch());
+      case 0x65 -> adc(read(fetch()));
+      case 0x75 -> adc(read(zeroPageX()));
+      case 0x6D -> adc(read(fetchWord()));
+      case 0x7D -> adc(read(absoluteX(true)));
+      case 0x79 -> adc(read(absoluteY(true)));
+      case 0x61 -> adc(read(indirectX()));
+      case 0x71 -> adc(read(indirectY(true)));
+      case 0x29 -> a = setNZ(a & fetch());
+      case 0x25 -> a = setNZ(a & read(fetch()));
+      case 0x35 -> a = setNZ(a & read(zeroPageX()));
+      case 0x2D -> a = setNZ(a & read(fetchWord()));
+      case 0x3D -> a = setNZ(a & read(absoluteX(true)));
+      case 0x39 -> a = setNZ(a & read(absoluteY(true)));
+      case 0x21 -> a = setNZ(a & read(indirectX()));
+      case 0x31 -> a = setNZ(a & read(indirectY(true)));
+      case 0x0A -> a = asl(a);
+      case 0x06 -> write(address = fetch(), asl(read(address)));
+      case 0x16 -> write(address = zeroPageX(), asl(read(address)));
+      case 0x0E -> write(address = fetchWord(), asl(read(address)));
+      case 0x1E -> write(address = absoluteX(false), asl(read(address)));
+      case 0x90, 0xB0, 0xF0, 0x30, 0xD0, 0x10, 0x50, 0x70 -> branch(isTaken(opcode));
+      case 0x24, 0x2C -> bit(read(opcode == 0x24 ? fetch() : fetchWord()));
+      case 0x00 -> throw new IllegalStateException(String.format("BRK at $%04X", (pc - 1) & 0xFFFF));
+      case 0x18 -> c = false;
+      case 0xD8 -> d = false;
+      case 0x58 -> i = false;
+      case 0xB8 -> v = false;
+      case 0xC9 -> compare(a, fetch());
+      case 0xC5 -> compare(a, read(fetch()));
+      case 0xD5 -> compare(a, read(zeroPageX()));
+      case 0xCD -> compare(a, read(fetchWord()));
+      case 0xDD -> compare(a, read(absoluteX(true)));
+      case 0xD9 -> compare(a, read(absoluteY(true)));
+      case 0xC1 -> compare(a, read(indirectX()));
+      case 0xD1 -> compare(a, read(indirectY(true)));
+      case 0xE0 -> compare(x, fetch());
+      case 0xE4 -> compare(x, read(fetch()));
+      case 0xEC -> compare(x, read(fetchWord()));
+      case 0xC0 -> compare(y, fetch());
+      case 0xC4 -> compare(y, read(fetch()));
+      case 0xCC -> compare(y, read(fetchWord()));
+      case 0xC6 -> write(address = fetch(), setNZ((read(address) - 1) & 0xFF));
+      case 0xD6 -> write(address = zeroPageX(), setNZ((read(address) - 1) & 0xFF));
+      case 0xCE -> write(address = fetchWord(), setNZ((read(address) - 1) & 0xFF));
+      case 0xDE -> write(address = absoluteX(false), setNZ((read(address) - 1) & 0xFF));
+      case 0xCA -> x = setNZ((x - 1) & 0xFF);
+      case 0x88 -> y = setNZ((y - 1) & 0xFF);
+      case 0x49 -> a = setNZ(a ^ fetch());
+      case 0x45 -> a = setNZ(a ^ read(fetch()));
+      case 0x55 -> a = setNZ(a ^ read(zeroPageX()));
+      case 0x4D -> a = setNZ(a ^ read(fetchWord()));
+      case 0x5D -> a = setNZ(a ^ read(absoluteX(true)));
+      case 0x59 -> a = setNZ(a ^ read(absoluteY(true)));
+      case 0x41 -> a = setNZ(a ^ read(indirectX()));
+      case 0x51 -> a = setNZ(a ^ read(indirectY(true)));
+      case 0xE6 -> write(address = fetch(), setNZ((read(address) + 1) & 0xFF));
+      case 0xF6 -> write(address = zeroPageX(), setNZ((read(address) + 1) & 0xFF));
+      case 0xEE -> write(address = fetchWord(), setNZ((read(address) + 1) & 0xFF));
+      case 0xFE -> write(address = absoluteX(false), setNZ((read(address) + 1) & 0xFF));
+      case 0xE8 -> x = setNZ((x + 1) & 0xFF);
+      case 0xC8 -> y = setNZ((y + 1) & 0xFF);
+      case 0x4C -> pc = fetchWord();
+      case 0x6C -> {
+        address = fetchWord();
+        pc = read(address) | read(address & 0xFF00 | (address + 1) & 0xFF) << 8; // page wrap bug
+      }
+      case 0x20 -> {
+        address = fetchWord();
+        int last = (pc - 1) & 0xFFFF;
+        push(last >> 8);
+        push(last & 0xFF);
+        pc = address;
+      }
+      case 0xA9 -> a = setNZ(fetch());
+      case 0xA5 -> a = setNZ(read(fetch()));
+      case 0xB5 -> a = setNZ(read(zeroPageX()));
+      case 0xAD -> a = setNZ(read(fetchWord()));
+      case 0xBD -> a = setNZ(read(absoluteX(true)));
+      case 0xB9 -> a = setNZ(read(absoluteY(true)));
+      case 0xA1 -> a = setNZ(read(indirectX()));
+      case 0xB1 -> a = setNZ(read(indirectY(true)));
+      case 0xA2 -> x = setNZ(fetch());
+      case 0xA6 -> x = setNZ(read(fetch()));
+      case 0xB6 -> x = setNZ(read(zeroPageY()));
+      case 0xAE -> x = setNZ(read(fetchWord()));
+      case 0xBE -> x = setNZ(read(absoluteY(true)));
+      case 0xA0 -> y = setNZ(fetch());
+      case 0xA4 -> y = setNZ(read(fetch()));
+      case 0xB4 -> y = setNZ(read(zeroPageX()));
+      case 0xAC -> y = setNZ(read(fetchWord()));
+      case 0xBC -> y = setNZ(read(absoluteX(true)));
+      case 0x4A -> a = lsr(a);
+      case 0x46 -> write(address = fetch(), lsr(read(address)));
+      case 0x56 -> write(address = zeroPageX(), lsr(read(address)));
+      case 0x4E -> write(address = fetchWord(), lsr(read(address)));
+      case 0x5E -> write(address = absoluteX(false), lsr(read(address)));
+      case 0xEA -> {
+      }
+      case 0x09 -> a = setNZ(a | fetch());
+      case 0x05 -> a = setNZ(a | read(fetch()));
+      case 0x15 -> a = setNZ(a | read(zeroPageX()));
+      case 0x0D -> a = setNZ(a | read(fetchWord()));
+      case 0x1D -> a = setNZ(a | read(absoluteX(true)));
+      case 0x19 -> a = setNZ(a | read(absoluteY(true)));
+      case 0x01 -> a = setNZ(a | read(indirectX()));
+      case 0x11 -> a = setNZ(a | read(indirectY(true)));
+      case 0x48 -> push(a);
+      case 0x08 -> push(getP());
+      case 0x68 -> a = setNZ(pull());
+      case 0x28 -> setP(pull());
+      case 0x2A -> a = rol(a);
+      case 0x26 -> write(address = fetch(), rol(read(address)));
+      case 0x36 -> write(address = zeroPageX(), rol(read(address)));
+      case 0x2E -> write(address = fetchWord(), rol(read(address)));
+      case 0x3E -> write(address = absoluteX(false), rol(read(address)));
+      case 0x6A -> a = ror(a);
+      case 0x66 -> write(address = fetch(), ror(read(address)));
+      case 0x76 -> write(address = zeroPageX(), ror(read(address)));
+      case 0x6E -> write(address = fetchWord(), ror(read(address)));
+      case 0x7E -> write(address = absoluteX(false), ror(read(address)));
+      case 0x40 -> {
+        setP(pull());
+        pc = pull() | pull() << 8;
+      }
+      case 0x60 -> pc = ((pull() | pull() << 8) + 1) & 0xFFFF;
+      case 0xE9 -> sbc(fetch());
+      case 0xE5 -> sbc(read(fetch()));
+      case 0xF5 -> sbc(read(zeroPageX()));
+      case 0xED -> sbc(read(fetchWord()));
+      case 0xFD -> sbc(read(absoluteX(true)));
+      case 0xF9 -> sbc(read(absoluteY(true)));
+      case 0xE1 -> sbc(read(indirectX()));
+      case 0xF1 -> sbc(read(indirectY(true)));
+      case 0x38 -> c = true;
+      case 0xF8 -> d = true;
+      case 0x78 -> i = true;
+      case 0x85 -> write(fetch(), a);
+      case 0x95 -> write(zeroPageX(), a);
+      case 0x8D -> write(fetchWord(), a);
+      case 0x9D -> write(absoluteX(false), a);
+      case 0x99 -> write(absoluteY(false), a);
+      case 0x81 -> write(indirectX(), a);
+      case 0x91 -> write(indirectY(false), a);
+      case 0x86 -> write(fetch(), x);
+      case 0x96 -> write(zeroPageY(), x);
+      case 0x8E -> write(fetchWord(), x);
+      case 0x84 -> write(fetch(), y);
+      case 0x94 -> write(zeroPageX(), y);
+      case 0x8C -> write(fetchWord(), y);
+      case 0xAA -> x = setNZ(a);
+      case 0xA8 -> y = setNZ(a);
+      case 0xBA -> x = setNZ(s);
+      case 0x8A -> a = setNZ(x);
+      case 0x9A -> s = x;
+      case 0x98 -> a = setNZ(y);
+      default -> throw new IllegalStateException(String.format("opcode $%02X", opcode));
+    }
+  }
+
+  // get the translated block starting at an address of the ROM, null if it is interpreted
+  private Block getBlock(int address) {
+    int index = address - ROMLOC;
+    Block block = blocks[index];
+    if (block == null) {
+      if (++entries[index] < HOT_ENTRIES) {
+        return null;
+      }
+      block = translateBlock(address);
+      blocks[index] = block;
+    }
+    return block == UNTRANSLATED ? null : block;
+  }
+
+  // translate the instructions of a trace through the ROM, it follows jumps and subroutine calls and leaves
+  // at taken branches, the trace ends at returns and indirect jumps, in front of ERROR where a called
+  // routine stops, at the kernal or RAM and in front of BRK or an illegal opcode
+  private Block translateBlock(int start) {
+    int error = labels.getOrDefault("ERROR", -1);
+    List<Call> calls = new ArrayList<>();
+    int instructions = 0;
+    int segment = 0; // index of the call entering the current segment
+    int segmentCycles = 0;
+    int address = start;
+    while (instructions < MAX_INSTRUCTIONS && address >= ROMLOC && (address != error || address == start)) {
+      int opcode = read(address);
+      Mode mode = getMode(opcode);
+      if (opcode == 0x00 || CYCLES[opcode] == 0 || address + mode.length > KERNAL) {
+        break;
+      }
+      int operand = mode.length == 1 ? 0 : read(address + 1);
+      if (mode.length == 3) {
+        operand |= read(address + 2) << 8;
+      }
+      int end = address + mode.length;
+      if (segment == calls.size()) {
+        calls.add(null); // entering the segment, added when its cycles are known
+      }
+      Call call = translate(opcode, mode, operand, end);
+      if (call != null && call.exit() == Exit.RETURN && call.args()[1] == start && start != error) {
+        call = new Call(call.method(), Exit.LOOP, call.args()); // a loop stays in the block
+      }
+      if (call == null) {
+        call = new Call(isJump(opcode) ? "interpretJump" : "interpret", address); // adds its own cycles
+      } else {
+        segmentCycles += CYCLES[opcode];
+      }
+      calls.add(call);
+      instructions++;
+      address = end;
+      if (isJump(opcode)) {
+        calls.set(segment, new Call("enter", segmentCycles, calls.size() - segment - 1, address));
+        segment = calls.size();
+        segmentCycles = 0;
+        if (opcode == 0x4C || opcode == 0x20) {
+          address = operand; // continue at the target, the call has set pc
+        } else if (mode != Mode.RELATIVE) {
+          break;
+        }
+      }
+    }
+    if (segment < calls.size()) {
+      calls.set(segment, new Call("enter", segmentCycles, calls.size() - segment - 1, address));
+    }
+    return instructions == 0 ? UNTRANSLATED : BlockWriter.define(calls);
+  }
+
+  private static boolean isJump(int opcode) {
+    return getMode(opcode) == Mode.RELATIVE || opcode == 0x20 || opcode == 0x40 || opcode == 0x4C || opcode == 0x60
+        || opcode == 0x6C;
+  }
+
+  private static Mode getMode(int opcode) {
+    int aaa = opcode >> 5;
+    int bbb = opcode >> 2 & 7;
+    return switch (opcode & 3) {
+      case 1 -> List.of(Mode.INDIRECT_X, Mode.ZERO_PAGE, Mode.IMMEDIATE, Mode.ABSOLUTE, Mode.INDIRECT_Y,
+          Mode.ZERO_PAGE_X, Mode.ABSOLUTE_Y, Mode.ABSOLUTE_X).get(bbb);
+      case 2 -> switch (bbb) {
+        case 0 -> Mode.IMMEDIATE;
+        case 1 -> Mode.ZERO_PAGE;
+        case 3 -> Mode.ABSOLUTE;
+        case 5 -> aaa == 4 || aaa == 5 ? Mode.ZERO_PAGE_Y : Mode.ZERO_PAGE_X;
+        case 7 -> aaa == 5 ? Mode.ABSOLUTE_Y : Mode.ABSOLUTE_X;
+        default -> Mode.IMPLIED;
+      };
+      default -> switch (bbb) {
+        case 0 -> opcode == 0x20 ? Mode.ABSOLUTE : aaa >= 5 ? Mode.IMMEDIATE : Mode.IMPLIED;
+        case 1 -> Mode.ZERO_PAGE;
+        case 3 -> opcode == 0x6C ? Mode.INDIRECT : Mode.ABSOLUTE;
+        case 4 -> Mode.RELATIVE;
+        case 5 -> Mode.ZERO_PAGE_X;
+        case 7 -> Mode.ABSOLUTE_X;
+        default -> Mode.IMPLIED;
+      };
+    };
+  }
+
+  // translate an instruction to a call, null if it is interpreted
+  private static Call translate(int opcode, Mode mode, int operand, int end) {
+    int kind = opcode >> 5 | ((opcode & 3) == 1 ? 0 : (opcode & 3) == 2 ? 8 : 16);
+    return switch (opcode) {
+      case 0x90, 0xB0, 0xF0, 0x30, 0xD0, 0x10, 0x50, 0x70 -> {
+        int target = (end + (byte) operand) & 0xFFFF;
+        yield new Call("branchIf", Exit.RETURN, opcode, target, (end ^ target) > 0xFF ? 2 : 1);
+      }
+      case 0x4C -> new Call("jump", operand);
+      case 0x20 -> new Call("jumpSubroutine", end - 1, operand);
+      case 0x60 -> new Call("returnSubroutine");
+      case 0x18, 0x38, 0xAA, 0xA8, 0x8A, 0x98, 0xE8, 0xC8, 0xCA, 0x88, 0x48, 0x68, 0x0A, 0x2A, 0x4A, 0x6A ->
+          new Call("implied", opcode);
+      default -> switch (mode) {
+        case IMMEDIATE -> new Call("operate", kind, operand);
+        case ZERO_PAGE, ABSOLUTE -> new Call("access", kind, operand);
+        case ZERO_PAGE_X -> new Call("accessZeroPageX", kind, operand);
+        case ZERO_PAGE_Y -> new Call("accessZeroPageY", kind, operand);
+        case ABSOLUTE_X -> new Call("accessAbsoluteX", kind, operand);
+        case ABSOLUTE_Y -> new Call("accessAbsoluteY", kind, operand);
+        case INDIRECT_X -> new Call("accessIndirectX", kind, operand);
+        case INDIRECT_Y -> new Call("accessIndirectY", kind, operand);
+        default -> null;
+      };
+    };
+  }
+
+  // the methods called by translated blocks, the JIT compiler inlines them with the constant arguments
+
+  // a segment of a trace ends with a jump, a branch or a return, the base cycles of its translated
+  // instructions are added at once, interpreted instructions add their own, pc is set to the end
+  // of the segment and only changed by its last instruction
+  private void enter(int segmentCycles, int instructions, int end) {
+    cycles += segmentCycles;
+    translatedInstructions += instructions;
+    pc = end;
+  }
+
+  private void interpret(int address) {
+    int end = pc;
+    pc = address;
+    step();
+    pc = end;
+  }
+
+  private void interpretJump(int address) {
+    pc = address;
+    step();
+  }
+
+  private boolean branchIf(int opcode, int target, int taken) {
+    if (isTaken(opcode)) {
+      cycles += taken;
+      pc = target;
+      return true;
+    }
+    return false;
+  }
+
+  private void jump(int target) {
+    pc = target;
+  }
+
+  private void jumpSubroutine(int last, int target) {
+    push(last >> 8);
+    push(last & 0xFF);
+    pc = target;
+  }
+
+  private void returnSubroutine() {
+    pc = ((pull() | pull() << 8) + 1) & 0xFFFF;
+  }
+
+  private void implied(int opcode) {
+    switch (opcode) {
+      case 0x18 -> c = false;
+      case 0x38 -> c = true;
+      case 0xAA -> x = setNZ(a);
+      case 0xA8 -> y = setNZ(a);
+      case 0x8A -> a = setNZ(x);
+      case 0x98 -> a = setNZ(y);
+      case 0xE8 -> x = setNZ((x + 1) & 0xFF);
+      case 0xC8 -> y = setNZ((y + 1) & 0xFF);
+      case 0xCA -> x = setNZ((x - 1) & 0xFF);
+      case 0x88 -> y = setNZ((y - 1) & 0xFF);
+      case 0x48 -> push(a);
+      case 0x68 -> a = setNZ(pull());
+      case 0x0A -> a = asl(a);
+      case 0x2A -> a = rol(a);
+      case 0x4A -> a = lsr(a);
+      default -> a = ror(a);
+    }
+  }
+
+  // operations which read the operand take a cycle more if an indexed address crosses a page
+  private static boolean isRead(int kind) {
+    return kind != STA && kind != STX && kind != STY && (kind < ASL || kind > ROR) && kind != DEC && kind != INC;
+  }
+
+  private void accessZeroPageX(int kind, int address) {
+    access(kind, (address + x) & 0xFF);
+  }
+
+  private void accessZeroPageY(int kind, int address) {
+    access(kind, (address + y) & 0xFF);
+  }
+
+  private void accessAbsoluteX(int kind, int address) {
+    access(kind, indexed(address, x, isRead(kind)));
+  }
+
+  private void accessAbsoluteY(int kind, int address) {
+    access(kind, indexed(address, y, isRead(kind)));
+  }
+
+  private void accessIndirectX(int kind, int address) {
+    access(kind, pointer((address + x) & 0xFF));
+  }
+
+  private void accessIndirectY(int kind, int address) {
+    access(kind, indexed(pointer(address), y, isRead(kind)));
+  }
+
+  // store, modify or read the operand at an address
+  private void access(int kind, int address) {
+    switch (kind) {
+      case STA -> write(address, a);
+      case STX -> write(address, x);
+      case STY -> write(address, y);
+      case ASL -> write(address, asl(read(address)));
+      case ROL -> write(address, rol(read(address)));
+      case LSR -> write(address, lsr(read(address)));
+      case ROR -> write(address, ror(read(address)));
+      case DEC -> write(address, setNZ((read(address) - 1) & 0xFF));
+      case INC -> write(address, setNZ((read(address) + 1) & 0xFF));
+      default -> operate(kind, read(address));
+    }
+  }
+
+  private void operate(int kind, int value) {
+    switch (kind) {
+      case ORA -> a = setNZ(a | value);
+      case AND -> a = setNZ(a & value);
+      case EOR -> a = setNZ(a ^ value);
+      case ADC -> adc(value);
+      case LDA -> a = setNZ(value);
+      case CMP -> compare(a, value);
+      case SBC -> sbc(value);
+      case LDX -> x = setNZ(value);
+      case LDY -> y = setNZ(value);
+      case CPX -> compare(x, value);
+      case CPY -> compare(y, value);
+      case BIT -> bit(value);
+      default -> throw new IllegalStateException("operation " + kind);
+    }
+  }
+
+  private static double toDouble(long value) {
+    int exponent = (int) (value >>> 32);
+    if (exponent == 0) {
+      return 0;
+    }
+    double result = Math.scalb((double) (value & 0x7FFFFFFFL | 0x80000000L), exponent - 0x81 - 31);
+    return (value & 0x80000000L) != 0 ? -result : result;
+  }
+
+  // the nearest packed number, the value must be in the range of the packed numbers
+  private static long toPacked(double value) {
+    if (value == 0) {
+      return 0;
+    }
+    int exponent = Math.getExponent(value) + 1;
+    long mantissa = Math.round(Math.scalb(Math.abs(value), 32 - exponent));
+    if (mantissa == 1L << 32) {
+      mantissa >>= 1;
+      exponent++;
+    }
+    return (long) (0x80 + exponent) << 32 | (value < 0 ? 0x80000000L : 0) | mantissa & 0x7FFFFFFFL;
+  }
+
+  // error relative to the result, but absolute for results below 1 like SIN near zero
+  private static double getError(double value, double exact) {
+    return Math.abs(value - exact) / Math.max(1, Math.abs(exact));
+  }
+
+  // the routines of the math package compared by COMPARE and MODEL, -1 is ERROR for a packed result
+  private interface MathPackage {
+    long callOperation(String name, long x, long y);
+
+    long callFin(String text);
+
+    int getTextEnd(); // index of the first character after the number parsed by callFin
+
+    String callFout(long value); // null for ERROR
+
+    long getFunctionCycles();
+  }
+
+  // the math package of a build in the emulator
+  private record Build(Emulator emulator) implements MathPackage {
+    @Override
+    public long callOperation(String name, long x, long y) {
+      return emulator.callOperation(name, x, y);
+    }
+
+    @Override
+    public long callFin(String text) {
+      return emulator.callFin(text);
+    }
+
+    @Override
+    public int getTextEnd() {
+      int txtptr = emulator.getLabel("TXTPTR");
+      return (emulator.read(txtptr) | emulator.read(txtptr + 1) << 8) - TEXT;
+    }
+
+    @Override
+    public String callFout(long value) {
+      return emulator.callFout(value);
+    }
+
+    @Override
+    public long getFunctionCycles() {
+      return emulator.getFunctionCycles();
+    }
+  }
+
+  // the bit exact model in FloatingPoint.java, which has no cycles, it is called by reflection so the emulator
+  // still runs as a single source file, the compiled model must be on the class path
+  private static final class Model implements MathPackage {
+    private final Map<String, MethodHandle> operations = new HashMap<>();
+    private final MethodHandle fin;
+    private final MethodHandle getTextEnd;
+    private final MethodHandle fout;
+
+    Model() throws ReflectiveOperationException {
+      Class<?> type = Class.forName("FloatingPoint");
+      Object model = type.getConstructor().newInstance();
+      MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+      for (Operation operation : OPERATIONS) {
+        operations.put(operation.name(), lookup.findVirtual(type, operation.name().toLowerCase(),
+            MethodType.methodType(long.class, long.class, long.class)).bindTo(model));
+      }
+      fin = lookup.findVirtual(type, "fin", MethodType.methodType(long.class, byte[].class, int.class)).bindTo(model);
+      getTextEnd = lookup.findVirtual(type, "getTextEnd", MethodType.methodType(int.class)).bindTo(model);
+      fout = lookup.findVirtual(type, "fout", MethodType.methodType(String.class, long.class)).bindTo(model);
+    }
+
+    // the result of the model, null if it threw OVERFLOW or DIVISION_BY_ZERO where the ROM ends in ERROR
+    private static Object invoke(MethodHandle handle, Object... arguments) {
+      try {
+        return handle.invokeWithArguments(arguments);
+      } catch (ArithmeticException e) {
+        return null;
+      } catch (Throwable e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public long callOperation(String name, long x, long y) {
+      return invoke(operations.get(name), x, y) instanceof Long result ? result : -1;
+    }
+
+    @Override
+    public long callFin(String text) {
+      byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+      return invoke(fin, bytes, 0) instanceof Long result ? result : -1;
+    }
+
+    @Override
+    public int getTextEnd() {
+      return (int) invoke(getTextEnd);
+    }
+
+    @Override
+    public String callFout(long value) {
+      return (String) invoke(fout, value);
+    }
+
+    @Override
+    public long getFunctionCycles() {
+      return 0;
+    }
+  }
+
+  // results of one routine in two builds, the errors are measured against the exact result of Java
+  private static final class Comparison {
+    private final String name;
+    private final List<String> mismatches = new ArrayList<>();
+    private int cases;
+    private int identical;
+    private int errors; // ERROR in only one of them
+    private double originalError;
+    private double variantError;
+    private double difference;
+    private long originalCycles;
+    private long variantCycles;
+
+    Comparison(String name) {
+      this.name = name;
+    }
+
+    static void printHeader() {
+      System.out.printf("%-5s %9s %15s %14s %11s %10s %16s %15s%n", "FUNC", "CASES", "ERROR ORIGINAL",
+          "ERROR VARIANT", "DIFFERENCE", "IDENTICAL", "CYCLES ORIGINAL", "CYCLES VARIANT");
+    }
+
+    // count a case with the cycles of the last call, the first inputs with different results are listed
+    void add(String input, boolean same, String expected, String actual, MathPackage original,
+        MathPackage variant) {
+      cases++;
+      originalCycles += original.getFunctionCycles();
+      variantCycles += variant.getFunctionCycles();
+      if (same) {
+        identical++;
+      } else if (mismatches.size() < 10) {
+        mismatches.add(name + " MISMATCH " + input + " ORIGINAL " + expected + " VARIANT " + actual);
+      }
+    }
+
+    // count a case with packed results, -1 for ERROR, exact is NaN if Java has no result for the input
+    void add(String input, long expected, long actual, double exact, MathPackage original, MathPackage variant) {
+      add(input, expected == actual, toHex(expected), toHex(actual), original, variant);
+      addError(expected, actual, exact);
+    }
+
+    void addError(long expected, long actual, double exact) {
+      if (expected < 0 || actual < 0) {
+        errors += expected == actual ? 0 : 1;
+      } else if (!Double.isNaN(exact)) {
+        addError(toDouble(expected), toDouble(actual), exact);
+      }
+    }
+
+    void addError(double expected, double actual, double exact) {
+      originalError = Math.max(originalError, getError(expected, exact));
+      variantError = Math.max(variantError, getError(actual, exact));
+      difference = Math.max(difference, getError(actual, expected));
+    }
+
+    void print() {
+      System.out.printf("%-5s %9d %15.2E %14.2E %11.2E %9.1f%% %16d %15d%s%n", name, cases, originalError,
+          variantError, difference, 100.0 * identical / cases, originalCycles / cases, variantCycles / cases,
+          errors == 0 ? "" : "  ERROR MISMATCHES " + errors);
+      mismatches.forEach(System.out::println);
+    }
+  }
+
+  private static String toHex(long value) {
+    return value < 0 ? "ERROR" : String.format("$%010X", value);
+  }
+
+  // compare the math functions of two builds with each other and with the results of Math, each binade of the
+  // operands is split into 2^cellBits cells of the same size and one operand is taken from each, 31 takes every
+  // mantissa, the errors are the largest ones of getError, relative to the exact result or absolute below 1
+  private static void compare(Emulator original, Emulator variant, int randomCases, int cellBits) {
+    MathPackage originalBuild = new Build(original);
+    MathPackage variantBuild = new Build(variant);
+    Comparison.printHeader();
+    for (Function function : FUNCTIONS) {
+      Comparison comparison = new Comparison(function.name());
+      for (int exponent = function.low(); exponent <= function.high(); exponent++) {
+        for (long cell = 0; cell < 1L << cellBits; cell++) {
+          long offset = cell * 0x9E3779B1L & (1L << 31 - cellBits) - 1;
+          long mantissa = cell << 31 - cellBits | offset;
+          for (long sign = 0; sign <= (function.negative() ? 1 : 0); sign++) {
+            long operand = (long) (0x81 + exponent) << 32 | sign << 31 | mantissa;
+            long expected = original.callFunction(function.name(), operand);
+            long actual = variant.callFunction(function.name(), operand);
+            comparison.add(toHex(operand), expected, actual, function.exact().applyAsDouble(toDouble(operand)),
+                originalBuild, variantBuild);
+          }
+        }
+      }
+      comparison.print();
+    }
+    compareOperations(originalBuild, variantBuild, randomCases);
+    compareFin(originalBuild, variantBuild, randomCases);
+    compareFout(originalBuild, variantBuild, randomCases);
+  }
+
+  // compare the operations, FIN and FOUT of a build with the FloatingPoint model, which is bit exact for ADDPRC=1
+  private static void compareModel(Emulator emulator, int randomCases) throws ReflectiveOperationException {
+    MathPackage model = new Model();
+    MathPackage build = new Build(emulator);
+    Comparison.printHeader();
+    compareOperations(build, model, randomCases);
+    compareFin(build, model, randomCases);
+    compareFout(build, model, randomCases);
+  }
+
+  // a random packed number, mostly with exponents from 2^-40 to 2^40 where the results are exact in a double,
+  // every 16th anywhere in the range for zero, underflow and overflow, and every 16th with all mantissa bits set
+  private static long getRandomNumber(Random random) {
+    long exponent = random.nextInt(16) == 0 ? random.nextInt(256) : 0x81 + random.nextInt(-40, 41);
+    long mantissa = random.nextInt(16) == 0 ? 0x7FFFFFFFL : random.nextLong() & 0x7FFFFFFFL;
+    return exponent << 32 | (random.nextBoolean() ? 0x80000000L : 0) | mantissa;
+  }
+
+  // compare the operations of two math packages for pairs of edge cases and random pairs, x OP y is called with
+  // y in FAC and x in memory
+  private static void compareOperations(MathPackage original, MathPackage variant, int randomCases) {
+    long[] edges = {0, 0x8100000000L, 0x8180000000L, 0x817FFFFFFFL, 0xFF7FFFFFFFL, 0xFFFFFFFFFFL, 0x0100000000L,
+        0x0180000000L, 0x01FFFFFFFFL, 0xA07FFFFFFFL};
+    for (Operation operation : OPERATIONS) {
+      Comparison comparison = new Comparison(operation.name());
+      Random random = new Random(6502); // the same operands for each run and each operation
+      for (int i = 0; i < edges.length * edges.length + randomCases; i++) {
+        int edge = i < edges.length * edges.length ? i : -1;
+        long x = edge >= 0 ? edges[edge / edges.length] : getRandomNumber(random);
+        long y = edge >= 0 ? edges[edge % edges.length] : getRandomNumber(random);
+        long expected = original.callOperation(operation.name(), x, y);
+        long actual = variant.callOperation(operation.name(), x, y);
+        comparison.add(toHex(x) + " " + toHex(y), expected, actual,
+            operation.exact().applyAsDouble(toDouble(x), toDouble(y)), original, variant);
+      }
+      comparison.print();
+    }
+  }
+
+  // texts for FIN, edge cases around the syntax, the range of the exponent and the integers which fit into
+  // the mantissa, then random numbers of up to 24 digits with and without exponent
+  private static List<String> getFinCases(int randomCases) {
+    List<String> cases = new ArrayList<>(List.of("0", "-0", "+0", ".", "-", "E5", ".E-3", "1E", "1E-", "1.", ".5",
+        "00000000000001", "1 2 3", " 12 . 5 E 2", "1.5E+3", "-1.5E-3", "1.2.3", "1E2E3", "4294967295", "4294967296",
+        "419430399", "419430400", "4194303999", "4194304000", "4194304009", "65535", "-32768", "1.70141183E38",
+        "1.7014118346E38", "1.70141184E38", "2.93873588E-39", "2.9387358E-39", "1E-99", "1E99", "3.14159265358979",
+        "123456789.123456789", "0.000000001", "99999999.95", "999999999.5"));
+    for (int exponent = -45; exponent <= 40; exponent++) {
+      cases.add("1E" + exponent);
+      cases.add("9.99999999E" + exponent);
+      cases.add("123456789E" + exponent);
+      cases.add("4294967295E" + exponent);
+    }
+    for (int digits = 1; digits <= 24; digits++) {
+      cases.add("9".repeat(digits));
+      cases.add("1" + "0".repeat(digits));
+      cases.add("." + "0".repeat(digits - 1) + "1");
+      cases.add("." + "3".repeat(digits));
+    }
+
+    Random random = new Random(6502); // the same numbers for each run
+    for (int i = 0; i < randomCases; i++) {
+      StringBuilder text = new StringBuilder(random.nextInt(8) == 0 ? "-" : "");
+      int integerDigits = random.nextInt(13);
+      int fractionDigits = random.nextBoolean() ? random.nextInt(13) : -1;
+      for (int digit = 0; digit < Math.max(integerDigits, fractionDigits > 0 ? 0 : 1); digit++) {
+        text.append((char) ('0' + random.nextInt(10)));
+      }
+      if (fractionDigits >= 0) {
+        text.append('.');
+      }
+      for (int digit = 0; digit < fractionDigits; digit++) {
+        text.append((char) ('0' + random.nextInt(10)));
+      }
+      if (random.nextInt(3) == 0) {
+        text.append('E').append(random.nextInt(-45, 39));
+      }
+      cases.add(text.toString());
+    }
+    return cases;
+  }
+
+  // compare the numbers parsed by FIN of two math packages with each other and with Double.parseDouble, they
+  // must be identical including the end of the text unless both end in ERROR
+  private static void compareFin(MathPackage original, MathPackage variant, int randomCases) {
+    Comparison comparison = new Comparison("FIN");
+    for (String text : getFinCases(randomCases)) {
+      long expected = original.callFin(text);
+      int expectedEnd = expected < 0 ? -1 : original.getTextEnd();
+      long actual = variant.callFin(text);
+      int actualEnd = actual < 0 ? -1 : variant.getTextEnd();
+      double exact;
+      try {
+        exact = Double.parseDouble(text.replace(" ", ""));
+      } catch (NumberFormatException e) {
+        exact = Double.NaN; // syntax of FIN only, e.g. "." or "1E"
+      }
+      comparison.add('"' + text + '"', expected == actual && expectedEnd == actualEnd,
+          String.format("%s END %d", toHex(expected), expectedEnd),
+          String.format("%s END %d", toHex(actual), actualEnd), original, variant);
+      comparison.addError(expected, actual, exact);
+    }
+    comparison.print();
+  }
+
+  // numbers for FOUT, the powers of ten and the integers with up to ten digits where the number of digits or
+  // the exponent changes, each with its neighbours, then random numbers with any exponent
+  private static List<Long> getFoutCases(int randomCases) {
+    List<Double> edges = new ArrayList<>(List.of(0.5, 0.01, 99999999.9, 999999999.0, 999999999.5, 4294967295.0,
+        1.70141183E38, 2.93873588E-39));
+    for (int exponent = -38; exponent <= 38; exponent++) {
+      edges.add(Double.parseDouble("1E" + exponent));
+      edges.add(Double.parseDouble("9.99999999E" + (exponent - 1)));
+    }
+    for (long integer = 1; integer <= 10_000_000_000L; integer *= 10) {
+      edges.add((double) integer - 1);
+      edges.add((double) integer);
+    }
+
+    List<Long> cases = new ArrayList<>();
+    for (double edge : edges) {
+      for (double value : new double[] {edge, -edge}) {
+        long packed = toPacked(value);
+        cases.add(packed);
+        if (value != 0) {
+          cases.add(packed - 1);
+          cases.add(packed + 1);
+        }
+      }
+    }
+    Random random = new Random(6502); // the same numbers for each run
+    for (int i = 0; i < randomCases; i++) {
+      cases.add((long) random.nextInt(256) << 32 | random.nextLong() & 0xFFFFFFFFL);
+    }
+    return cases;
+  }
+
+  // compare the texts of FOUT of two math packages with each other, the error is that of the text read back by
+  // Double.parseDouble against the exact number
+  private static void compareFout(MathPackage original, MathPackage variant, int randomCases) {
+    Comparison comparison = new Comparison("FOUT");
+    for (long value : getFoutCases(randomCases)) {
+      String expected = original.callFout(value);
+      String actual = variant.callFout(value);
+      comparison.add(toHex(value), expected != null && expected.equals(actual),
+          expected == null ? "ERROR" : '"' + expected + '"', actual == null ? "ERROR" : '"' + actual + '"',
+          original, variant);
+      if (expected != null && actual != null) {
+        comparison.addError(Double.parseDouble(expected), Double.parseDouble(actual), toDouble(value));
+      } else {
+        comparison.errors += expected == actual ? 0 : 1;
+      }
+    }
+    comparison.print();
+  }
+
+  // args[0] - assembled Commodore binary, the labels are read from the .lbl file next to it
+  // args[1] - BASIC program to type in and RUN, or COMPARE=<binary>[,<cases>[,<bits>]] to compare the math package
+  //           with the number of random operands of the operations, FIN and FOUT, default 64K, and 2^bits
+  //           operands from each binade for the functions, default 2^8, 2^31 is every mantissa
+  //           or MODEL[=<cases>] to compare the operations, FIN and FOUT with the model in FloatingPoint.java
+  //           or TRACE=<file> to query a trace recorded before
+  // args[2] - optional INTERPRET to interpret the ROM instead of translating its blocks
+  //           or TRACE=<file>[,<records>] to record the last instructions of the program, default 4M records
+  //           or PROFILE=<file> to write the accesses of each RAM address by the program
+  //           for a query WRITES=<label|$address> for all writes to the address
+  //           or BEFORE=<label|$address>[,<records>] for the instructions up to its last execution, default 1000
+  public static void main(String... args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("ERROR: missing binary and program or COMPARE=<binary>");
+      return;
+    }
+    if (args[1].startsWith("TRACE=")) {
+      query(readLabels(getLabelFile(Path.of(args[0]))), Path.of(args[1].substring(6)),
+          args.length > 2 ? args[2] : "");
+      return;
+    }
+
+    boolean translate = args.length < 3 || !args[2].equals("INTERPRET");
+    Emulator emulator = load(Path.of(args[0]), translate);
+    if (args.length > 2 && args[2].startsWith("TRACE=")) {
+      String[] trace = args[2].substring(6).split(",");
+      emulator.startTrace(Path.of(trace[0]), trace.length > 1 ? Integer.parseInt(trace[1]) : 1 << 22);
+    }
+    if (args.length > 2 && args[2].startsWith("PROFILE=")) {
+      emulator.startProfile();
+    }
+    if (args[1].matches("MODEL(=\\d+)?")) {
+      try {
+        compareModel(emulator, args[1].length() > 6 ? Integer.parseInt(args[1].substring(6)) : RANDOM_CASES);
+      } catch (ClassNotFoundException e) {
+        System.err.println("ERROR: FloatingPoint not found, compile it with javac FloatingPoint.java Emulator.java");
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException(e);
+      }
+      return;
+    }
+    if (args[1].startsWith("COMPARE=")) {
+      String[] compare = args[1].substring(8).split(",");
+      int cellBits = compare.length > 2 ? Integer.parseInt(compare[2]) : CELL_BITS;
+      if (cellBits < 0 || cellBits > 31) {
+        throw new IllegalArgumentException("operands per binade must be 2^0 to 2^31, not 2^" + cellBits);
+      }
+      compare(emulator, load(Path.of(compare[0]), translate),
+          compare.length > 1 ? Integer.parseInt(compare[1]) : RANDOM_CASES, cellBits);
+      return;
+    }
+
+    String program = Files.readString(Path.of(args[1]), StandardCharsets.ISO_8859_1);
+    emulator.type(program.endsWith("\n") ? program : program + "\n");
+    long start = emulator.getCycles();
+    long translated = emulator.getTranslatedInstructions();
+    long time = System.nanoTime();
+    System.out.print(emulator.type("RUN\n"));
+    time = System.nanoTime() - time;
+    System.out.printf("%n%d cycles in %d ms, %d instructions of translated blocks%n", emulator.getCycles() - start,
+        time / 1000000, emulator.getTranslatedInstructions() - translated);
+    emulator.stopTrace();
+    if (args.length > 2 && args[2].startsWith("PROFILE=")) {
+      printProfile(emulator.getProfile(), Path.of(args[2].substring(8)));
+    }
+  }
+
+  // write the profile and compare the zero page with the addresses outside of it
+  private static void printProfile(List<Access> profile, Path file) throws IOException {
+    List<String> lines = new ArrayList<>(List.of(Access.HEADER));
+    profile.forEach(access -> lines.add(access.toString()));
+    Files.write(file, lines);
+
+    List<Access> zeroPage = profile.stream().filter(access -> access.address() < 0x100).toList();
+    List<Access> others = profile.stream().filter(access -> access.address() >= 0x100)
+        .sorted(Comparator.comparingLong(Access::saved).reversed()).toList();
+    System.out.printf("%d zero page and %d other addresses accessed, %d cycles saved in the zero page%n",
+        zeroPage.size(), others.size(), others.stream().mapToLong(Access::saved).sum());
+    System.out.println("most cycles saved in the zero page:");
+    System.out.println(Access.HEADER);
+    others.stream().limit(8).forEach(System.out::println);
+    System.out.println("least accessed in the zero page:");
+    System.out.println(Access.HEADER);
+    zeroPage.reversed().stream().limit(8).forEach(System.out::println);
+  }
+
+  private static void query(Map<String, Integer> labels, Path file, String query) throws IOException {
+    try (TraceReader reader = new TraceReader(file)) {
+      System.out.printf("%d instructions in trace, %d to %d recorded%n", reader.getCount(), reader.getFirst(),
+          reader.getCount() - 1);
+      List<TraceRecord> records;
+      if (query.startsWith("WRITES=")) {
+        records = reader.getWrites(getAddress(labels, query.substring(7)));
+      } else if (query.startsWith("BEFORE=")) {
+        String[] before = query.substring(7).split(",");
+        int count = before.length > 1 ? Integer.parseInt(before[1]) : 1000;
+        records = reader.getBefore(getAddress(labels, before[0]), count);
+      } else {
+        System.err.println("ERROR: missing WRITES=<label|$address> or BEFORE=<label|$address>");
+        return;
+      }
+      records.forEach(System.out::println);
+    }
+  }
+
+  private static int getAddress(Map<String, Integer> labels, String text) {
+    if (text.startsWith("$")) {
+      return Integer.parseInt(text.substring(1), 16);
+    }
+    Integer address = labels.get(text);
+    if (address == null) {
+      throw new IllegalArgumentException("missing label " + text);
+    }
+    return address;
+  }
+
+  // count the operand of the next instruction, the cycles saved are the ones it would take less with the
+  // operand in the zero page
+  private void profile() {
+    int opcode = read(pc);
+    Mode mode = getMode(opcode);
+    int operand = read((pc + 1) & 0xFFFF);
+    switch (mode) {
+      case ZERO_PAGE, ZERO_PAGE_X, ZERO_PAGE_Y, INDIRECT_X, INDIRECT_Y -> profile.count(pc, operand, true, 0);
+      case ABSOLUTE, ABSOLUTE_X, ABSOLUTE_Y -> {
+        int base = operand | read((pc + 2) & 0xFFFF) << 8;
+        if (opcode == 0x20 || opcode == 0x2C || opcode == 0x4C || base >= ROMLOC || pc < ROMLOC) {
+          return; // BIT only skips two bytes, CHRGOT reads the program text with its own operand
+        }
+        // the zero page opcode is 8 below, indexed with Y only LDX has one
+        int saved = 0;
+        if (mode != Mode.ABSOLUTE_Y || opcode == 0xBE) {
+          saved = CYCLES[opcode] - CYCLES[opcode - 8];
+          int address = base + (mode == Mode.ABSOLUTE_X ? x : y);
+          if (mode != Mode.ABSOLUTE && CYCLES[opcode] == 4 && (base ^ address) > 0xFF) {
+            saved++; // a read crossing a page, the zero page wraps around instead
+          }
+        }
+        profile.count(pc, base, false, saved);
+      }
+      default -> {
+      }
+    }
+  }
+
+  // accesses of a RAM address by the operands of the executed instructions, sites is the number of different
+  // instructions, the labels include constants with the same value
+  public record Access(int address, int sites, long zeroPage, long absolute, long saved, String labels) {
+
+    public static final String HEADER = "; address  sites   zero page    absolute       saved  labels";
+
+    @Override
+    public String toString() {
+      return String.format("$%04X      %5d  %10d  %10d  %10d  %s", address, sites, zeroPage, absolute, saved, labels);
+    }
+  }
+
+  // the accessed RAM addresses, most accessed first
+  public List<Access> getProfile() {
+    Map<Integer, List<String>> names = new HashMap<>();
+    labels.forEach((name, address) -> names.computeIfAbsent(address, k -> new ArrayList<>()).add(name));
+    List<Access> result = new ArrayList<>();
+    for (int address = 0; address < ROMLOC; address++) {
+      if (profile.sites[address] > 0) {
+        List<String> labels = names.getOrDefault(address, List.of()).stream().sorted().toList();
+        result.add(new Access(address, profile.sites[address], profile.zeroPage[address], profile.absolute[address],
+            profile.saved[address], String.join(" ", labels)));
+      }
+    }
+    result.sort(Comparator.comparingLong((Access access) -> access.zeroPage() + access.absolute()).reversed());
+    return result;
+  }
+
+  // access counts by operand address, indexed and indirect operands count for their base address
+  private static class Profile {
+    private final long[] zeroPage = new long[ROMLOC];
+    private final long[] absolute = new long[ROMLOC];
+    private final long[] saved = new long[ROMLOC];
+    private final int[] sites = new int[ROMLOC];
+    private final int[] operands = new int[0x10000]; // last operand of each pc, CHRGOT modifies its own
+    private final Set<Long> known = new HashSet<>();
+
+    Profile() {
+      Arrays.fill(operands, -1);
+    }
+
+    void count(int pc, int address, boolean zero, int cycles) {
+      if (zero) {
+        zeroPage[address]++;
+      } else {
+        absolute[address]++;
+      }
+      saved[address] += cycles;
+      if (operands[pc] != address) {
+        operands[pc] = address;
+        if (known.add((long) pc << 16 | address)) {
+          sites[address]++;
+        }
+      }
+    }
+  }
+
+  // an executed instruction of a trace with the registers before it and the bytes it has written, the
+  // second write is at the address in front of the first like for JSR, cycles is the cycle counter
+  // before the instruction modulo 2^24
+  public record TraceRecord(long index, int pc, int opcode, int a, int x, int y, int s, int p, int writes,
+      int writeAddress, int value0, int value1, int cycles) {
+
+    @Override
+    public String toString() {
+      StringBuilder result = new StringBuilder(String.format(
+          "%10d  %04X  %02X  A=%02X X=%02X Y=%02X S=%02X P=%02X  %8d", index, pc, opcode, a, x, y, s, p, cycles));
+      if (writes > 0) {
+        result.append(String.format("  %04X=%02X", writeAddress, value0));
+      }
+      if (writes > 1) {
+        result.append(String.format("  %04X=%02X", (writeAddress - 1) & 0xFFFF, value1));
+      }
+      return result.toString();
+    }
+  }
+
+  // trace file layout, a header, a ring of filter blocks and a ring of records with 16 bytes each:
+  // pc (2), opcode, a, x, y, s, p, write address (2), writes, value0, value1, cycles (3)
+  // each filter block has a bit set of the executed pcs and of the written addresses of BLOCK_RECORDS
+  // records, the reader only reads the records of the blocks with a match
+  private static final long TRACE_MAGIC = 0x3635303254524331L; // "6502TRC1"
+  private static final int HEADER_SIZE = 64;
+  private static final int RECORD_SIZE = 16;
+  private static final int BLOCK_RECORDS = 4096;
+  private static final int FILTER_BITS = 2048;
+  private static final int FILTER_SIZE = 2 * FILTER_BITS / 8;
+
+  private static int getFilterBit(int address) {
+    return (address ^ address >>> 11) & (FILTER_BITS - 1);
+  }
+
+  private static long getTraceSize(long capacity) {
+    return HEADER_SIZE + capacity / BLOCK_RECORDS * FILTER_SIZE + capacity * RECORD_SIZE;
+  }
+
+  // writes the records to a memory-mapped file, the header gets the number of records at the start of each
+  // block so the file can still be read up to the last complete block after a crash
+  private static class TraceWriter implements AutoCloseable {
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long capacity;
+    private long count;
+    private int position = -1; // of the current record
+    private int filter; // of the current block
+
+    TraceWriter(Path file, int records) throws IOException {
+      capacity = Math.max(1, (records + BLOCK_RECORDS - 1) / BLOCK_RECORDS) * (long) BLOCK_RECORDS;
+      if (getTraceSize(capacity) > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("trace with " + records + " records is too big");
+      }
+      channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+          StandardOpenOption.READ, StandardOpenOption.WRITE);
+      buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, getTraceSize(capacity));
+      buffer.putLong(0, TRACE_MAGIC);
+      buffer.putInt(8, RECORD_SIZE);
+      buffer.putInt(12, BLOCK_RECORDS);
+      buffer.putLong(16, capacity);
+      buffer.putLong(24, 0);
+    }
+
+    void begin(int pc, int opcode, int a, int x, int y, int s, int p, long cycles) {
+      long slot = count % capacity;
+      if (slot % BLOCK_RECORDS == 0) {
+        buffer.putLong(24, count);
+        filter = HEADER_SIZE + (int) (slot / BLOCK_RECORDS) * FILTER_SIZE;
+        for (int offset = 0; offset < FILTER_SIZE; offset += 8) {
+          buffer.putLong(filter + offset, 0); // the old records of this block are dropped
+        }
+      }
+      position = HEADER_SIZE + (int) (capacity / BLOCK_RECORDS * FILTER_SIZE + slot * RECORD_SIZE);
+      buffer.putLong(position, (long) pc << 48 | (long) opcode << 40 | (long) a << 32 | (long) x << 24 | y << 16
+          | s << 8 | p);
+      buffer.putLong(position + 8, cycles & 0xFFFFFF);
+      setFilterBit(filter, pc);
+      count++;
+    }
+
+    void end() {
+      position = -1;
+    }
+
+    // the address and value of a byte written by the current instruction
+    void write(int address, int value) {
+      if (position < 0) {
+        return; // written by a kernal routine
+      }
+      int writes = buffer.get(position + 10);
+      if (writes == 0) {
+        buffer.putShort(position + 8, (short) address);
+      }
+      if (writes < 2) {
+        buffer.put(position + 10, (byte) (writes + 1));
+        buffer.put(position + 11 + writes, (byte) value);
+      }
+      setFilterBit(filter + FILTER_SIZE / 2, address);
+    }
+
+    private void setFilterBit(int offset, int address) {
+      int bit = getFilterBit(address);
+      int index = offset + bit / 8;
+      buffer.put(index, (byte) (buffer.get(index) | 1 << (bit & 7)));
+    }
+
+    @Override
+    public void close() throws IOException {
+      buffer.putLong(24, count);
+      buffer.force();
+      channel.close();
+    }
+  }
+
+  // reads a trace file without loading it, queries only read the blocks with a match in their filter
+  public static class TraceReader implements AutoCloseable {
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final long capacity;
+    private final long count;
+
+    public TraceReader(Path file) throws IOException {
+      channel = FileChannel.open(file, StandardOpenOption.READ);
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+      if (header.getLong(0) != TRACE_MAGIC || header.getInt(8) != RECORD_SIZE
+          || header.getInt(12) != BLOCK_RECORDS) {
+        throw new IllegalArgumentException("no trace file " + file);
+      }
+      capacity = header.getLong(16);
+      count = header.getLong(24);
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, getTraceSize(capacity));
+    }
+
+    // number of recorded instructions including the ones overwritten in the ring
+    public long getCount() {
+      return count;
+    }
+
+    // index of the oldest record, the block which is written last has dropped the rest of its old records
+    public long getFirst() {
+      long end = count % BLOCK_RECORDS == 0 ? count : count - count % BLOCK_RECORDS + BLOCK_RECORDS;
+      return Math.max(0, end - capacity);
+    }
+
+    public TraceRecord get(long index) {
+      if (index < getFirst() || index >= count) {
+        throw new IndexOutOfBoundsException("record " + index + " not in trace");
+      }
+      int position = HEADER_SIZE + (int) (capacity / BLOCK_RECORDS * FILTER_SIZE + index % capacity * RECORD_SIZE);
+      long registers = buffer.getLong(position);
+      long effects = buffer.getLong(position + 8);
+      return new TraceRecord(index, (int) (registers >>> 48), (int) (registers >> 40 & 0xFF),
+          (int) (registers >> 32 & 0xFF), (int) (registers >> 24 & 0xFF), (int) (registers >> 16 & 0xFF),
+          (int) (registers >> 8 & 0xFF), (int) (registers & 0xFF), (int) (effects >> 40 & 0xFF),
+          (int) (effects >>> 48), (int) (effects >> 32 & 0xFF), (int) (effects >> 24 & 0xFF),
+          (int) (effects & 0xFFFFFF));
+    }
+
+    // all instructions which have written to the address
+    public List<TraceRecord> getWrites(int address) {
+      List<TraceRecord> result = new ArrayList<>();
+      for (long start = getFirst() - getFirst() % BLOCK_RECORDS; start < count; start += BLOCK_RECORDS) {
+        if (!hasFilterBit(start, FILTER_SIZE / 2, address)) {
+          continue;
+        }
+        for (long index = Math.max(start, getFirst()); index < Math.min(start + BLOCK_RECORDS, count); index++) {
+          TraceRecord record = get(index);
+          if (record.writes() > 0 && record.writeAddress() == address
+              || record.writes() > 1 && ((record.writeAddress() - 1) & 0xFFFF) == address) {
+            result.add(record);
+          }
+        }
+      }
+      return result;
+    }
+
+    // the instructions in front of the last execution of the address, ending with that execution
+    public List<TraceRecord> getBefore(int pc, int records) {
+      for (long start = (count - 1) - (count - 1) % BLOCK_RECORDS; start >= 0 && count > 0; start -= BLOCK_RECORDS) {
+        if (start + BLOCK_RECORDS <= getFirst()) {
+          break;
+        }
+        if (!hasFilterBit(start, 0, pc)) {
+          continue;
+        }
+        for (long index = Math.min(start + BLOCK_RECORDS, count) - 1; index >= Math.max(start, getFirst()); index--) {
+          if (get(index).pc() == pc) {
+            List<TraceRecord> result = new ArrayList<>();
+            for (long before = Math.max(getFirst(), index - records); before <= index; before++) {
+              result.add(get(before));
+            }
+            return result;
+          }
+        }
+      }
+      return List.of();
+    }
+
+    private boolean hasFilterBit(long start, int offset, int address) {
+      int bit = getFilterBit(address);
+      int filter = HEADER_SIZE + (int) (start % capacity / BLOCK_RECORDS) * FILTER_SIZE + offset;
+      return (buffer.get(filter + bit / 8) & 1 << (bit & 7)) != 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+
+  // writes a hidden class for a translated block, its method run is a sequence of calls of emulator
+  // methods with constant arguments, the class file version 49 needs no stack map frames for the branches
+  private static class BlockWriter {
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int count = 1;
+
+    // define the class in the nest of the emulator so the calls may use its private methods
+    static Block define(List<Call> calls) {
+      try {
+        MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(new BlockWriter().write(calls), true,
+            MethodHandles.Lookup.ClassOption.NESTMATE);
+        return (Block) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+      } catch (Throwable e) {
+        throw new IllegalStateException("translating block failed", e);
+      }
+    }
+
+    private int constant(String key, byte[] entry) {
+      Integer index = constants.get(key);
+      if (index == null) {
+        index = count++;
+        constants.put(key, index);
+        pool.writeBytes(entry);
+      }
+      return index;
+    }
+
+    private int utf8(String text) {
+      byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+      return constant("U" + text, concat(new byte[] {1, (byte) (bytes.length >> 8), (byte) bytes.length}, bytes));
+    }
+
+    private int type(String name) {
+      return constant("C" + name, u1u2(7, utf8(name)));
+    }
+
+    private int integer(int value) {
+      return constant("I" + value, new byte[] {3, (byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8),
+          (byte) value});
+    }
+
+    private int method(String owner, String name, String descriptor) {
+      int nameAndType = constant("N" + name + descriptor, concat(u1u2(12, utf8(name)), u2(utf8(descriptor))));
+      return constant("M" + owner + "." + name + descriptor, concat(u1u2(10, type(owner)), u2(nameAndType)));
+    }
+
+    byte[] write(List<Call> calls) {
+      ByteArrayOutputStream run = new ByteArrayOutputStream();
+      int maxStack = 1;
+      for (Call call : calls) {
+        run.write(0x2B); // aload_1 the emulator
+        for (int arg : call.args()) {
+          if (arg >= -1 && arg <= 5) {
+            run.write(0x03 + arg); // iconst
+          } else if (arg == (byte) arg) {
+            run.writeBytes(new byte[] {0x10, (byte) arg}); // bipush
+          } else if (arg == (short) arg) {
+            run.writeBytes(concat(new byte[] {0x11}, u2(arg))); // sipush
+          } else {
+            run.writeBytes(concat(new byte[] {0x13}, u2(integer(arg)))); // ldc_w
+          }
+        }
+        String descriptor = "(" + "I".repeat(call.args().length) + (call.exit() == Exit.NONE ? ")V" : ")Z");
+        run.writeBytes(concat(new byte[] {(byte) 0xB6}, u2(method("Emulator", call.method(), descriptor))));
+        if (call.exit() == Exit.RETURN) {
+          run.writeBytes(new byte[] {(byte) 0x99, 0, 4, (byte) 0xB1}); // ifeq behind the return
+        } else if (call.exit() == Exit.LOOP) {
+          run.writeBytes(new byte[] {(byte) 0x99, 0, 6, (byte) 0xA7}); // ifeq behind the goto to the start
+          run.writeBytes(u2(-(run.size() - 1)));
+        }
+        maxStack = Math.max(maxStack, 1 + call.args().length);
+      }
+      run.write(0xB1); // return
+
+      byte[] init = {0x2A, (byte) 0xB7, 0, 0, (byte) 0xB1}; // aload_0, invokespecial Object.<init>, return
+      int objectInit = method("java/lang/Object", "<init>", "()V");
+      init[2] = (byte) (objectInit >> 8);
+      init[3] = (byte) objectInit;
+
+      ByteArrayOutputStream body = new ByteArrayOutputStream();
+      body.writeBytes(u2(0x0030)); // final super
+      body.writeBytes(u2(type("EmulatorBlock")));
+      body.writeBytes(u2(type("java/lang/Object")));
+      body.writeBytes(u2(1));
+      body.writeBytes(u2(type("Emulator$Block")));
+      body.writeBytes(u2(0)); // fields
+      body.writeBytes(u2(2));
+      body.writeBytes(method("<init>", "()V", 1, 1, init));
+      body.writeBytes(method("run", "(LEmulator;)V", maxStack, 2, run.toByteArray()));
+      body.writeBytes(u2(0)); // attributes
+
+      ByteArrayOutputStream result = new ByteArrayOutputStream();
+      result.writeBytes(new byte[] {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE, 0, 0, 0, 49});
+      result.writeBytes(u2(count));
+      result.writeBytes(pool.toByteArray());
+      result.writeBytes(body.toByteArray());
+      return result.toByteArray();
+    }
+
+    // a public method with a code attribute
+    private byte[] method(String name, String descriptor, int maxStack, int maxLocals, byte[] code) {
+      ByteArrayOutputStream result = new ByteArrayOutputStream();
+      result.writeBytes(u2(0x0001));
+      result.writeBytes(u2(utf8(name)));
+      result.writeBytes(u2(utf8(descriptor)));
+      result.writeBytes(u2(1));
+      result.writeBytes(u2(utf8("Code")));
+      int length = 2 + 2 + 4 + code.length + 2 + 2;
+      result.writeBytes(new byte[] {(byte) (length >> 24), (byte) (length >> 16), (byte) (length >> 8), (byte) length});
+      result.writeBytes(u2(maxStack));
+      result.writeBytes(u2(maxLocals));
+      result.writeBytes(new byte[] {0, 0, (byte) (code.length >> 8), (byte) code.length});
+      result.writeBytes(code);
+      result.writeBytes(u2(0)); // exceptions
+      result.writeBytes(u2(0)); // attributes
+      return result.toByteArray();
+    }
+
+    private static byte[] u2(int value) {
+      return new byte[] {(byte) (value >> 8), (byte) value};
+    }
+
+    private static byte[] u1u2(int tag, int value) {
+      return new byte[] {(byte) tag, (byte) (value >> 8), (byte) value};
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+      byte[] result = Arrays.copyOf(first, first.length + second.length);
+      System.arraycopy(second, 0, result, first.length, second.length);
+      return result;
+    }
+  }
+}
@@ -0,0 +1,882 @@
+import java.nio.charset.StandardCharsets;
+
+// bit exact model of the math package with ADDPRC=1, numbers are packed into a long like they are
+// stored in memory (exponent, sign and high order mantissa, 3 more mantissa bytes)
+//
+// the routines follow the ROM step by step including the carry passed between them, so results,
+// garbage mantissas of zero and errors are the same, only the bit loops of shifts, MLTPL1 and
+// DIVIDE are replaced by word arithmetic, no objects are created except the string of fout(x)
+//
+// operations on two numbers load y into FAC with MOVFM, call the routine with x in memory and store
+// the result with MOVMF, fsub(x, y) is x-y and fcomp(x, y) is 1 if x<y like FCOMP
+public class FloatingPoint {
+  public static final long FONE = 0x8100000000L; // 1.0
+  public static final long FHALF = 0x8000000000L; // 0.5
+  public static final long TENZC = 0x8420000000L; // 10.0
+  public static final long NZ0999 = 0x9B3EBC1FFDL; // 99999999.9499
+  public static final long NZ9999 = 0x9E6E6B27FDL; // 999999999.499
+  public static final long NZMIL = 0x9E6E6B2800L; // 10^9
+
+  // coefficients of POLY and POLYX as used by LOG, EXP and SIN, highest order first
+  public static final long[] LOGCN2 = {0x7F5E56CB79L, 0x80139B0B64L, 0x8076389316L, 0x8238AA3B20L};
+  public static final long[] EXPCON = {0x7134583E56L, 0x74167EB31BL, 0x772FEEE385L, 0x7A1D841C2AL,
+      0x7C6359580AL, 0x7E75FDE7C6L, 0x8031721810L, 0x8100000000L};
+  public static final long[] SINCON = {0x84E61A2D1BL, 0x862807FBF8L, 0x8799688901L, 0x872335DFE1L,
+      0x86A55DE728L, 0x83490FDAA2L};
+
+  public static final ArithmeticException OVERFLOW = new RomError("OVERFLOW");
+  public static final ArithmeticException DIVISION_BY_ZERO = new RomError("DIVISION BY ZERO");
+
+  private static final int PLUSTK = 0xAA;
+  private static final int MINUTK = 0xAB;
+
+  // power of ten table of FOUT up to FDCEND
+  private static final int[] FOUTBL = {-100000000, 10000000, -1000000, 100000, -10000, 1000, -100, 10, -1};
+
+  private static final long MASK32 = 0xFFFFFFFFL;
+  private static final long MASK40 = 0xFFFFFFFFFFL;
+  private static final long BIT39 = 1L << 39;
+
+  // targets of SHIFTR given by the X register
+  private static final int FAC = 0;
+  private static final int ARG = 1;
+  private static final int RES = 2;
+
+  // mantissas hold HO, MOH, MO and LO, the other fields are single bytes
+  private int facexp;
+  private long facm;
+  private int facsgn;
+  private int sgnflg;
+  private int bits;
+  private int argexp;
+  private long argm;
+  private int argsgn;
+  private int arisgn;
+  private int facov;
+  private int oldov;
+  private long resm;
+  private boolean carry;
+  private int yreg; // Y register left by SHIFTR
+
+  // FIN and FOUT
+  private int deccnt;
+  private int tenexp;
+  private int dptflg;
+  private int expsgn;
+  private byte[] text;
+  private int txtptr;
+  private int fbufpt;
+  private final byte[] fbuffr = new byte[20];
+
+  private long tempf1;
+  private long tempf2;
+
+  // an error of the ROM, the instances are shared, so they have no stack trace
+  private static final class RomError extends ArithmeticException {
+    private static final long serialVersionUID = 1;
+
+    RomError(String message) {
+      super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return this;
+    }
+  }
+
+  public long fadd(long x, long y) {
+    movfm(y);
+    fadd(x);
+    return movmf();
+  }
+
+  public long fsub(long x, long y) {
+    movfm(y);
+    fsub(x);
+    return movmf();
+  }
+
+  public long fmult(long x, long y) {
+    movfm(y);
+    fmult(x);
+    return movmf();
+  }
+
+  public long fdiv(long x, long y) {
+    movfm(y);
+    fdiv(x);
+    return movmf();
+  }
+
+  // returns 1 if x<y, 0 if x=y and -1 if x>y
+  public int fcomp(long x, long y) {
+    movfm(y);
+    return fcomp(x);
+  }
+
+  public long fint(long x) {
+    movfm(x);
+    fint();
+    return movmf();
+  }
+
+  // C0*X^N+C1*X^(N-1)+...+C(N)
+  public long poly(long x, long[] coefficients) {
+    movfm(x);
+    poly(coefficients);
+    return movmf();
+  }
+
+  // P(X^2)*X
+  public long polyx(long x, long[] coefficients) {
+    movfm(x);
+    polyx(coefficients);
+    return movmf();
+  }
+
+  // read a number from text at offset like FIN does after CHRGOT, stops at the first character that
+  // does not belong to the number, getTextEnd() returns its index
+  public long fin(byte[] text, int offset) {
+    this.text = text;
+    txtptr = offset;
+    facov = 0;
+    bits = 0;
+    fin();
+    this.text = null;
+    return movmf();
+  }
+
+  public int getTextEnd() {
+    return txtptr;
+  }
+
+  // write the characters of FOUT without the terminating zero to buffer, returns their count
+  public int fout(long x, byte[] buffer, int offset) {
+    movfm(x);
+    bits = 0;
+    fout();
+    int length = 0;
+    while (fbuffr[length] != 0) {
+      buffer[offset + length] = fbuffr[length];
+      length++;
+    }
+    return length;
+  }
+
+  public String fout(long x) {
+    byte[] buffer = new byte[fbuffr.length];
+    return new String(buffer, 0, fout(x, buffer, 0), StandardCharsets.ISO_8859_1);
+  }
+
+  private void fsub(long mem) {
+    conupk(mem);
+    facsgn ^= 0xFF;
+    arisgn = facsgn ^ argsgn;
+    faddt();
+  }
+
+  private void fadd(long mem) {
+    conupk(mem);
+    faddt();
+  }
+
+  private void faddt() {
+    if (facexp == 0) {
+      movfa();
+      return;
+    }
+    oldov = facov;
+    faddc(argexp);
+  }
+
+  // add ARG with the exponent in a to FAC, MUL10 enters here with a exponent above FACEXP
+  private void faddc(int a) {
+    int y = a;
+    if (a == 0) {
+      return;
+    }
+    int diff = a - facexp;
+    carry = diff >= 0;
+    a = diff & 0xFF;
+    int x = ARG;
+    if (a != 0) {
+      if (!carry) {
+        facov = 0;
+      } else {
+        facexp = y;
+        facsgn = argsgn;
+        int sum = (a ^ 0xFF) + 1;
+        a = sum & 0xFF;
+        oldov = 0;
+        x = FAC;
+      }
+
+      carry = a >= 0xF9;
+      if (((a - 0xF9) & 0x80) != 0) {
+        a = shiftr(x, a, false);
+      } else {
+        // LSR shifts in a zero that is kept by the following shifts
+        int count = 0x100 - a;
+        long v = count < 40 ? (getMantissa(x) << 8 | facov) >>> count : 0;
+        setMantissa(x, v >>> 8);
+        a = (int) v & 0xFF;
+        carry = false;
+      }
+    }
+
+    if ((arisgn & 0x80) == 0) {
+      int sum = a + oldov + (carry ? 1 : 0);
+      facov = sum & 0xFF;
+      long m = facm + argm + (sum >> 8);
+      facm = m & MASK32;
+      carry = m > MASK32;
+      if (carry) {
+        rndshf();
+      }
+      return;
+    }
+
+    int sum = (a ^ 0xFF) + oldov + 1;
+    facov = sum & 0xFF;
+    long big = x == ARG ? facm : argm;
+    long small = x == ARG ? argm : facm;
+    long m = big - small - (sum > 0xFF ? 0 : 1);
+    facm = m & MASK32;
+    carry = m >= 0;
+    fadflt();
+  }
+
+  private void fadflt() {
+    if (!carry) {
+      negfac();
+    }
+    normal();
+  }
+
+  private void normal() {
+    long v = facm << 8 | facov;
+    int shift = 0;
+    while ((v & 0xFF00000000L) == 0) {
+      v = v << 8 & MASK40;
+      shift += 8;
+      if (shift == 32) {
+        setFac(v);
+        carry = true;
+        zerofc();
+        return;
+      }
+    }
+    int count = Long.numberOfLeadingZeros(v) - 24;
+    v <<= count;
+    shift += count;
+    setFac(v);
+    carry = shift >= facexp;
+    if (carry) {
+      zerofc();
+      return;
+    }
+    facexp -= shift;
+  }
+
+  private void zerofc() {
+    facexp = 0;
+    facsgn = 0;
+  }
+
+  private void rndshf() {
+    facexp = (facexp + 1) & 0xFF;
+    if (facexp == 0) {
+      throw OVERFLOW;
+    }
+    long v = facm << 8 | facov;
+    long in = carry ? BIT39 : 0;
+    carry = (v & 1) != 0;
+    setFac(v >>> 1 | in);
+  }
+
+  private void negfac() {
+    facsgn ^= 0xFF;
+    negfch();
+  }
+
+  private void negfch() {
+    setFac(-(facm << 8 | facov) & MASK40);
+  }
+
+  // shift the mantissa of x right by -a bits, bytes are shifted through FACOV and filled with BITS,
+  // single bits are shifted keeping the sign, returns the shifted out byte
+  private int shiftr(int x, int a, boolean shftr2) {
+    while (true) {
+      if (!shftr2) {
+        int sum = a + 8 + (carry ? 1 : 0);
+        a = sum & 0xFF;
+        carry = sum > 0xFF;
+      }
+      if (shftr2 || (a & 0x80) != 0 || a == 0) {
+        long m = getMantissa(x);
+        facov = (int) m & 0xFF;
+        setMantissa(x, m >>> 8 | (long) bits << 24);
+        shftr2 = false;
+        continue;
+      }
+
+      int diff = a - 8 - (carry ? 0 : 1);
+      carry = diff >= 0;
+      yreg = diff & 0xFF;
+      a = facov;
+      if (!carry) {
+        long v = getMantissa(x) << 8 | a;
+        v = v << 24 >> Math.min(24 + 0x100 - yreg, 63) & MASK40;
+        yreg = 0;
+        setMantissa(x, v >>> 8);
+        a = (int) v & 0xFF;
+      }
+      carry = false;
+      return a;
+    }
+  }
+
+  private long getMantissa(int x) {
+    return x == FAC ? facm : x == ARG ? argm : resm;
+  }
+
+  private void setMantissa(int x, long m) {
+    if (x == FAC) {
+      facm = m;
+    } else if (x == ARG) {
+      argm = m;
+    } else {
+      resm = m;
+    }
+  }
+
+  private void setFac(long v) {
+    facm = v >>> 8;
+    facov = (int) v & 0xFF;
+  }
+
+  private void fmult(long mem) {
+    conupk(mem);
+    if (facexp == 0 || !muldiv()) {
+      return;
+    }
+    resm = 0;
+    mltply(facov);
+    mltply((int) facm & 0xFF);
+    mltply((int) (facm >>> 8) & 0xFF);
+    mltply((int) (facm >>> 16) & 0xFF);
+    mltpl1((int) (facm >>> 24));
+    movfr();
+  }
+
+  private void mltply(int a) {
+    if (a == 0) {
+      shiftr(RES, 0, true);
+    } else {
+      mltpl1(a);
+    }
+  }
+
+  // MLTPL1 adds ARG for each bit of a and shifts RES and FACOV right, the eight truncating shifts
+  // give the same as adding ARG*a and shifting by a byte
+  private void mltpl1(int a) {
+    long v = ((resm << 8 | facov) >>> 8) + argm * a;
+    resm = v >>> 8;
+    facov = (int) v & 0xFF;
+    carry = true;
+  }
+
+  private void conupk(long mem) {
+    argm = mem & MASK32 | 0x80000000L;
+    argsgn = (int) (mem >>> 24) & 0xFF;
+    arisgn = argsgn ^ facsgn;
+    argexp = (int) (mem >>> 32) & 0xFF;
+  }
+
+  // add the exponents for FMULT and FDIV, false if the result underflowed to zero
+  private boolean muldiv() {
+    int a = argexp;
+    if (a == 0) {
+      zerofc();
+      return false;
+    }
+    int sum = a + facexp;
+    a = sum & 0xFF;
+    if (sum > 0xFF) {
+      if ((a & 0x80) != 0) {
+        throw OVERFLOW;
+      }
+    } else if ((a & 0x80) == 0) {
+      zerofc();
+      return false;
+    }
+    sum = a + 0x80;
+    carry = sum > 0xFF;
+    facexp = sum & 0xFF;
+    facsgn = facexp == 0 ? 0 : arisgn;
+    return true;
+  }
+
+  private void mul10() {
+    movaf();
+    if (facexp == 0) {
+      return;
+    }
+    int a = facexp + 2;
+    if (a > 0xFF) {
+      throw OVERFLOW;
+    }
+    arisgn = 0;
+    faddc(a);
+    facexp = (facexp + 1) & 0xFF;
+    if (facexp == 0) {
+      throw OVERFLOW;
+    }
+  }
+
+  private void div10() {
+    movaf();
+    arisgn = 0;
+    movfm(TENZC);
+    fdivt();
+  }
+
+  private void fdiv(long mem) {
+    conupk(mem);
+    if (facexp == 0) {
+      throw DIVISION_BY_ZERO;
+    }
+    fdivt();
+  }
+
+  private void fdivt() {
+    round();
+    facexp = -facexp & 0xFF;
+    if (!muldiv()) {
+      return;
+    }
+    facexp = (facexp + 1) & 0xFF;
+    if (facexp == 0) {
+      throw OVERFLOW;
+    }
+
+    // DIVIDE shifts 34 quotient bits into RESHO to RESLO and the upper bits of FACOV, as both
+    // mantissas are normalized this is ARG*2^33/FAC, ARG is left with twice the remainder of 2^32
+    long quotient = (argm << 31) / facm;
+    long remainder = (argm << 31) % facm << 1;
+    quotient = quotient << 2 | (remainder / facm << 1) | (remainder % facm << 1) / facm;
+    argm = remainder % facm << 1 & MASK32;
+    resm = quotient >>> 2;
+    facov = (int) (quotient & 3) << 6;
+    movfr();
+  }
+
+  private void movfr() {
+    facm = resm;
+    normal();
+  }
+
+  private void movfm(long mem) {
+    facm = mem & MASK32 | 0x80000000L;
+    facsgn = (int) (mem >>> 24) & 0xFF;
+    facexp = (int) (mem >>> 32) & 0xFF;
+    facov = 0;
+  }
+
+  private long movmf() {
+    round();
+    facov = 0;
+    return (long) facexp << 32 | (long) ((facsgn | 0x7F) & (int) (facm >>> 24)) << 24 | facm & 0xFFFFFF;
+  }
+
+  private void movfa() {
+    facsgn = argsgn;
+    facexp = argexp;
+    facm = argm;
+    facov = 0;
+  }
+
+  private void movaf() {
+    round();
+    argexp = facexp;
+    argm = facm;
+    argsgn = facsgn;
+    facov = 0;
+  }
+
+  private void round() {
+    if (facexp == 0) {
+      return;
+    }
+    carry = (facov & 0x80) != 0;
+    facov = facov << 1 & 0xFF;
+    if (carry) {
+      incrnd();
+    }
+  }
+
+  private void incrnd() {
+    facm = (facm + 1) & MASK32;
+    if (facm == 0) {
+      rndshf();
+    }
+  }
+
+  private int sign() {
+    return facexp == 0 ? 0 : fcsign();
+  }
+
+  private int fcsign() {
+    return (facsgn & 0x80) != 0 ? -1 : 1;
+  }
+
+  private int fcomp(long mem) {
+    int x = (int) (mem >>> 32) & 0xFF;
+    if (x == 0) {
+      return sign();
+    }
+    int ho = (int) (mem >>> 24) & 0xFF;
+    if (((ho ^ facsgn) & 0x80) != 0) {
+      return fcsign();
+    }
+
+    if (x != facexp) {
+      carry = x >= facexp;
+    } else if ((ho | 0x80) != (int) (facm >>> 24)) {
+      carry = (ho | 0x80) >= (int) (facm >>> 24);
+    } else if ((mem & 0xFFFF00) != (facm & 0xFFFF00)) {
+      carry = (mem & 0xFFFF00) >= (facm & 0xFFFF00);
+    } else {
+      int diff = ((int) mem & 0xFF) - ((int) facm & 0xFF) - (facov > 0x7F ? 1 : 0);
+      if ((diff & 0xFF) == 0) {
+        return 0;
+      }
+      carry = diff >= 0;
+    }
+    int a = carry ? facsgn ^ 0xFF : facsgn;
+    return (a & 0x80) != 0 ? -1 : 1;
+  }
+
+  // leave INT(FAC) in the mantissa as a signed number
+  private void qint() {
+    if (facexp == 0) {
+      facm = 0;
+      yreg = 0;
+      return;
+    }
+    carry = facexp >= 0xA0;
+    int a = (facexp - 0xA0) & 0xFF;
+    if ((facsgn & 0x80) != 0) {
+      bits = 0xFF;
+      negfch();
+    }
+    carry = a >= 0xF9;
+    if (((a - 0xF9) & 0x80) != 0) {
+      shiftr(FAC, a, false);
+      bits = yreg;
+      return;
+    }
+
+    long m = facm >>> 1 | (long) (facsgn & 0x80) << 24;
+    long v = m << 8 | m >>> 25 | (facm & 1) << 7;
+    v = v << 24 >> Math.min(24 + 0xFF - a, 63) & MASK40;
+    facm = v >>> 8;
+    carry = false;
+    yreg = 0;
+    bits = 0;
+  }
+
+  private void fint() {
+    if (facexp >= 0xA0) {
+      return;
+    }
+    qint();
+    facov = yreg;
+    int a = facsgn;
+    facsgn = yreg;
+    carry = ((a ^ 0x80) & 0x80) != 0;
+    facexp = 0xA0;
+    fadflt();
+  }
+
+  private void negop() {
+    if (facexp != 0) {
+      facsgn ^= 0xFF;
+    }
+  }
+
+  private void poly(long[] coefficients) {
+    tempf2 = movmf();
+    fmult(coefficients[0]);
+    for (int i = 1; i < coefficients.length; i++) {
+      if (i > 1) {
+        fmult(tempf2);
+      }
+      fadd(coefficients[i]);
+    }
+  }
+
+  private void polyx(long[] coefficients) {
+    tempf1 = movmf();
+    fmult(tempf1);
+    poly(coefficients);
+    fmult(tempf1);
+  }
+
+  // CHRGET skips spaces, carry is clear for digits
+  private int chrget() {
+    txtptr++;
+    return chrgot();
+  }
+
+  private int chrgot() {
+    int a;
+    while ((a = txtptr < text.length ? text[txtptr] & 0xFF : 0) == ' ') {
+      txtptr++;
+    }
+    carry = a < '0' || a > '9';
+    return a;
+  }
+
+  private void fin() {
+    deccnt = 0;
+    tenexp = 0;
+    dptflg = 0;
+    expsgn = 0;
+    facexp = 0;
+    facm = 0;
+    facsgn = 0;
+    sgnflg = 0;
+
+    int a = chrgot();
+    if (carry) {
+      if (a == '-') {
+        sgnflg = 0xFF;
+        a = chrget();
+      } else if (a == '+') {
+        a = chrget();
+      }
+    }
+
+    while (true) {
+      if (!carry) {
+        if ((dptflg & 0x80) != 0) {
+          deccnt = (deccnt + 1) & 0xFF;
+        }
+        mul10();
+        finlog(a - '0');
+        a = chrget();
+        continue;
+      }
+      if (a == '.') {
+        dptflg = 0x80 | dptflg >>> 1;
+        if ((dptflg & 0x40) == 0) {
+          a = chrget();
+          continue;
+        }
+      }
+      break;
+    }
+
+    int exponent = tenexp;
+    if (a == 'E') {
+      a = chrget();
+      if (carry) {
+        if (a == MINUTK || a == '-') {
+          expsgn = 0x80 | expsgn >>> 1;
+          a = chrget();
+        } else if (a == PLUSTK || a == '+') {
+          a = chrget();
+        }
+      }
+      while (!carry) {
+        if (tenexp < 10) {
+          tenexp = (tenexp * 10 + a - '0') & 0xFF;
+        } else if ((expsgn & 0x80) != 0) {
+          tenexp = 100;
+        } else {
+          throw OVERFLOW;
+        }
+        a = chrget();
+      }
+      exponent = (expsgn & 0x80) != 0 ? -tenexp & 0xFF : tenexp;
+    }
+
+    tenexp = (exponent - deccnt) & 0xFF;
+    if ((tenexp & 0x80) != 0) {
+      do {
+        div10();
+        tenexp = (tenexp + 1) & 0xFF;
+      } while (tenexp != 0);
+    } else {
+      while (tenexp != 0) {
+        mul10();
+        tenexp--;
+      }
+    }
+    if ((sgnflg & 0x80) != 0) {
+      negop();
+    }
+  }
+
+  private void finlog(int digit) {
+    movaf();
+    facm = (long) digit << 24;
+    facexp = 0x88;
+    facov = 0;
+    facsgn = 0;
+    carry = (digit & 0x80) == 0;
+    fadflt();
+    arisgn = argsgn ^ facsgn;
+    faddt();
+  }
+
+  private void fout() {
+    int y = 1;
+    int a = (facsgn & 0x80) != 0 ? '-' : ' ';
+    fbuffr[y - 1] = (byte) a;
+    facsgn = a;
+    fbufpt = y;
+    y++;
+    if (facexp == 0) {
+      fbuffr[y - 1] = '0';
+      fbuffr[y] = 0;
+      return;
+    }
+
+    deccnt = 0;
+    if (facexp <= 0x80) {
+      fmult(NZMIL);
+      deccnt = 0xF7;
+    }
+    int compare = fcomp(NZ9999);
+    while (compare == 1) {
+      div10();
+      deccnt = (deccnt + 1) & 0xFF;
+      compare = fcomp(NZ9999);
+    }
+    if (compare != 0) {
+      while ((compare = fcomp(NZ0999)) != 1) {
+        mul10();
+        deccnt = (deccnt - 1) & 0xFF;
+      }
+      fadd(FHALF);
+    }
+    qint();
+
+    // number of digits before the decimal point and the exponent to print
+    int x = 1;
+    a = (deccnt + 10) & 0xFF;
+    if ((a & 0x80) == 0 && a < 11) {
+      x = (a - 1) & 0xFF;
+      a = 2;
+    }
+    tenexp = (a - 2) & 0xFF;
+    deccnt = x;
+    if (x == 0 || (x & 0x80) != 0) {
+      y = fbufpt + 1;
+      fbuffr[y - 1] = '.';
+      if (x != 0) {
+        y++;
+        fbuffr[y - 1] = '0';
+      }
+      fbufpt = y;
+    }
+
+    // get each digit by adding the powers of ten until the sign changes
+    x = 0x80;
+    for (int power : FOUTBL) {
+      long m;
+      do {
+        m = (facm & MASK32) + (power & MASK32);
+        facm = m & MASK32;
+        x = (x + 1) & 0xFF;
+      } while ((m > MASK32) == ((x & 0x80) != 0));
+      carry = m > MASK32;
+      a = x;
+      if (carry) {
+        a = (a ^ 0xFF) + 0x0B;
+        carry = a > 0xFF;
+        a &= 0xFF;
+      }
+      a = (a + '0' - 1 + (carry ? 1 : 0)) & 0xFF;
+      y = fbufpt + 1;
+      x = a;
+      fbuffr[y - 1] = (byte) (a & 0x7F);
+      deccnt = (deccnt - 1) & 0xFF;
+      if (deccnt == 0) {
+        y++;
+        fbuffr[y - 1] = '.';
+      }
+      fbufpt = y;
+      x = (x ^ 0xFF) & 0x80;
+    }
+
+    // remove trailing zeroes and append the exponent
+    y = fbufpt;
+    do {
+      a = fbuffr[--y];
+    } while (a == '0');
+    if (a != '.') {
+      y++;
+    }
+    if (tenexp == 0) {
+      fbuffr[y] = 0;
+      return;
+    }
+    a = '+';
+    x = tenexp;
+    if ((x & 0x80) != 0) {
+      x = -tenexp & 0xFF;
+      a = '-';
+    }
+    fbuffr[y + 1] = (byte) a;
+    fbuffr[y] = 'E';
+    fbuffr[y + 2] = (byte) ('0' + x / 10);
+    fbuffr[y + 3] = (byte) ('0' + x % 10);
+    fbuffr[y + 4] = 0;
+  }
+
+  // evaluate a routine e.g. FADD 3 0.5, operands are numbers for FIN or packed hex values like $8140000000
+  public static void main(String... args) {
+    if (args.length < 2) {
+      System.err.println("ERROR: missing routine and operands");
+      return;
+    }
+
+    FloatingPoint fp = new FloatingPoint();
+    try {
+      long x = parse(fp, args[1]);
+      long y = args.length > 2 ? parse(fp, args[2]) : 0;
+      String routine = args[0].toUpperCase();
+      if (routine.equals("FCOMP")) {
+        System.out.println(fp.fcomp(x, y));
+        return;
+      }
+
+      long result = switch (routine) {
+        case "FADD" -> fp.fadd(x, y);
+        case "FSUB" -> fp.fsub(x, y);
+        case "FMULT" -> fp.fmult(x, y);
+        case "FDIV" -> fp.fdiv(x, y);
+        case "INT" -> fp.fint(x);
+        case "FIN" -> x;
+        case "LOGCN2" -> fp.polyx(x, LOGCN2);
+        case "EXPCON" -> fp.poly(x, EXPCON);
+        case "SINCON" -> fp.polyx(x, SINCON);
+        default -> throw new IllegalArgumentException("unknown routine " + routine);
+      };
+      System.out.printf("$%010X %s\n", result, fp.fout(result));
+    } catch (ArithmeticException e) {
+      System.out.printf("?%s ERROR\n", e.getMessage()); // like BASIC, e.g. ?DIVISION BY ZERO ERROR
+    }
+  }
+
+  private static long parse(FloatingPoint fp, String operand) {
+    if (operand.startsWith("$")) {
+      return Long.parseLong(operand.substring(1), 16);
+    }
+    return fp.fin(operand.getBytes(StandardCharsets.ISO_8859_1), 0);
+  }
+}
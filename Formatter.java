@@ -1,11 +1,22 @@
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -14,16 +25,30 @@ public class Formatter {
   private Map<String, String> overwrites = new HashMap<>();
   private Map<String, String> defines = new HashMap<>();
 
+  // metrics of the stages as JSON objects and the counters of the current stage
+  private final List<String> metrics = new ArrayList<>();
+  private final Map<String, Integer> counters = new LinkedHashMap<>();
+
+  // first and last free zero page byte for the absolute RAM variables, null to keep them
+  private int[] zeroPageFree;
+  private Path profileFile; // written by the emulator with PROFILE, null to rank the variables by references
+  private final List<String> relocations = new ArrayList<>();
+
   // symbol names which define target specific configuration
   private List<String> configs =
-      List.of("ADDPRC", "BUFLEN", "BUFOFS", "BUFPAG", "CBMRND", "CLMWID", "DISKO", "EXTIO", "GETCMD",
-          "INTPRC", "KIMROM", "LINLEN", "LNGERR", "LONGI", "NULCMD", "RAMLOC",
-          "ROMLOC", "ROMSW", "RORSW", "STKEND", "TIME");
+      List.of("ADDPRC", "ARYCSH", "BLKOUT", "BLTUNR", "BUFLEN", "BUFOFS", "BUFPAG", "CBMRND", "CLMWID", "CRNIDX",
+          "CRNSPC", "DISKO", "EXTIO", "FINACC", "FORINT", "FOUTTB", "GETCMD", "GRBCMP", "INTPRC", "KIMROM", "LINLEN",
+          "LNGERR", "LONGI", "MEMTOP", "NULCMD", "QSQMUL", "RAMLOC", "ROMLOC", "ROMSW", "RORSW", "STKEND", "TIME",
+          "TRNTAB");
 
   // remove configuration symbol after conditional statements have be resolved
   private List<String> removeConfigs =
-      List.of("CBMRND", "DISKO", "EXTIO", "GETCMD", "INTPRC", "KIMROM", "LNGERR", "LONGI", "NULCMD", "ROMSW", "RORSW",
-          "TIME");
+      List.of("ARYCSH", "BLKOUT", "BLTUNR", "CBMRND", "CRNIDX", "CRNSPC", "DISKO", "EXTIO", "FINACC", "FORINT",
+          "FOUTTB", "GETCMD", "GRBCMP", "INTPRC", "KIMROM", "LNGERR", "LONGI", "MEMTOP", "NULCMD", "QSQMUL", "ROMSW",
+          "RORSW", "TIME", "TRNTAB");
+
+  // configuration symbols which are addresses used by the code if not zero, e.g. LDWDI MEMTOP or JMP BLKOUT
+  private List<String> addressConfigs = List.of("BLKOUT", "MEMTOP");
 
   // regex patterns to remove unwanted lines
   private List<String> removePatterns = List.of(
@@ -39,10 +64,21 @@ public class Formatter {
     for (String overwrite : options) {
       String name = overwrite.split("=")[0];
       String value = overwrite.split("=")[1];
-      this.overwrites.put(name, value);
+      if (name.equals("ZPFREE")) {
+        String[] range = value.split("-");
+        zeroPageFree = new int[] {parseAddress(range[0]), parseAddress(range[range.length - 1])};
+      } else if (name.equals("ZPPROFILE")) {
+        profileFile = Path.of(value);
+      } else {
+        this.overwrites.put(name, value);
+      }
     }
   }
 
+  private static int parseAddress(String value) {
+    return value.startsWith("$") ? Integer.parseInt(value.substring(1), 16) : Integer.parseInt(value);
+  }
+
   private String getDefine(String name) {
     return overwrites.getOrDefault(name, defines.get(name));
   }
@@ -71,34 +107,45 @@ public class Formatter {
       return Boolean.FALSE; // remove unwanted REALIO check
     }
 
+    // guards of the options, e.g. FOUTTB<>0 .AND ADDPRC=0, resolved once any part is false or all are true
+    if (condition.contains(" .AND ")) {
+      Boolean result = Boolean.TRUE;
+      for (String part : condition.split(" \\.AND ")) {
+        Boolean include = evaluateCondition(part);
+        if (include == Boolean.FALSE) {
+          return Boolean.FALSE;
+        }
+        result = include == null ? null : result;
+      }
+      return result;
+    }
+
     Matcher simple = Pattern.compile("^([A-Z]+)(<>|=)([0-9]+)$").matcher(condition);
     if (simple.matches()) {
-      String name = simple.group(1);
-      String actual = getDefine(name);
-      String expected = simple.group(3);
+      // compared as numbers, e.g. MEMTOP=$0000 is zero
+      Long actual = new Evaluator(simple.group(1)).evaluate();
+      long expected = Long.parseLong(simple.group(3));
       if (actual == null) {
         return null; // symbol not yet defined
       }
 
       String operator = simple.group(2);
       if (operator.equals("=")) {
-        return actual.equals(expected);
+        return actual == expected;
       }
 
-      return !actual.equals(expected);
+      return actual != expected;
     }
 
-    Matcher or = Pattern.compile("^\\((\\S+)\\)(<>|=)([0-9]+)$").matcher(condition);
+    Matcher or = Pattern.compile("^\\(([A-Z]+\\|[A-Z]+)\\)(<>|=)([0-9]+)$").matcher(condition);
     if (or.matches()) {
-      String actual0 = getDefine(or.group(1).split("\\|")[0]);
-      String actual1 = getDefine(or.group(1).split("\\|")[1]);
-      if (actual0 == null || actual1 == null) {
+      Long actual = new Evaluator(or.group(1)).evaluate();
+      if (actual == null) {
         return null; // symbols not yet define
       }
 
       String operator = or.group(2);
-      int expected = Integer.parseInt(or.group(3));
-      int actual = Integer.parseInt(actual0) | Integer.parseInt(actual1);
+      long expected = Long.parseLong(or.group(3));
       if (operator.equals("=")) {
         return actual == expected;
       }
@@ -106,13 +153,116 @@ public class Formatter {
       return actual != expected;
     }
 
+    // other conditions created by the converter e.g. (REALIO-3*ADDPRC)<>0
+    Matcher general = Pattern.compile("^(.+)(<>|=)(-?[0-9]+)$").matcher(condition);
+    if (general.matches()) {
+      Long actual = new Evaluator(general.group(1)).evaluate();
+      if (actual == null) {
+        return null; // unknown symbol or unsupported expression
+      }
+
+      long expected = Long.parseLong(general.group(3));
+      if (general.group(2).equals("=")) {
+        return actual == expected;
+      }
+
+      return actual != expected;
+    }
+
     return null;
   }
 
+  // evaluates a ca65 expression with the values of the configuration symbols
+  private class Evaluator {
+    private final String text;
+    private int index;
+    private boolean unknown;
+
+    Evaluator(String text) {
+      this.text = text.replace(" ", "");
+    }
+
+    // value of the expression, null if it contains an unknown symbol or is not supported
+    Long evaluate() {
+      long value = parseSum();
+      return unknown || index != text.length() ? null : value;
+    }
+
+    private boolean accept(char c) {
+      if (index < text.length() && text.charAt(index) == c) {
+        index++;
+        return true;
+      }
+      return false;
+    }
+
+    private long parseSum() {
+      long value = parseProduct();
+      while (true) {
+        if (accept('+')) {
+          value += parseProduct();
+        } else if (accept('-')) {
+          value -= parseProduct();
+        } else if (accept('|')) {
+          value |= parseProduct();
+        } else {
+          return value;
+        }
+      }
+    }
+
+    private long parseProduct() {
+      long value = parseUnary();
+      while (true) {
+        if (accept('*')) {
+          value *= parseUnary();
+        } else if (accept('/')) {
+          long divisor = parseUnary();
+          unknown |= divisor == 0;
+          value = divisor == 0 ? 0 : value / divisor;
+        } else if (accept('&')) {
+          value &= parseUnary();
+        } else {
+          return value;
+        }
+      }
+    }
+
+    private long parseUnary() {
+      if (accept('-')) {
+        return -parseUnary();
+      }
+      if (accept('(')) {
+        long value = parseSum();
+        unknown |= !accept(')');
+        return value;
+      }
+      Matcher matcher = Pattern.compile("\\$[0-9A-F]+|[0-9]+|[A-Z][A-Z0-9]*").matcher(text);
+      matcher.region(index, text.length());
+      if (!matcher.lookingAt()) {
+        unknown = true;
+        return 0;
+      }
+      index = matcher.end();
+      String value = matcher.group();
+      if (Character.isLetter(value.charAt(0))) {
+        value = getDefine(value);
+        if (value == null || !value.matches("\\$[0-9A-Fa-f]+|[0-9]+")) {
+          unknown = true;
+          return 0;
+        }
+      }
+      return value.startsWith("$") ? Long.parseLong(value.substring(1), 16) : Long.parseLong(value);
+    }
+  }
+
   // update actual value of configuration symbol
   private void updateSymbols(String line) {
     for (String config : configs) {
-      Matcher matcher = Pattern.compile("^" + config + "(=| .SET )([0-9]*).*$").matcher(line);
+      if (!line.startsWith(config)) {
+        continue; // avoid compiling the pattern for all other lines
+      }
+      Matcher matcher = Pattern.compile("^" + config + "(=| .SET )(\\$[0-9A-F]+|[0-9]*).*$").matcher(line);
       if (matcher.matches()) {
         defines.put(config, matcher.group(2));
       }
@@ -130,10 +280,13 @@ public class Formatter {
         List<String> block = getBlock(lines);
         Boolean include = evaluateCondition(condition);
         if (include == Boolean.TRUE) {
+          count(".IF kept", 1);
           block.forEach(l -> updateSymbols(l));
           result.addAll(block);
           continue;
         } else if (include == Boolean.FALSE) {
+          count(".IF dropped", 1);
+          count("lines dropped", block.size() + 2);
           continue;
         }
 
@@ -152,6 +305,7 @@ public class Formatter {
   private List<String> resolveIf(List<String> lines) {
     List<String> previous = new ArrayList<>();
     while (true) {
+      count("iterations", 1);
       lines = resolveIfSingle(lines);
       if (lines.equals(previous)) {
         break; // repeat until no more changes
@@ -162,67 +316,185 @@ public class Formatter {
     return lines;
   }
 
-  // remove unwanted lines
-  private List<String> remove(List<String> lines) {
-    List<String> result = new ArrayList<>();
-    for (String line : lines) {
-      boolean remove = false;
-      for (String removePattern : removePatterns) {
-        if (line.matches(removePattern)) {
-          remove = true;
-          break;
-        }
+  // a RAM variable outside the zero page and below the program text, e.g. the ARYCSH cache in the stack page
+  // of Commodore, its references are absolute operands
+  private record Variable(String name, int line, int address, int size, int references, long cycles) {
+  }
+
+  // move the hottest RAM variables which are only used as absolute operands into the free zero page bytes,
+  // each reference gets a byte shorter, they are ranked by the cycles saved in the profile or by references
+  private List<String> relocate(List<String> lines) {
+    Pattern definition = Pattern.compile("^([A-Z][A-Z0-9]*)=\\$([0-9A-Fa-f]{4})\\b.*$");
+    Pattern reference = Pattern.compile(
+        "^(?:[A-Z][A-Z0-9]*:)?\\s+(?!JMP|JSR)[A-Z]{3}\\s+([A-Z][A-Z0-9]*)(?:\\+([0-9]+))?\\s*(?:;.*)?$");
+    Pattern word = Pattern.compile("\\b[A-Z][A-Z0-9]*\\b");
+
+    // the program text starts at RAMLOC+1, the last .SET is the one kept by postProcess
+    int ramloc = 0;
+    Map<String, Integer> definitions = new LinkedHashMap<>();
+    for (int i = 0; i < lines.size(); i++) {
+      Matcher matcher = Pattern.compile("^RAMLOC(?: \\.SET |=)\\$([0-9A-Fa-f]+)\\b.*$").matcher(lines.get(i));
+      if (matcher.matches()) {
+        ramloc = Integer.parseInt(matcher.group(1), 16);
       }
-      if (!remove) {
-        result.add(line);
+    }
+    for (int i = 0; i < lines.size(); i++) {
+      Matcher matcher = definition.matcher(lines.get(i));
+      if (matcher.matches() && Integer.parseInt(matcher.group(2), 16) >= 0x100
+          && Integer.parseInt(matcher.group(2), 16) < ramloc) {
+        definitions.put(matcher.group(1), i);
       }
     }
-    return result;
-  }
 
-  // convert .SET to simple assignments
-  private List<String> convertSet(List<String> lines) {
-    List<String> result = new ArrayList<>(lines);
-    for (String config : configs) {
-      String lastMatch = null;
-      // find the last matching .SET line for this config
-      for (String line : result) {
-        if (line.startsWith(config + " .SET ")) {
-          lastMatch = line;
+    // any other use than an absolute operand with an offset, e.g. #<NAME or NAME,X keeps the variable
+    Map<String, Integer> sizes = new HashMap<>();
+    Map<String, Integer> references = new HashMap<>();
+    Set<String> excluded = new HashSet<>();
+    for (int i = 0; i < lines.size(); i++) {
+      String code = lines.get(i).replaceFirst(";.*", "");
+      Matcher matcher = reference.matcher(lines.get(i));
+      String operand = matcher.matches() ? matcher.group(1) : null;
+      if (definitions.containsKey(operand)) {
+        int offset = matcher.group(2) == null ? 0 : Integer.parseInt(matcher.group(2));
+        sizes.merge(operand, offset + 1, Math::max);
+        references.merge(operand, 1, Integer::sum);
+      }
+      Matcher words = word.matcher(code);
+      while (words.find()) {
+        String name = words.group();
+        boolean isDefinition = definitions.getOrDefault(name, -1) == i && words.start() == 0;
+        if (definitions.containsKey(name) && !isDefinition && !name.equals(operand)) {
+          excluded.add(name);
         }
       }
+    }
 
-      List<String> newResult = new ArrayList<>();
-      for (String line : result) {
-        if (!line.startsWith(config + " .SET ")) {
-          newResult.add(line);
-        } else if (line.equals(lastMatch)) {
-          newResult.add(line.replace(" .SET ", "="));
-        }
+    Map<Integer, Long> saved = readProfile();
+    List<Variable> variables = new ArrayList<>();
+    for (Map.Entry<String, Integer> entry : definitions.entrySet()) {
+      String name = entry.getKey();
+      if (excluded.contains(name) || !references.containsKey(name)) {
+        continue;
+      }
+      Matcher matcher = definition.matcher(lines.get(entry.getValue()));
+      matcher.matches();
+      int address = Integer.parseInt(matcher.group(2), 16);
+      int size = sizes.get(name);
+      long cycles = 0;
+      for (int offset = 0; offset < size; offset++) {
+        cycles += saved.getOrDefault(address + offset, 0L);
       }
+      variables.add(new Variable(name, entry.getValue(), address, size, references.get(name), cycles));
+    }
+
+    // variables reaching into the next one might use it with their offsets, they stay together
+    List<Variable> overlapping = variables.stream().filter(variable -> variables.stream()
+        .anyMatch(other -> other != variable && (variable.address() < other.address()
+            && other.address() < variable.address() + variable.size() || other.address() < variable.address()
+            && variable.address() < other.address() + other.size()))).toList();
+    variables.removeAll(overlapping);
+    variables.sort(Comparator.comparingLong((Variable variable) -> profileFile != null ? variable.cycles()
+        : variable.references()).reversed());
 
-      result = newResult;
+    List<String> result = new ArrayList<>(lines);
+    int next = zeroPageFree[0];
+    for (Variable variable : variables) {
+      if (next + variable.size() - 1 > zeroPageFree[1] || profileFile != null && variable.cycles() == 0) {
+        continue; // a smaller one might still fit
+      }
+      result.set(variable.line(), String.format("%-32s;MOVED TO PAGE ZERO FROM $%04X.",
+          String.format("%s=$%04X", variable.name(), next), variable.address()));
+      relocations.add(String.format("Move %s from $%04X to $%02X, %d bytes saved%s", variable.name(),
+          variable.address(), next, variable.references(),
+          profileFile != null ? String.format(", %d cycles saved in the profile", variable.cycles()) : ""));
+      count("zero page bytes saved", variable.references());
+      count("zero page cycles saved", (int) variable.cycles());
+      next += variable.size();
     }
+    return result;
+  }
 
+  // cycles saved in the zero page by address, the lines are written by the emulator with PROFILE
+  private Map<Integer, Long> readProfile() {
+    Map<Integer, Long> result = new HashMap<>();
+    if (profileFile == null) {
+      return result;
+    }
+    try {
+      for (String line : Files.readAllLines(profileFile)) {
+        if (line.startsWith("$")) {
+          String[] columns = line.trim().split("\\s+");
+          result.put(Integer.parseInt(columns[0].substring(1), 16), Long.parseLong(columns[4]));
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
     return result;
   }
 
-  // remove configuration symbol after conditional statements have be resolved
-  private List<String> removeConfig(List<String> lines) {
-    List<String> result = new ArrayList<>();
-    for (String line : lines) {
-      boolean remove = false;
-      for (String config : removeConfigs) {
-        if (line.startsWith(config + "=")) {
-          remove = true;
-          break;
+  // remove unwanted lines, convert the last .SET of each configuration symbol to a simple assignment
+  // and remove the configuration symbols in a single pass, the output is written line by line
+  private void postProcess(List<String> lines, Consumer<String> output) {
+    // one pattern to skip the lines which match none of the remove patterns
+    Pattern prefilter = Pattern.compile(String.join("|", removePatterns.stream().map(p -> "(?:" + p + ")").toList()));
+    List<Pattern> patterns = removePatterns.stream().map(Pattern::compile).toList();
+    Set<String> configNames = new HashSet<>(configs);
+    Set<String> removeNames = new HashSet<>(removeConfigs);
+    addressConfigs.stream().filter(name -> new Evaluator(name).evaluate() instanceof Long value && value != 0)
+        .forEach(removeNames::remove);
+
+    // only the last .SET line of each symbol is kept, lines removed by a pattern do not count
+    boolean[] removed = new boolean[lines.size()];
+    Map<String, String> lastSet = new HashMap<>();
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i);
+      removed[i] = prefilter.matcher(line).matches();
+      String name = getName(line, " .SET ");
+      if (!removed[i] && configNames.contains(name)) {
+        lastSet.put(name, line);
+      }
+    }
+
+    for (int i = 0; i < lines.size(); i++) {
+      String line = lines.get(i);
+      if (removed[i]) {
+        for (Pattern pattern : patterns) {
+          if (pattern.matcher(line).matches()) {
+            count(pattern.pattern(), 1);
+            break;
+          }
         }
+        continue;
       }
-      if (!remove) {
-        result.add(line);
+
+      String name = getName(line, " .SET ");
+      if (configNames.contains(name)) {
+        if (!line.equals(lastSet.get(name))) {
+          continue;
+        }
+        count(".SET converted", 1);
+        line = line.replace(" .SET ", "=");
+        if (overwrites.containsKey(name)) {
+          // use the overwritten value, not only for conditions but also in expressions
+          line = line.replaceFirst("^" + name + "=\\S+", Matcher.quoteReplacement(name + "=" + overwrites.get(name)));
+        }
       }
+
+      // remove configuration symbol after conditional statements have be resolved
+      name = getName(line, "=");
+      if (removeNames.contains(name)) {
+        count(name, 1);
+        continue;
+      }
+      output.accept(line);
     }
-    return result;
+  }
+
+  // the text in front of the first separator, null if there is none
+  private static String getName(String line, String separator) {
+    int index = line.indexOf(separator);
+    return index > 0 ? line.substring(0, index) : null;
   }
 
   public static void main(String... args) throws IOException {
@@ -233,7 +505,14 @@ public class Formatter {
 
     Path inputFile = Path.of(args[0]);
     Path outputFile = Path.of(args[1]);
-    List<String> options = Arrays.asList(Arrays.copyOfRange(args, 2, args.length));
+    List<String> options = new ArrayList<>(Arrays.asList(Arrays.copyOfRange(args, 2, args.length)));
+    Path metricsFile = null;
+    for (String option : List.copyOf(options)) {
+      if (option.startsWith("--metrics=")) {
+        metricsFile = Path.of(option.substring(10)); // write the metrics of each stage as JSON
+        options.remove(option);
+      }
+    }
     if (!options.stream().anyMatch(opt -> opt.startsWith("REALIO="))) {
       System.err.println("ERROR: missing required option REALIO");
       return;
@@ -243,11 +522,109 @@ public class Formatter {
     System.out.printf("Create formatted source %s, %s\n", outputFile.getFileName(),
         String.join(", ", options));
 
-    List<String> result = Files.readAllLines(inputFile);
-    result = formatter.resolveIf(result);
-    result = formatter.remove(result);
-    result = formatter.convertSet(result);
-    result = formatter.removeConfig(result);
-    Files.write(outputFile, result);
+    try (BufferedWriter writer = Files.newBufferedWriter(outputFile)) {
+      formatter.format(Files.readAllLines(inputFile), line -> {
+        try {
+          writer.write(line);
+          writer.newLine();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    }
+    formatter.relocations.forEach(System.out::println);
+
+    if (metricsFile != null) {
+      List<String> values = options.stream().map(Formatter::getJson).toList();
+      Files.writeString(metricsFile, String.format("""
+          {
+            "tool": "Formatter",
+            "input": %s,
+            "output": %s,
+            "options": [%s],
+            "stages": [
+              %s
+            ]
+          }
+          """, getJson(inputFile.toString()), getJson(outputFile.toString()), String.join(", ", values),
+          String.join(",\n    ", formatter.metrics)));
+    }
+  }
+
+  // create the formatted source, a formatter must only be used once
+  public List<String> format(List<String> lines) {
+    List<String> result = new ArrayList<>();
+    format(lines, result::add);
+    return result;
+  }
+
+  // create the formatted source and pass each line to the output
+  public void format(List<String> lines, Consumer<String> output) {
+    List<String> resolved = measure("resolveIf", new ArrayList<>(lines), this::resolveIf);
+    if (zeroPageFree != null) {
+      resolved = measure("relocate", resolved, this::relocate);
+    }
+    measureOutput("postProcess", resolved, input -> {
+      int[] linesOut = {0};
+      postProcess(input, line -> {
+        linesOut[0]++;
+        output.accept(line);
+      });
+      return linesOut[0];
+    });
+  }
+
+  // run a stage and add its metrics
+  private List<String> measure(String stage, List<String> lines, UnaryOperator<List<String>> function) {
+    List<List<String>> result = new ArrayList<>(1);
+    measureOutput(stage, lines, input -> {
+      result.add(function.apply(input));
+      return result.getFirst().size();
+    });
+    return result.getFirst();
+  }
+
+  // run a stage which returns the number of lines written and add its metrics
+  private void measureOutput(String stage, List<String> lines, ToIntFunction<List<String>> function) {
+    counters.clear();
+    int linesIn = lines.size();
+    long allocated = getAllocatedBytes();
+    long start = System.nanoTime();
+    int linesOut = function.applyAsInt(lines);
+    long time = System.nanoTime() - start;
+    allocated = getAllocatedBytes() - allocated;
+
+    List<String> counts = new ArrayList<>();
+    counters.forEach((name, count) -> counts.add(getJson(name) + ": " + count));
+    metrics.add(String.format(Locale.ROOT,
+        "{\"stage\": \"%s\", \"timeMs\": %.3f, \"linesIn\": %d, \"linesOut\": %d, \"allocatedBytes\": %d, "
+            + "\"counters\": {%s}}",
+        stage, time / 1e6, linesIn, linesOut, allocated, String.join(", ", counts)));
+  }
+
+  private void count(String name, int count) {
+    counters.merge(name, count, Integer::sum);
+  }
+
+  // bytes allocated by this thread, -1 if the JVM does not support it
+  private static long getAllocatedBytes() {
+    if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean) {
+      return bean.getCurrentThreadAllocatedBytes();
+    }
+    return -1;
+  }
+
+  private static String getJson(String text) {
+    StringBuilder result = new StringBuilder("\"");
+    for (char c : text.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        result.append('\\').append(c);
+      } else if (c < ' ') {
+        result.append(String.format("\\u%04x", (int) c));
+      } else {
+        result.append(c);
+      }
+    }
+    return result.append('"').toString();
   }
 }
@@ -0,0 +1,379 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// tokenizes BASIC program text like typing it in (MAIN, LINGET and CRUNCH) and builds
+// the linked program image, the listing is created like LIST does it
+public class Tokenizer {
+  private static final int ENDTK = 128; // token of the first reserved word
+
+  // reserved word list like RESLST, the last character of each word has bit 7 set,
+  // always 256 bytes as the ROM indexes it with the Y register
+  private final byte[] reslst;
+  private final int words; // number of reserved words
+  private final boolean complete; // true if reslst holds the bytes following the list
+  private final int pi; // value of the PI character for Commodore, -1 otherwise
+  private final int printk;
+  private final int datatk;
+  private final int remtk;
+  private final int ramloc; // -1 if unknown
+  private final boolean crnspc; // CRUNCH drops spaces and LIST types them around words
+
+  // crunched lines without link, line number and terminating zero
+  private final TreeMap<Integer, byte[]> lines = new TreeMap<>();
+
+  private Tokenizer(byte[] reslst, boolean complete, int pi, int ramloc, boolean crnspc) {
+    this.reslst = Arrays.copyOf(reslst, 256);
+    this.complete = complete;
+    this.pi = pi;
+    this.ramloc = ramloc;
+    this.crnspc = crnspc;
+
+    List<String> list = getWords();
+    this.words = list.size();
+    this.printk = getToken(list, "PRINT");
+    this.datatk = getToken(list, "DATA");
+    this.remtk = getToken(list, "REM");
+  }
+
+  // read the reserved words from the source created by the formatter, CRNSPC is on if it has LSTJON
+  public static Tokenizer fromSource(Path file) throws IOException {
+    ByteArrayOutputStream table = new ByteArrayOutputStream();
+    int pi = -1;
+    int ramloc = -1;
+    boolean crnspc = false;
+    boolean inList = false;
+    for (String line : Files.readAllLines(file)) {
+      crnspc |= line.startsWith("LSTJON:");
+      Matcher matchSymbol = Pattern.compile("^(PI|RAMLOC)=\\$?([0-9A-F]+)\\b.*$").matcher(line);
+      if (matchSymbol.matches()) {
+        int radix = line.contains("$") ? 16 : 10;
+        int value = Integer.parseInt(matchSymbol.group(2), radix);
+        if (matchSymbol.group(1).equals("PI")) {
+          pi = value;
+        } else {
+          ramloc = value;
+        }
+      }
+
+      if (line.startsWith("RESLST:")) {
+        inList = true;
+      }
+      if (!inList) {
+        continue;
+      }
+
+      Matcher matchWord = Pattern.compile("\\bDCI\"([^\"]+)\"").matcher(line);
+      if (matchWord.find()) {
+        byte[] word = matchWord.group(1).getBytes(StandardCharsets.ISO_8859_1);
+        word[word.length - 1] |= (byte) 0x80;
+        table.writeBytes(word);
+      } else if (line.matches("^\\s*\\.BYTE 0\\s*(;.*)?$")) {
+        inList = false;
+      }
+    }
+
+    if (table.size() == 0) {
+      throw new IllegalArgumentException("no reserved word list found in " + file);
+    }
+    table.write(0);
+    return new Tokenizer(table.toByteArray(), false, pi, ramloc, crnspc);
+  }
+
+  // find the reserved words in an assembled Commodore binary, it must start with END and FOR,
+  // CRNSPC is on if the ld65 label file next to it (e.g. m6502.lbl) has LSTJON
+  public static Tokenizer fromBinary(Path file) throws IOException {
+    byte[] data = Files.readAllBytes(file);
+    byte[] start = {'E', 'N', (byte) ('D' | 0x80), 'F', 'O', (byte) ('R' | 0x80)};
+    String name = file.getFileName().toString().replaceFirst("\\.[^.]*$", "");
+    Path labelFile = file.resolveSibling(name + ".lbl");
+    boolean crnspc = Files.exists(labelFile)
+        && Files.readAllLines(labelFile).stream().anyMatch(line -> line.endsWith(" .LSTJON"));
+    for (int i = 0; i + start.length <= data.length; i++) {
+      if (Arrays.equals(data, i, i + start.length, start, 0, start.length)) {
+        byte[] table = Arrays.copyOfRange(data, i, Math.min(i + 256, data.length));
+        return new Tokenizer(table, true, 255, -1, crnspc);
+      }
+    }
+
+    throw new IllegalArgumentException("no reserved word list found in " + file);
+  }
+
+  private List<String> getWords() {
+    List<String> result = new ArrayList<>();
+    StringBuilder word = new StringBuilder();
+    for (int y = 0; reslst[y] != 0; y++) {
+      word.append((char) (reslst[y] & 0x7F));
+      if (reslst[y] < 0) {
+        result.add(word.toString());
+        word.setLength(0);
+      }
+    }
+    return result;
+  }
+
+  private static int getToken(List<String> words, String word) {
+    int index = words.indexOf(word);
+    if (index < 0) {
+      throw new IllegalArgumentException("reserved word " + word + " is missing");
+    }
+    return ENDTK + index;
+  }
+
+  // start of program text, like INIT it is one byte above RAMLOC
+  public int getTextStart() {
+    return ramloc < 0 ? 0x0401 : ramloc + 1;
+  }
+
+  // enter a line like MAIN, an empty line deletes the line with the same number
+  public void enter(String line) {
+    byte[] buf = Arrays.copyOf(line.getBytes(StandardCharsets.ISO_8859_1), line.length() + 1);
+    int x = skipSpaces(buf, 0);
+    if (buf[x] == 0) {
+      return; // blank line
+    }
+    if (!isDigit(buf[x])) {
+      throw new IllegalArgumentException("missing line number: " + line);
+    }
+
+    int number = 0;
+    while (isDigit(buf[x])) {
+      if (number >= 6400) {
+        throw new IllegalArgumentException("line number too big: " + line); // like LINGET
+      }
+      number = number * 10 + buf[x] - '0';
+      x = skipSpaces(buf, x + 1);
+    }
+
+    byte[] crunched = crunch(Arrays.copyOfRange(buf, x, buf.length - 1));
+    if (crunched.length == 0) {
+      lines.remove(number);
+    } else {
+      lines.put(number, crunched);
+    }
+  }
+
+  // CHRGET skips spaces
+  private static int skipSpaces(byte[] buf, int x) {
+    while (buf[x] == ' ') {
+      x++;
+    }
+    return x;
+  }
+
+  private static boolean isDigit(byte c) {
+    return c >= '0' && c <= '9';
+  }
+
+  // translate reserved words into tokens exactly like CRUNCH
+  public byte[] crunch(byte[] text) {
+    byte[] buf = Arrays.copyOf(text, text.length + 1);
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    int x = 0;
+    int dores = 4;
+    while (true) {
+      int a = buf[x] & 0xFF;
+      if (pi >= 0 && a >= 128) {
+        if (a != pi) {
+          x++; // skip no printing
+          continue;
+        }
+      } else if (a == '"') {
+        result.write(a);
+        x++;
+        a = buf[x] & 0xFF;
+        while (a != 0 && a != '"') {
+          result.write(a);
+          x++;
+          a = buf[x] & 0xFF;
+        }
+      } else if (a == ' ' && crnspc && (dores & 0x40) == 0) {
+        x++; // CMPSPC drops the space outside of DATA
+        continue;
+      } else if (a != ' ' && (dores & 0x40) == 0) {
+        if (a == '?') {
+          a = printk;
+        } else if (a < '0' || a >= 60) {
+          int start = x;
+          int count = 0;
+          int y = 0;
+          while (true) {
+            int diff = (buf[x] - reslst[y]) & 0xFF;
+            if (diff == 0) {
+              x++;
+              y = (y + 1) & 0xFF;
+              continue;
+            }
+            if (diff == 128) {
+              a = 128 | count;
+              break;
+            }
+            x = start;
+            count++;
+            do {
+              y = (y + 1) & 0xFF;
+            } while (reslst[(y - 1) & 0xFF] >= 0);
+            if (reslst[y] == 0) {
+              a = buf[x] & 0xFF; // no reserved word
+              break;
+            }
+          }
+        }
+      }
+
+      x++;
+      if (a == 0) {
+        break;
+      }
+      result.write(a);
+      if (a == ':' || a == datatk) {
+        dores = (a - ':') & 0xFF;
+      }
+      if (a == remtk) {
+        while (buf[x] != 0) {
+          result.write(buf[x++]);
+        }
+        break;
+      }
+    }
+
+    return result.toByteArray();
+  }
+
+  // get the linked program with the double zero link at the end, VARTAB is right behind it
+  public byte[] getImage(int textStart) {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    int address = textStart;
+    for (Map.Entry<Integer, byte[]> line : lines.entrySet()) {
+      byte[] text = line.getValue();
+      address += 2 + 2 + text.length + 1;
+      result.write(address & 0xFF);
+      result.write(address >> 8);
+      result.write(line.getKey() & 0xFF);
+      result.write(line.getKey() >> 8);
+      result.writeBytes(text);
+      result.write(0);
+    }
+    result.write(0);
+    result.write(0);
+    return result.toByteArray();
+  }
+
+  // list a program image like LIST, each line without the leading carriage return and space
+  public List<String> list(byte[] image, int textStart) {
+    List<String> result = new ArrayList<>();
+    int offset = 0;
+    while (getWord(image, offset) != 0) {
+      StringBuilder line = new StringBuilder();
+      line.append(getWord(image, offset + 2)).append(' ');
+      boolean quoted = false;
+      for (int i = offset + 4; image[i] != 0; i++) {
+        int c = image[i] & 0xFF;
+        if (c >= 128 && c != pi && !quoted) {
+          int start = line.length();
+          c = appendWord(line, c);
+          if (crnspc) {
+            // like PRIT3, a word starting or ending with a letter gets a space where it would run into
+            // its neighbour, but not in front of the first character of the line
+            int first = start < line.length() ? line.charAt(start) : c;
+            if (first >= 'A' && i - offset > 4 && runsIntoWord(image[i - 1] & 0xFF)) {
+              line.insert(start, ' ');
+            }
+            int next = image[i + 1] & 0xFF;
+            if (c >= 'A' && (next >= 128 || runsIntoWord(next))) {
+              line.append((char) c).append(' ');
+              continue;
+            }
+          }
+        }
+        line.append((char) c);
+        if (c == '"') {
+          quoted = !quoted;
+        }
+      }
+      result.add(line.toString());
+      offset = getWord(image, offset) - textStart;
+    }
+    return result;
+  }
+
+  // LSTJON, letters, digits, quotes, "#", "$", "%" and ")" run into a word
+  private static boolean runsIntoWord(int c) {
+    return c < 128 && (c >= 'A' || c >= '0' && c <= '9' || c == ')' || c >= '"' && c <= '%');
+  }
+
+  // append the reserved word of a token except for its last character, which is returned
+  private int appendWord(StringBuilder line, int token) {
+    if (!complete && token >= ENDTK + words) {
+      throw new IllegalArgumentException(String.format("undefined token $%02X", token));
+    }
+
+    int y = 255;
+    for (int x = token - 127; --x != 0;) {
+      int steps = 0;
+      do {
+        y = (y + 1) & 0xFF;
+        if (++steps > 256) {
+          throw new IllegalArgumentException(String.format("undefined token $%02X", token));
+        }
+      } while (reslst[y] >= 0);
+    }
+    while (reslst[y = (y + 1) & 0xFF] >= 0) {
+      line.append((char) reslst[y]);
+    }
+    return reslst[y] & 0x7F;
+  }
+
+  private static int getWord(byte[] image, int offset) {
+    return (image[offset] & 0xFF) | (image[offset + 1] & 0xFF) << 8;
+  }
+
+  // args[0] - formatted source (e.g. m6502-cbm.s) or assembled binary with the reserved words
+  // args[1] - BASIC program text to tokenize or .prg file to list
+  // args[2] - .prg file to create or text file for the listing
+  // args[3] - optional start of program text e.g. TXTTAB=$0401
+  public static void main(String... args) throws IOException {
+    if (args.length < 3) {
+      System.err.println("ERROR: missing reserved word source, input and output filename");
+      return;
+    }
+
+    Path tableFile = Path.of(args[0]);
+    Path inputFile = Path.of(args[1]);
+    Path outputFile = Path.of(args[2]);
+    Tokenizer tokenizer = tableFile.toString().endsWith(".s") ? fromSource(tableFile) : fromBinary(tableFile);
+    int textStart = tokenizer.getTextStart();
+    if (args.length > 3 && args[3].startsWith("TXTTAB=")) {
+      String value = args[3].substring(7);
+      textStart = value.startsWith("$") ? Integer.parseInt(value.substring(1), 16) : Integer.parseInt(value);
+    }
+
+    if (inputFile.toString().toLowerCase().endsWith(".prg")) {
+      byte[] prg = Files.readAllBytes(inputFile);
+      byte[] image = Arrays.copyOfRange(prg, 2, prg.length);
+      System.out.printf("List program %s to %s\n", inputFile.getFileName(), outputFile.getFileName());
+      Files.write(outputFile, tokenizer.list(image, getWord(prg, 0)), StandardCharsets.ISO_8859_1);
+    } else {
+      for (String line : Files.readAllLines(inputFile, StandardCharsets.ISO_8859_1)) {
+        tokenizer.enter(line);
+      }
+      byte[] image = tokenizer.getImage(textStart);
+      System.out.printf("Tokenize program %s to %s, TXTTAB=$%04X, VARTAB=$%04X\n", inputFile.getFileName(),
+          outputFile.getFileName(), textStart, textStart + image.length);
+      ByteArrayOutputStream prg = new ByteArrayOutputStream();
+      prg.write(textStart & 0xFF);
+      prg.write(textStart >> 8);
+      prg.writeBytes(image);
+      Files.write(outputFile, prg.toByteArray());
+    }
+  }
+}
@@ -0,0 +1,365 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+// runs the converter and all formatter variants in a single JVM, compile it together with the tools
+// (see build.sh) as the single-file launcher cannot see the other classes
+public class Toolchain {
+
+  // the steps of build.sh
+  private static final String[] DEFAULT_STEPS = {
+      "Converter", "m6502.asm", "m6502.s", "--",
+      "Formatter", "m6502.s", "m6502-cbm.s", "REALIO=3", "--",
+      "Formatter", "m6502.s", "m6502-min.s", "REALIO=3", "EXTIO=0", "TIME=0", "CBMRND=0"};
+
+  // directory of the stage cache, null if disabled
+  private final Path cache;
+  private int hits;
+  private int misses;
+
+  // stage results of the last run kept in memory in watch mode, null if disabled
+  private Map<String, List<String>> results;
+  private Map<String, List<String>> lastResults = new HashMap<>();
+  private final Map<Class<?>, byte[]> classFiles = new HashMap<>();
+
+  private Toolchain(Path cache, boolean watch) {
+    this.cache = cache;
+    this.results = watch ? new HashMap<>() : null;
+  }
+
+  private boolean isCaching() {
+    return cache != null || results != null;
+  }
+
+  // an argument @<file> is replaced by the options in the file, separated by white space
+  private static List<String> expand(List<String> step) throws IOException {
+    List<String> result = new ArrayList<>();
+    for (String arg : step) {
+      if (arg.startsWith("@")) {
+        result.addAll(Arrays.asList(Files.readString(Path.of(arg.substring(1))).trim().split("\\s+")));
+      } else {
+        result.add(arg);
+      }
+    }
+    return result;
+  }
+
+  private void run(List<String> step) throws Exception {
+    if (step.isEmpty()) {
+      return;
+    }
+    List<String> expanded = expand(step);
+    String[] args = expanded.subList(1, expanded.size()).toArray(new String[0]);
+    switch (step.getFirst()) {
+      case "Converter" -> convert(args);
+      case "Formatter" -> format(args);
+      case "Tokenizer" -> Tokenizer.main(args);
+      default -> throw new IllegalArgumentException("unknown tool " + step.getFirst());
+    }
+  }
+
+  // steps writing metrics are not cached, their stages must run to be measured
+  private static boolean hasMetrics(String... args) {
+    return Arrays.stream(args).anyMatch(arg -> arg.startsWith("--metrics="));
+  }
+
+  // like Converter.main, but each stage is taken from the cache if its input did not change
+  private void convert(String... args) throws Exception {
+    if (!isCaching() || hasMetrics(args) || args.length != 2 || !Files.isRegularFile(Path.of(args[0]))) {
+      Converter.main(args); // also converts directories in a batch
+      return;
+    }
+    Path inputFile = Path.of(args[0]);
+    Path outputFile = Path.of(args[1]);
+    System.out.printf("Convert MACRO-10 source file to cc65 syntax in=%s out=%s\n", inputFile.getFileName(),
+        outputFile.getFileName());
+
+    Converter converter = new Converter();
+    List<String> lines = Files.readAllLines(inputFile);
+    for (String stage : Converter.STAGES) {
+      if (Converter.STATEFUL_STAGES.contains(stage)) {
+        lines = converter.convert(stage, lines);
+      } else {
+        lines = cached(Converter.class, stage, List.of(), lines, input -> converter.convert(stage, input));
+      }
+    }
+    Files.write(outputFile, lines);
+  }
+
+  // like Formatter.main, but the formatted source is taken from the cache if the input did not change
+  private void format(String... args) throws Exception {
+    if (!isCaching() || hasMetrics(args) || args.length < 2) {
+      Formatter.main(args);
+      return;
+    }
+    Path inputFile = Path.of(args[0]);
+    Path outputFile = Path.of(args[1]);
+    List<String> options = Arrays.asList(Arrays.copyOfRange(args, 2, args.length));
+    if (!options.stream().anyMatch(opt -> opt.startsWith("REALIO="))) {
+      Formatter.main(args); // reports the missing option
+      return;
+    }
+    if (options.stream().anyMatch(opt -> opt.startsWith("ZPFREE="))) {
+      Formatter.main(args); // reads the profile and reports the moved variables
+      return;
+    }
+
+    System.out.printf("Create formatted source %s, %s\n", outputFile.getFileName(), String.join(", ", options));
+    List<String> lines = Files.readAllLines(inputFile);
+    lines = cached(Formatter.class, "format", options, lines, input -> new Formatter(options).format(input));
+    Files.write(outputFile, lines);
+  }
+
+  // get the result of a stage from the cache, the key is the hash of the class files of the tool,
+  // the stage name, the options and the input lines, a missing result is computed and stored
+  private List<String> cached(Class<?> tool, String stage, List<String> options, List<String> input,
+      UnaryOperator<List<String>> function) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    digest.update(getClassFiles(tool));
+    ByteArrayOutputStream key = new ByteArrayOutputStream();
+    DataOutputStream keyData = new DataOutputStream(key);
+    keyData.writeUTF(stage);
+    write(keyData, options);
+    write(keyData, input);
+    digest.update(key.toByteArray());
+    String hash = HexFormat.of().formatHex(digest.digest());
+
+    List<String> result = lastResults.get(hash);
+    if (result == null && cache != null && Files.exists(cache.resolve(hash))) {
+      try (DataInputStream data = new DataInputStream(Files.newInputStream(cache.resolve(hash)))) {
+        result = read(data);
+      }
+    }
+    if (result != null) {
+      hits++;
+    } else {
+      misses++;
+      result = function.apply(input);
+      if (cache != null) {
+        Files.createDirectories(cache);
+        Path temp = Files.createTempFile(cache, stage, ".tmp");
+        try (DataOutputStream data = new DataOutputStream(Files.newOutputStream(temp))) {
+          write(data, result);
+        }
+        Files.move(temp, cache.resolve(hash), StandardCopyOption.ATOMIC_MOVE); // builds may share the cache
+      }
+    }
+    if (results != null) {
+      results.put(hash, result);
+    }
+    return result;
+  }
+
+  // the class files of the tool and of all its nested classes like Converter$Parser, which are in its nest
+  private byte[] getClassFiles(Class<?> tool) throws IOException {
+    byte[] classFiles = this.classFiles.get(tool);
+    if (classFiles == null) {
+      List<Class<?>> members = new ArrayList<>(Arrays.asList(tool.getNestMembers()));
+      members.sort(Comparator.comparing(Class::getName));
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream data = new DataOutputStream(bytes);
+      for (Class<?> member : members) {
+        try (InputStream stream = member.getResourceAsStream("/" + member.getName().replace('.', '/') + ".class")) {
+          if (stream == null) {
+            throw new IllegalStateException("class file of " + member.getName() + " not found");
+          }
+          byte[] classFile = stream.readAllBytes();
+          data.writeUTF(member.getName());
+          data.writeInt(classFile.length);
+          data.write(classFile);
+        }
+      }
+      classFiles = bytes.toByteArray();
+      this.classFiles.put(tool, classFiles);
+    }
+    return classFiles;
+  }
+
+  // lines are stored with their length so the result is exactly the same as the computed one
+  private static void write(DataOutputStream data, List<String> lines) throws IOException {
+    data.writeInt(lines.size());
+    for (String line : lines) {
+      data.writeUTF(line);
+    }
+  }
+
+  private static List<String> read(DataInputStream data) throws IOException {
+    int size = data.readInt();
+    List<String> lines = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      lines.add(data.readUTF());
+    }
+    return lines;
+  }
+
+  // run all steps, in watch mode only the results of this run are kept in memory
+  private void runAll(List<List<String>> steps) throws Exception {
+    hits = 0;
+    misses = 0;
+    for (List<String> step : steps) {
+      run(step);
+    }
+    if (results != null) {
+      lastResults = results;
+      results = new HashMap<>();
+    }
+  }
+
+  // the files read by the steps which are not written by an earlier step, including option files,
+  // a batch of the converter is a directory or a file name pattern
+  private static Set<Path> getInputFiles(List<List<String>> steps) {
+    Set<Path> outputs = new HashSet<>();
+    Set<Path> inputs = new LinkedHashSet<>();
+    for (List<String> step : steps) {
+      // options like --pipeline may be anywhere, the files are counted without them
+      List<String> args = step.stream().filter(arg -> !arg.startsWith("--")).toList();
+      for (int i = 1; i < args.size(); i++) {
+        Path file = Path.of(args.get(i).replaceFirst("^@", "")).toAbsolutePath().normalize();
+        boolean isInput = args.get(i).startsWith("@") || i == 1 || (i == 2 && args.getFirst().equals("Tokenizer"));
+        if (isInput && !outputs.contains(file)) {
+          inputs.add(file);
+        } else if (i == 2 || (i == 3 && args.getFirst().equals("Tokenizer"))) {
+          outputs.add(file);
+        }
+      }
+    }
+    return inputs;
+  }
+
+  // a watched input file or the files of a batch in a directory, *.asm like the converter for a directory
+  private record Input(Path directory, PathMatcher matcher) {
+    static Input of(Path path) {
+      if (Files.isDirectory(path)) {
+        return new Input(path, path.getFileSystem().getPathMatcher("glob:*.asm"));
+      }
+      String name = path.getFileName().toString();
+      if (name.matches(".*[*?\\[{].*")) {
+        return new Input(path.getParent(), path.getFileSystem().getPathMatcher("glob:" + name));
+      }
+      return new Input(path.getParent(), file -> file.toString().equals(name));
+    }
+
+    boolean matches(Path file) {
+      return file.getParent().equals(directory) && matcher.matches(file.getFileName());
+    }
+  }
+
+  // run the steps again whenever one of their input files is saved or a file of a batch is added, the stages
+  // which get the same input as in the last run are taken from memory
+  private void watch(List<List<String>> steps) throws Exception {
+    Set<Path> inputs = getInputFiles(steps);
+    List<Input> watched = inputs.stream().map(Input::of).toList();
+    try (WatchService service = inputs.iterator().next().getFileSystem().newWatchService()) {
+      Set<Path> directories = new HashSet<>();
+      for (Input input : watched) {
+        if (directories.add(input.directory())) {
+          input.directory().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+              StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+      }
+      System.out.printf("Watching %s\n", String.join(", ", inputs.stream().map(Path::toString).toList()));
+
+      while (true) {
+        WatchKey key = service.take();
+        Set<Path> changed = new LinkedHashSet<>();
+        do {
+          // editors often save with several events, collect them before running
+          for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.context() instanceof Path name) {
+              Path file = ((Path) key.watchable()).resolve(name).toAbsolutePath().normalize();
+              if (watched.stream().anyMatch(input -> input.matches(file))) {
+                changed.add(file);
+              }
+            }
+          }
+          key.reset();
+          key = service.poll(20, TimeUnit.MILLISECONDS);
+        } while (key != null);
+        if (changed.isEmpty()) {
+          continue;
+        }
+
+        long start = System.nanoTime();
+        try {
+          runAll(steps);
+          System.out.printf("Changed %s, %d stages reused, %d computed in %d ms\n",
+              String.join(", ", changed.stream().map(file -> file.getFileName().toString()).toList()), hits, misses,
+              (System.nanoTime() - start) / 1000000);
+        } catch (Exception e) {
+          System.out.printf("ERROR: %s\n", e); // keep watching until the source is fixed
+        }
+      }
+    }
+  }
+
+  // args - optional CACHE=<directory> to reuse the results of unchanged stages and variants
+  //        optional WATCH to run the steps again whenever an input file changes
+  //        followed by the steps separated by "--", each starts with the tool name and its arguments
+  //        e.g. Formatter m6502.s m6502-cbm.s REALIO=3 -- Formatter m6502.s m6502-fast.s @fast.opt
+  //        an argument @<file> is replaced by the options in the file
+  //        without steps the steps of build.sh are run
+  public static void main(String... args) throws Exception {
+    List<String> arguments = new ArrayList<>(Arrays.asList(args));
+    Path cache = null;
+    boolean watch = false;
+    while (!arguments.isEmpty() && arguments.getFirst().matches("CACHE=.*|WATCH")) {
+      String option = arguments.removeFirst();
+      if (option.equals("WATCH")) {
+        watch = true;
+      } else {
+        cache = Path.of(option.substring(6));
+      }
+    }
+    if (arguments.isEmpty()) {
+      arguments = Arrays.asList(DEFAULT_STEPS);
+    }
+
+    List<List<String>> steps = new ArrayList<>();
+    steps.add(new ArrayList<>());
+    for (String arg : arguments) {
+      if (arg.equals("--")) {
+        steps.add(new ArrayList<>());
+      } else {
+        steps.getLast().add(arg);
+      }
+    }
+
+    Toolchain toolchain = new Toolchain(cache, watch);
+    toolchain.runAll(steps);
+    if (cache != null) {
+      System.out.printf("Stage cache %s, %d reused, %d computed\n", cache, toolchain.hits, toolchain.misses);
+    }
+    if (watch) {
+      toolchain.watch(steps);
+    }
+  }
+}
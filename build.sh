@@ -1,7 +1,15 @@
 #!/bin/sh
-java Converter.java m6502.asm m6502.s
-java Formatter.java m6502.s m6502-cbm.s REALIO=3
-java Formatter.java m6502.s m6502-min.s REALIO=3 EXTIO=0 TIME=0 CBMRND=0
+# compile the tools into a jar once, the first run records the class data sharing archive
+# which the following runs map instead of loading and verifying the classes again,
+# the jar is named after the hash of the sources, so other sources never reuse it
+SOURCES="Converter.java Formatter.java Tokenizer.java Toolchain.java"
+TOOLS=/tmp/m6502-tools-$(cat $SOURCES | md5sum | cut -c1-16)
+if [ ! -f $TOOLS.jar ]; then
+  rm -rf $TOOLS $TOOLS.jsa
+  javac -d $TOOLS $SOURCES || exit 1
+  jar --create --file $TOOLS.tmp --main-class Toolchain -C $TOOLS . && mv $TOOLS.tmp $TOOLS.jar || exit 1
+fi
+java -XX:SharedArchiveFile=$TOOLS.jsa -XX:+AutoCreateSharedArchive -Xlog:cds=off -jar $TOOLS.jar CACHE=/tmp/m6502-cache
 
 echo
 ca65 --version
@@ -13,11 +21,11 @@ printf "%-7s %s\n" "File:"   "m6502.bin"
 printf "%-7s %s\n" "Length:" "$(stat -c %s m6502.bin) bytes"
 printf "%-7s %s\n" "MD5:"    "$(md5sum m6502.bin | cut -d' ' -f1)"
 
-ca65 --feature force_range -o /tmp/m6502-cbm.obj m6502-cbm.s
-ld65 --config m6502-cbm.cfg -o /tmp/m6502-cbm.bin /tmp/m6502-cbm.obj
+ca65 -g --feature force_range -o /tmp/m6502-cbm.obj m6502-cbm.s
+ld65 --config m6502-cbm.cfg -Ln /tmp/m6502-cbm.lbl -o /tmp/m6502-cbm.bin /tmp/m6502-cbm.obj
 
-ca65 --feature force_range -o /tmp/m6502-min.obj m6502-min.s
-ld65 --config m6502-cbm.cfg -o /tmp/m6502-min.bin /tmp/m6502-min.obj
+ca65 -g --feature force_range -o /tmp/m6502-min.obj m6502-min.s
+ld65 --config m6502-cbm.cfg -Ln /tmp/m6502-min.lbl -o /tmp/m6502-min.bin /tmp/m6502-min.obj
 
 echo
 printf "%-7s %s\n" "File:"   "m6502-cbm.bin"
@@ -1091,13 +1091,11 @@ MINUTK=Q
         DCI"^"
         DCI"AND"
         DCI"OR"
-        .BYTE 190                       ;A GREATER THAN SIGN
-Q .SET Q+1
+        DCI">"                  ;A GREATER THAN SIGN
 GREATK=Q
         DCI"="
 EQULTK=Q
-        .BYTE 188
-Q .SET Q+1                      ;A LESS THAN SIGN
+        DCI"<"                  ;A LESS THAN SIGN
 LESSTK=Q
 ;
 ; NOTE DANGER OF ONE RESERVED WORD BEING A PART
@@ -1867,6 +1865,9 @@ LDFONE: LDWDI   FONE            ;PUT 1.0 INTO FAC.
         JSR     CHRGET          ;YES. ADVANCE POINTER.
         JSR     FRMNUM          ;READ THE STEP.
 ONEON:  JSR     SIGN            ;GET SIGN IN ACCA.
+  .IF .LOBYTE(*+2) = 255
+        NOP                     ;PUSHF CAN'T RETURN ACROSS A PAGE.
+  .ENDIF
         JSR     PUSHF           ;PUSH FAC ONTO STACK (THRU A).
         PSHWD   FORPNT          ;PUT PNTR TO VARIABLE ON STACK.
 NXTCON: LDA     #FORTK          ;PUT A FORTK ONTO STACK.
@@ -2557,7 +2558,7 @@ HAVFOR: TXS                     ;SETUP STACK. CHOP FIRST.
         STA     TXTPTR+1
 NEWSGO: JMP     NEWSTT          ;PROCESS NEXT STATEMENT.
 LOOPDN: TXA
-        ADC     #2*ADDPRC+15            ;ADDS 16 WITH CARRY.
+        ADC     #FORSIZ-1               ;ADDS 16 WITH CARRY.
         TAX
         TXS                     ;NEW STACK PNTR.
         JSR     CHRGOT
@@ -2670,6 +2671,9 @@ DOPRE1: LDA     OPTAB+2,Y
         PHA                     ;DISP ADDR GOES ONTO STACK.
         LDA     OPTAB+1,Y
         PHA
+  .IF .LOBYTE(*+2) = 255
+        NOP                     ;PUSHF CAN'T RETURN ACROSS A PAGE.
+  .ENDIF
         JSR     PUSHF1          ;SAVE FAC ON STACK UNPACKED.
         LDA     OPMASK          ;[ACCA] MAY BE MASK FOR REL.
         JMP     LPOPER
@@ -25,11 +25,23 @@ RORSW .SET 1
 ROMSW .SET 1                    ;TELLS IF THIS IS ON ROM.
 CLMWID .SET 14
 LONGI=1                 ;LONG INITIALIZATION SWITCH.
+CRNIDX .SET 0           ;INDEXED RESERVED WORD LOOKUP IN CRUNCH AND LIST
+GRBCMP .SET 0           ;COMPACTING GARBAGE COLLECTION WITH BACK POINTERS
+QSQMUL .SET 0           ;QUARTER-SQUARE TABLE MULTIPLICATION IN FMULT
+FORINT .SET 0           ;16-BIT INTEGER ARITHMETIC IN NEXT
+FOUTTB .SET 0           ;TABLE DRIVEN DIGITS IN FOUT
+ARYCSH .SET 0           ;LAST ARRAY CACHE AND SHIFT MULTIPLY IN ISARY
+BLTUNR .SET 0           ;UNROLLED WHOLE PAGE MOVES IN BLTU
+TRNTAB .SET 0           ;PIECEWISE POLYNOMIAL TABLES IN SIN, ATN, LOG AND EXP
+CRNSPC .SET 0           ;CRUNCH DROPS SPACES, LIST TYPES THEM AROUND WORDS
+FINACC .SET 0           ;INTEGER DIGIT ACCUMULATOR IN FIN
 STKEND .SET 511
 BUFPAG .SET 0
 LINLEN .SET 72                  ;TERMINAL LINE LENGTH.
 BUFLEN .SET 72                  ;INPUT BUFFER SIZE.
 ROMLOC .SET $2000                       ;ADDRESS OF START OF PURE SEGMENT.
+MEMTOP .SET 0                   ;END OF RAM IF KNOWN, ELSE FOUND AT START.
+BLKOUT .SET 0                   ;BLOCK OUTPUT ROUTINE OF THE TARGET, ELSE 0.
 KIMROM .SET 1
 .IF ROMSW=0
 KIMROM .SET 0
@@ -318,6 +330,51 @@ STKEND .SET 507
 .IF RORSW<>0
   .OUT "CONFIG: USE ROR INSTRUCTION"
 .ENDIF
+.IF CRNIDX<>0
+  .OUT "CONFIG: INDEXED RESERVED WORD LOOKUP"
+.ENDIF
+.IF GRBCMP<>0
+  .OUT "CONFIG: COMPACTING GARBAGE COLLECTION"
+.ENDIF
+.IF QSQMUL<>0
+  .OUT "CONFIG: QUARTER-SQUARE MULTIPLICATION"
+.ENDIF
+.IF FORINT<>0
+  .OUT "CONFIG: INTEGER FOR LOOPS"
+.ENDIF
+.IF FOUTTB<>0
+  .OUT "CONFIG: TABLE DRIVEN FOUT"
+.ENDIF
+.IF FOUTTB<>0 .AND ADDPRC=0
+  .ERROR "FOUTTB needs ADDPRC=1, FOUTPR and FOUTCY convert a 32 bit mantissa"
+.ENDIF
+.IF ARYCSH<>0
+  .OUT "CONFIG: ARRAY CACHE"
+.ENDIF
+.IF ARYCSH<>0 .AND ADDPRC=0
+  .ERROR "ARYCSH needs ADDPRC=1, ISARY multiplies the index of a real by 5"
+.ENDIF
+.IF BLTUNR<>0
+  .OUT "CONFIG: UNROLLED BLOCK TRANSFER"
+.ENDIF
+.IF MEMTOP<>0
+  .OUT "CONFIG: FIXED MEMORY SIZE"
+.ENDIF
+.IF BLKOUT<>0
+  .OUT "CONFIG: BLOCK OUTPUT"
+.ENDIF
+.IF TRNTAB<>0
+  .OUT "CONFIG: TRANSCENDENTAL TABLES"
+.ENDIF
+.IF TRNTAB<>0 .AND ADDPRC=0
+  .ERROR "TRNTAB needs ADDPRC=1, the tables of TBLPOL hold 5 byte numbers"
+.ENDIF
+.IF CRNSPC<>0
+  .OUT "CONFIG: SPACE-STRIPPING CRUNCH"
+.ENDIF
+.IF FINACC<>0
+  .OUT "CONFIG: INTEGER ACCUMULATOR IN FIN"
+.ENDIF
 ; SUBTTL        INTRODUCTION AND COMPILATION PARAMETERS.
 
 .FEATURE c_comments
@@ -1117,6 +1174,17 @@ RNDX:   .BYTE 128                       ;LOADED OR FROM ROM.
 .IF ADDPRC<>0
 .BYTE 89                ;ONE MORE BYTE.
 .ENDIF
+.IF ARYCSH<>0
+.IF REALIO<>3
+ARYNAM: .RES 2          ;NAME OF THE LAST ARRAY FOUND BY "ISARY".
+ARYADR: .RES 2          ;POINTER TO ITS ENTRY IN THE ARRAY TABLE.
+.ENDIF
+.IF REALIO=3
+STKEND .SET 503                 ;THE PAGE ZERO IS FULL, SO THE STACK
+ARYNAM=$01F8                    ;GIVES UP ITS TOP FOUR BYTES.
+ARYADR=$01FA
+.ENDIF
+.ENDIF
 
 .IF REALIO<>3
 LOFBUF: .RES 1          ;THE LOW FAC BUFFER. COPYABLE.
@@ -1270,6 +1338,10 @@ PTDORL: .BYTE 100                       ;PRECEDENCE.
 ;
 Q .SET 128-1
 .MACRO DCI STR
+.IF CRNIDX<>0
+  .IDENT(.SPRINTF("RESO%d", Q-127)) = <(*-RESLST-1)
+  .IDENT(.SPRINTF("RESC%d", Q-127)) = .STRAT(STR,0) & $7F
+.ENDIF
   .REPEAT .STRLEN(STR)-1,I
     .BYTE .STRAT(STR,I)
   .ENDREP
@@ -1367,13 +1439,11 @@ MINUTK=Q
         DCI"^"
         DCI"AND"
         DCI"OR"
-        .BYTE 190                       ;A GREATER THAN SIGN
-Q .SET Q+1
+        DCI">"                  ;A GREATER THAN SIGN
 GREATK=Q
         DCI"="
 EQULTK=Q
-        .BYTE 188
-Q .SET Q+1                      ;A LESS THAN SIGN
+        DCI"<"                  ;A LESS THAN SIGN
 LESSTK=Q
 ;
 ; NOTE DANGER OF ONE RESERVED WORD BEING A PART
@@ -1413,6 +1483,38 @@ LASNUM=Q                        ;NUMBER OF LAST FUNCTION
         DCI"GO"
 GOTK=Q
         .BYTE 0                 ;MARKS END OF RESERVED WORD LIST
+.IF CRNIDX<>0
+;
+; RESOFS HOLDS THE RESLST POINTER (OFFSET MINUS ONE) OF EVERY TOKEN.
+; RESNXT HOLDS THE NEXT TOKEN STARTING WITH THE SAME CHARACTER
+; AND RESIDX THE FIRST TOKEN FOR EACH CHARACTER FROM " " THRU "_".
+; TOKENS ARE STORED WITHOUT THE MSB, 255 MARKS THE END OF A CHAIN.
+;
+RESOFS:
+.REPEAT GOTK-127,I
+  .BYTE .IDENT(.SPRINTF("RESO%d", I))
+.ENDREP
+RESNXT:
+.REPEAT GOTK-127,I
+  RESTMP .SET 255
+  .REPEAT GOTK-128-I,J
+    .IF .IDENT(.SPRINTF("RESC%d", GOTK-128-J)) = .IDENT(.SPRINTF("RESC%d", I))
+      RESTMP .SET GOTK-128-J
+    .ENDIF
+  .ENDREP
+  .BYTE RESTMP
+.ENDREP
+RESIDX:
+.REPEAT 64,I
+  RESTMP .SET 255
+  .REPEAT GOTK-127,J
+    .IF .IDENT(.SPRINTF("RESC%d", GOTK-128-J)) = ' '+I
+      RESTMP .SET GOTK-128-J
+    .ENDIF
+  .ENDREP
+  .BYTE RESTMP
+.ENDREP
+.ENDIF
 
 .IF LNGERR=0
 Q .SET 0-2
@@ -1548,7 +1650,12 @@ BRKTXT: ACRLF
 ;
 ; FIND A "FOR" ENTRY ON THE STACK VIA "VARPNT".
 ;
+.IF FORINT=0
 FORSIZ=2*ADDPRC+16
+.ENDIF
+.IF FORINT<>0
+FORSIZ=2*ADDPRC+20
+.ENDIF
 FNDFOR: TSX                     ;LOAD XREG WITH STK PNTR.
         INX
         INX
@@ -1630,8 +1737,42 @@ MOREN1: DEY
 DECBLT: DEC     HIGHTR+1
         DEC     HIGHDS+1        ;START ON NEW BLOCKS.
         DEX
+.IF BLTUNR=0
         BNE     MOREN1
+.ENDIF
+.IF BLTUNR<>0
+        BNE     BLTUPG
+.ENDIF
         RTS                     ;RETURN TO CALLER.
+.IF BLTUNR<>0
+BLTUPG: DEY
+        LDA     (HIGHTR),Y
+        STA     (HIGHDS),Y
+        DEY
+        LDA     (HIGHTR),Y
+        STA     (HIGHDS),Y
+        DEY
+        LDA     (HIGHTR),Y
+        STA     (HIGHDS),Y
+        DEY
+        LDA     (HIGHTR),Y
+        STA     (HIGHDS),Y
+        DEY
+        LDA     (HIGHTR),Y
+        STA     (HIGHDS),Y
+        DEY
+        LDA     (HIGHTR),Y
+        STA     (HIGHDS),Y
+        DEY
+        LDA     (HIGHTR),Y
+        STA     (HIGHDS),Y
+        DEY
+        LDA     (HIGHTR),Y
+        STA     (HIGHDS),Y
+        CPY     #0              ;WHOLE PAGE DONE?
+        BNE     BLTUPG
+        BEQ     DECBLT          ;ALWAYS.
+.ENDIF
 
 ;
 ; THIS ROUTINE IS USED TO ASCERTAIN THAT A GIVEN
@@ -2016,7 +2157,17 @@ KLOOP:  LDA     BUFOFS,X
         BNE     KLOOP           ;ALWAYS GOES.
 .ENDIF
 CMPSPC: CMP     #' '            ;IS IT A SPACE TO SAVE?
+.IF CRNSPC=0
         BEQ     STUFFH          ;YES, GO SAVE IT.
+.ENDIF
+.IF CRNSPC<>0
+        BNE     CMPNSP          ;NO, LOOK AT IT.
+        BIT     DORES           ;INSIDE "DATA"?
+        BVS     STUFFH          ;YES, SAVE IT.
+        INX                     ;SKIP THE SPACE.
+        BNE     KLOOP           ;ALWAYS GOES.
+CMPNSP:
+.ENDIF
         STA     ENDCHR          ;IF IT'S A QUOTE, THIS WILL
                                 ;STOP LOOP WHEN OTHER QUOTE APPEARS.
         CMP     #34             ;QUOTE SIGN?
@@ -2032,11 +2183,28 @@ KLOOP1: CMP     #'0'            ;SKIP NUMERICS.
         CMP     #60             ;":" AND ";" ARE ENTERED STRAIGHTAWAY.
         BCC     STUFFH
 MUSTCR: STY     BUFPTR          ;SAVE BUFFER POINTER.
+.IF CRNIDX=0
         LDY     #0              ;LOAD RESLST POINTER.
         STY     COUNT           ;ALSO CLEAR COUNT.
         DEY
         STX     TXTPTR          ;SAVE TEXT POINTER FOR LATER USE.
         DEX
+.ENDIF
+.IF CRNIDX<>0
+        STX     TXTPTR          ;SAVE TEXT POINTER FOR LATER USE.
+        SEC
+        SBC     #' '            ;ONLY " " THRU "_" ARE IN RESIDX.
+        CMP     #64
+        BCS     RESNON          ;CAN'T START A RESERVED WORD.
+        TAY
+        LDA     RESIDX,Y        ;GET FIRST WORD STARTING WITH IT.
+        BMI     RESNON          ;THERE IS NONE.
+RESNEW: STA     COUNT           ;SAVE TOKEN OF THE WORD TO TRY.
+        TAY
+        LDA     RESOFS,Y        ;GET ITS RESLST POINTER.
+        TAY
+        DEX
+.ENDIF
 RESER:  INY
 RESPUL: INX
 RESCON: LDA     BUFOFS,X
@@ -2071,12 +2239,20 @@ STRNG:  INY                     ;INCREMENT BUFFER POINTER.
         INX
         BNE     STR1            ;PROCESS NEXT CHARACTER.
 NTHIS:  LDX     TXTPTR          ;RESTORE TEXT POINTER.
+.IF CRNIDX=0
         INC     COUNT           ;INCREMENT RES WORD COUNT.
 NTHIS1: INY
         LDA     RESLST-1,Y      ;GET RES CHARACTER.
         BPL     NTHIS1          ;END OF ENTRY?
         LDA     RESLST,Y        ;YES. IS IT THE END?
         BNE     RESCON          ;NO, TRY THE NEXT WORD.
+.ENDIF
+.IF CRNIDX<>0
+        LDY     COUNT
+        LDA     RESNXT,Y        ;GET NEXT WORD WITH THE SAME FIRST CHR.
+        BPL     RESNEW          ;TRY IT IF THERE IS ONE.
+RESNON:
+.ENDIF
         LDA     BUFOFS,X        ;YES, END OF TABLE. GET 1ST CHR.
         BPL     GETBPT          ;STORE IT AWAY (ALWAYS BRANCHES).
 CRDONE: STA     BUF-3,Y ;SO THAT IF THIS IS A DIR STATEMENT
@@ -2163,6 +2339,10 @@ CLEARC: LDWD    MEMSIZ          ;FREE UP STRING SPACE.
         LDWD    VARTAB          ;LIBERATE THE
         STWD    ARYTAB          ;VARIABLES AND
         STWD    STREND          ;ARRAYS.
+.IF ARYCSH<>0
+        LDA     #0
+        STA     ARYNAM          ;FORGET THE LAST ARRAY.
+.ENDIF
 FLOAD:  JSR     RESTOR          ;RESTORE DATA.
 ;
 ; STKINI RESETS THE STACK POINTER ELIMINATING
@@ -2272,6 +2452,7 @@ QPLOP:  BPL     PLOOP           ;NO, HEAD FOR PRINTER.
         BIT     DORES           ;INSIDE QUOTE MARKS?
         BMI     PLOOP           ;YES, JUST TYPE THE CHARACTER.
 .ENDIF
+.IF CRNIDX=0
         SEC
         SBC     #127            ;GET RID OF SIGN BIT AND ADD 1.
         TAX                     ;MAKE IT A COUNTER.
@@ -2283,11 +2464,77 @@ RESCR1: INY
         LDA     RESLST,Y        ;END OF ENTRY?
         BPL     RESCR1          ;NO, CONTINUE PASSING.
         BMI     RESRCH
+.ENDIF
+.IF CRNIDX<>0
+        TAX
+        STY     LSTPNT          ;SAVE POINTER TO LINE.
+        LDY     RESOFS-128,X    ;GET RESLST POINTER OF THE TOKEN.
+.ENDIF
+.IF CRNSPC=0
 PRIT3:  INY
         LDA     RESLST,Y
         BMI     PRIT4           ;END OF RESERVED WORD.
         JSR     OUTDO           ;PRINT IT.
         BNE     PRIT3           ;END OF ENTRY? NO, TYPE REST.
+.ENDIF
+.IF CRNSPC<>0
+PRIT3:  LDA     RESLST+1,Y      ;DOES THE WORD START WITH A LETTER?
+        AND     #127
+        CMP     #'A'
+        BCC     PRIT5           ;NO, NO SPACE IN FRONT OF IT.
+        TYA
+        TAX                     ;SAVE RESLST POINTER.
+        LDY     LSTPNT
+        CPY     #5              ;FIRST CHARACTER OF THE LINE?
+        BCC     PRIT6           ;YES, THE NUMBER HAS ITS SPACE.
+        DEY
+        LDA     (LOWTR),Y               ;GET THE CHARACTER IN FRONT OF IT.
+        JSR     LSTJON          ;WOULD IT RUN INTO THE WORD?
+        BCC     PRIT6           ;NO.
+        LDA     #' '
+        JSR     OUTDO           ;YES, TYPE A SPACE.
+PRIT6:  TXA
+        TAY                     ;GET RESLST POINTER BACK.
+PRIT5:  INY
+        LDA     RESLST,Y
+        BMI     PRIT7           ;END OF RESERVED WORD.
+        JSR     OUTDO           ;PRINT IT.
+        BNE     PRIT5           ;END OF ENTRY? NO, TYPE REST.
+PRIT7:  AND     #127
+        CMP     #'A'            ;DOES THE WORD END WITH A LETTER?
+        BCC     PRIT4           ;NO, TYPE IT AS USUAL.
+        JSR     OUTDO
+        LDY     LSTPNT
+        INY
+        LDA     (LOWTR),Y               ;GET THE CHARACTER AFTER IT.
+        BMI     PRIT8           ;ANOTHER WORD, ALWAYS SEPARATE IT.
+        JSR     LSTJON          ;WOULD IT RUN INTO THE WORD?
+        BCC     PRIT9           ;NO.
+PRIT8:  LDA     #' '
+        JSR     OUTDO           ;TYPE A SPACE.
+PRIT9:  LDY     LSTPNT          ;GET POINTER TO LINE BACK.
+        JMP     PLOOP1
+;
+; LSTJON SETS CARRY IF THE CHARACTER IN ACCA RUNS INTO A WORD:
+; LETTERS, DIGITS, QUOTES, "$", "%" AND ")".
+;
+LSTJON: CMP     #128
+        BCS     LSTJNO          ;A TOKEN OR PI.
+        CMP     #'A'
+        BCS     LSTJRT          ;A LETTER.
+        CMP     #':'
+        BCS     LSTJNO
+        CMP     #'0'
+        BCS     LSTJRT          ;A DIGIT.
+        CMP     #')'
+        BEQ     LSTJRT
+        CMP     #'&'
+        BCS     LSTJNO
+        CMP     #34             ;QUOTE, "#", "$" OR "%".
+        RTS
+LSTJNO: CLC
+LSTJRT: RTS
+.ENDIF
 ; SUBTTL THE "FOR" STATEMENT.
 ;
 ; A "FOR" ENTRY ON THE STACK HAS THE FOLLOWING FORMAT:
@@ -2318,8 +2565,20 @@ FOR:    LDA     #128            ;DON'T RECOGNIZE
         TXS                     ;MANIFEST.
 NOTOL:  PLA                     ;GET RID OF NEWSTT RETURN ADDRESS
         PLA                     ;IN CASE THIS IS A TOTALLY NEW ENTRY.
+.IF FORINT=0
         LDA     #8+ADDPRC
+.ENDIF
+.IF FORINT<>0
+        LDA     #10+ADDPRC
+        JSR     GETSTK          ;MAKE SURE 20 BYTES ARE AVAILABLE.
+        PHA                     ;ROOM FOR THE INTEGER LIMIT
+        PHA
+        PHA                     ;AND THE INTEGER STEP.
+        PHA
+.ENDIF
+.IF FORINT=0
         JSR     GETSTK          ;MAKE SURE 16 BYTES ARE AVAILABLE.
+.ENDIF
         JSR     DATAN           ;GET A COUNT IN [Y] OF THE NUMBER OF
                                 ;CHACRACTERS LEFT IN THE "FOR" STATEMENT
                                 ;[TXTPTR] IS UNAFFECTED.
@@ -2349,10 +2608,16 @@ LDFONE: LDWDI   FONE            ;PUT 1.0 INTO FAC.
         JSR     CHRGET          ;YES. ADVANCE POINTER.
         JSR     FRMNUM          ;READ THE STEP.
 ONEON:  JSR     SIGN            ;GET SIGN IN ACCA.
+  .IF .LOBYTE(*+2) = 255
+        NOP                     ;PUSHF CAN'T RETURN ACROSS A PAGE.
+  .ENDIF
         JSR     PUSHF           ;PUSH FAC ONTO STACK (THRU A).
         PSHWD   FORPNT          ;PUT PNTR TO VARIABLE ON STACK.
 NXTCON: LDA     #FORTK          ;PUT A FORTK ONTO STACK.
         PHA
+.IF FORINT<>0
+        JSR     FORSET          ;SET UP THE INTEGER STEP AND LIMIT.
+.ENDIF
 ;       BNEA    NEWSTT          ;SIMULATE BNE TO NEWSTT. JUST FALL IN.
 ; SUBTTL        NEW STATEMENT FETCHER.
 ;
@@ -3048,6 +3313,10 @@ STROUT: JSR     STRLIT          ;GET A STRING LITERAL.
 ; PRINT THE STRING WHOSE DESCRIPTOR IS POINTED TO BY FACMO.
 ;
 STRPRT: JSR     FREFAC          ;RETURN TEMP POINTER.
+.IF BLKOUT<>0
+        BIT     CNTWFL          ;SUPPRESSED OUTPUT STILL GOES THROUGH OUTDO.
+        BPL     STRBLK
+.ENDIF
         TAX                     ;PUT COUNT INTO COUNTER.
         LDY     #0
         INX                     ;MOVE ONE AHEAD.
@@ -3060,6 +3329,9 @@ STRPR2: DEX
         BNE     STRPR2
         JSR     CRFIN           ;TYPE REST OF CARRIAGE RETURN.
         JMP     STRPR2          ;AND ON AND ON.
+.IF BLKOUT<>0
+STRBLK: JMP     BLKOUT          ;PRINT [A] CHARACTERS AT [INDEX].
+.ENDIF
 ;
 ; OUTDO OUTPUTS THE CHARACTER IN ACCA, USING CNTWFL
 ; (SUPPRESS OR NOT), TRMPOS (PRINT HEAD POSITION),
@@ -3419,6 +3691,10 @@ STXFOR: STWD    FORPNT          ;INTO "FORPNT".
         LDX     #ERRNF          ;"NEXT WITHOUT FOR".
 ERRGO5: BEQ     ERRGO4
 HAVFOR: TXS                     ;SETUP STACK. CHOP FIRST.
+.IF FORINT<>0
+        JMP     FORNXT          ;TRY IT WITH INTEGERS FIRST.
+NXTFLT: TSX
+.ENDIF
         TXA
         CLC
         ADC     #4              ;POINT TO INCREMENT
@@ -3442,6 +3718,9 @@ HAVFOR: TXS                     ;SETUP STACK. CHOP FIRST.
                                 ;OF (CURRENT VALUE-FINAL VALUE).
         BEQ     LOOPDN          ;IF SIGN (FINAL-CURRENT)-SIGN STEP=0
                                 ;THEN LOOP IS DONE.
+.IF FORINT<>0
+NXTLOP:
+.ENDIF
         LDA     2*ADDPRC+12+257,X
         STA     CURLIN          ;STORE LINE NUMBER OF "FOR" STATEMENT.
         LDA     257+13+(2*ADDPRC),X
@@ -3452,7 +3731,7 @@ HAVFOR: TXS                     ;SETUP STACK. CHOP FIRST.
         STA     TXTPTR+1
 NEWSGO: JMP     NEWSTT          ;PROCESS NEXT STATEMENT.
 LOOPDN: TXA
-        ADC     #2*ADDPRC+15            ;ADDS 16 WITH CARRY.
+        ADC     #FORSIZ-1               ;ADDS 16 WITH CARRY.
         TAX
         TXS                     ;NEW STACK PNTR.
         JSR     CHRGOT
@@ -3479,6 +3758,207 @@ CHKOK:  RTS
 DOCSTR: BCS     CHKOK
 CHKERR: LDX     #ERRTM
 ERRGO4: JMP     ERROR
+.IF FORINT<>0
+;
+; "NEXT" WITH AN INTEGER STEP. THE LOOP VARIABLE IS ADDED AND COMPARED
+; AS AN INTEGER IF IT IS ONE, OTHERWISE THE FAC DOES IT.
+;
+FORNXT: LDA     2*ADDPRC+16+257,X
+        ORA     2*ADDPRC+17+257,X
+        BEQ     FORNFL          ;NO INTEGER STEP.
+        LDWD    FORPNT
+        JSR     FORQNT          ;GET THE LOOP VARIABLE AS AN INTEGER.
+        BCS     FORNFL
+        TSX
+        CLC
+        LDA     FACLO           ;ADD THE STEP.
+        ADC     2*ADDPRC+16+257,X
+        STA     FACLO
+        LDA     FACMO
+        ADC     2*ADDPRC+17+257,X
+        STA     FACMO
+        BVS     FORNFL          ;OVERFLOW.
+        ORA     FACLO
+        BEQ     FORNFL          ;LET FADD MAKE THE ZERO.
+        SEC
+        LDA     2*ADDPRC+17+257,X
+        BMI     FORNNG
+        LDA     2*ADDPRC+18+257,X
+        SBC     FACLO           ;LIMIT-CURRENT IF STEP IS POSITIVE.
+        LDA     2*ADDPRC+19+257,X
+        SBC     FACMO
+        JMP     FORNSG
+FORNNG: LDA     FACLO           ;CURRENT-LIMIT IF STEP IS NEGATIVE.
+        SBC     2*ADDPRC+18+257,X
+        LDA     FACMO
+        SBC     2*ADDPRC+19+257,X
+FORNSG: BVC     FORNDF
+        EOR     #128            ;SIGN OF THE TRUE DIFFERENCE.
+FORNDF: STA     FACEXP          ;NEGATIVE IF THE LOOP IS DONE.
+        JSR     FORFLT          ;STORE THE NEW VALUE.
+        TSX
+        SEC
+        LDA     FACEXP
+        BMI     FORNDN
+        JMP     NXTLOP
+FORNDN: JMP     LOOPDN
+FORNFL: JMP     NXTFLT
+;
+; SET UP THE INTEGER STEP AND LIMIT OF A NEW "FOR" ENTRY.
+; THE STEP IS LEFT ZERO IF ONE OF THEM IS NOT AN INTEGER.
+;
+FORSET: TSX
+        LDA     ADDPRC+9+257,X  ;PACK THE SIGN OF THE STEP,
+        ORA     #127            ;MOVFM IGNORES IT.
+        AND     6+257,X
+        STA     6+257,X
+        TXA
+        CLC
+        ADC     #6              ;POINT TO THE STEP.
+        LDY     #1
+        JSR     FORQNT
+        BCS     FORSNO
+        TSX
+        LDA     FACLO
+        STA     2*ADDPRC+18+257,X
+        LDA     FACMO
+        STA     2*ADDPRC+19+257,X
+        TXA
+        CLC
+        ADC     #ADDPRC+11      ;POINT TO UPPER LIMIT.
+        LDY     #1
+        JSR     FORQNT
+        TSX
+        BCS     FORSNO
+        LDA     FACLO
+        STA     2*ADDPRC+20+257,X
+        LDA     FACMO
+        STA     2*ADDPRC+21+257,X
+        RTS
+FORSNO: TSX
+        LDA     #0
+        STA     2*ADDPRC+18+257,X
+        STA     2*ADDPRC+19+257,X
+        RTS
+;
+; GET THE PACKED NUMBER AT [Y,A] AS AN INTEGER INTO [FACMO,FACLO].
+; C=1 IF IT IS NOT AN INTEGER FROM -32767 THRU 32767.
+;
+FORQNT: STWD    INDEX
+        LDY     #0
+        STY     FACMO
+        STY     FACLO
+        LDA     (INDEX),Y
+        BEQ     FORQOK          ;ZERO.
+        CMP     #129
+        BCC     FORQBD          ;NO INTEGER PART.
+        CMP     #144
+        BCS     FORQRT          ;TOO BIG.
+        TAX
+        LDY     #3
+        LDA     (INDEX),Y
+        BNE     FORQBD          ;FRACTION IN THE LOW ORDERS.
+.IF ADDPRC<>0
+        INY
+        LDA     (INDEX),Y
+        BNE     FORQBD
+.ENDIF
+        LDY     #2
+        LDA     (INDEX),Y
+        STA     FACLO
+        DEY
+        LDA     (INDEX),Y
+        ORA     #128
+        TAY
+        TXA
+        EOR     #255
+        CPX     #137
+        BCC     FORQB1          ;LESS THAN 256.
+        ADC     #144            ;NUMBER OF BITS TO SHIFT OUT.
+        TAX
+        TYA
+FORQS2: LSR     A
+        ROR     FACLO
+        BCS     FORQBD          ;FRACTION.
+        DEX
+        BNE     FORQS2
+        STA     FACMO
+        BEQ     FORQSG
+FORQB1: LDX     FACLO
+        BNE     FORQBD
+        ADC     #137
+        TAX
+        TYA
+        CPX     #0
+        BEQ     FORQS0
+FORQS1: LSR     A
+        BCS     FORQBD
+        DEX
+        BNE     FORQS1
+FORQS0: STA     FACLO
+FORQSG: LDY     #1
+        LDA     (INDEX),Y
+        BPL     FORQOK
+        SEC                     ;NEGATE.
+        LDA     #0
+        SBC     FACLO
+        STA     FACLO
+        LDA     #0
+        SBC     FACMO
+        STA     FACMO
+FORQOK: CLC
+        RTS
+FORQBD: SEC
+FORQRT: RTS
+;
+; STORE THE NON-ZERO INTEGER IN [FACMO,FACLO] INTO THE LOOP VARIABLE,
+; PACKED THE SAME WAY MOVVF DOES.
+;
+FORFLT: LDX     #0
+        LDA     FACMO
+        BPL     FORFPS
+        SEC                     ;MAKE IT POSITIVE.
+        LDA     #0
+        SBC     FACLO
+        STA     FACLO
+        LDA     #0
+        SBC     FACMO
+        LDX     #128
+FORFPS: STX     FACSGN
+        TAY
+        BNE     FORFN2
+        LDA     FACLO           ;LESS THAN 256.
+        STY     FACLO
+        LDX     #137
+FORFN1: DEX
+        ASL     A
+        BCC     FORFN1
+        BCS     FORFST
+FORFN2: LDX     #145
+FORFNM: DEX
+        ASL     FACLO
+        ROL     A
+        BCC     FORFNM          ;SHIFT UNTIL THE LEADING ONE IS OUT.
+FORFST: LSR     A
+        ROR     FACLO
+        ORA     FACSGN
+        LDY     #1
+        STA     (FORPNT),Y
+        DEY
+        TXA
+        STA     (FORPNT),Y
+        LDY     #2
+        LDA     FACLO
+        STA     (FORPNT),Y
+        LDA     #0
+        INY
+        STA     (FORPNT),Y
+.IF ADDPRC<>0
+        INY
+        STA     (FORPNT),Y
+.ENDIF
+        RTS
+.ENDIF
 ;
 ; THE FORMULA EVALUATOR STARTS WITH
 ; [TXTPTR] POINTING TO THE FIRST CHARACTER OF THE FORMULA.
@@ -3565,6 +4045,9 @@ DOPRE1: LDA     OPTAB+2,Y
         PHA                     ;DISP ADDR GOES ONTO STACK.
         LDA     OPTAB+1,Y
         PHA
+  .IF .LOBYTE(*+2) = 255
+        NOP                     ;PUSHF CAN'T RETURN ACROSS A PAGE.
+  .ENDIF
         JSR     PUSHF1          ;SAVE FAC ON STACK UNPACKED.
         LDA     OPMASK          ;[ACCA] MAY BE MASK FOR REL.
         JMP     LPOPER
@@ -4063,7 +4546,12 @@ VAROK:  LDWD    ARYTAB
         BCC     NOTEVE
         INY
 NOTEVE: STWD    HIGHDS          ;PLACE TO STUFF IT.
+.IF ARYCSH=0
         JSR     BLTU            ;MOVE IT ALL.
+.ENDIF
+.IF ARYCSH<>0
+        JSR     ARYBLT
+.ENDIF
                                 ;NOTE [Y,A] HAS [HIGHDS] FOR REASON.
         LDWD    HIGHDS          ;AND SET UP
         INY
@@ -4095,6 +4583,11 @@ FINPTR: LDA     LOWTR
         INY
 FINNOW: STWD    VARPNT          ;THIS IS IT.
         RTS
+.IF ARYCSH<>0
+ARYBLT: LDX     #0              ;THE ARRAYS MOVE UP, SO
+        STX     ARYNAM          ;FORGET THE LAST ONE.
+        JMP     BLTU
+.ENDIF
 ; SUBTTL        MULTIPLE DIMENSION CODE.
 FMAPTR: LDA     COUNT
         ASL     A
@@ -4176,6 +4669,9 @@ INDLOP: TYA                     ;SAVE NUMBER OF DIMS.
         AND     #127
 .ENDIF
         STA     DIMFLG          ;DIMFLG OFF STACK.
+.IF ARYCSH<>0
+        JMP     ARYFND
+.ENDIF
         LDX     ARYTAB          ;PLACE TO START SEARCH.
         LDA     ARYTAB+1
 LOPFDA: STX     LOWTR
@@ -4191,7 +4687,12 @@ LOPFDV: LDY     #0
         BNE     NMARY1          ;NO WAY IS IT THIS. GET OUT OF HERE.
         LDA     VARNAM+1
         CMP     (LOWTR),Y               ;LOW ORDERS?
+.IF ARYCSH=0
         BEQ     GOTARY          ;WELL, HERE IT IS !!
+.ENDIF
+.IF ARYCSH<>0
+        BEQ     ARYSET
+.ENDIF
 NMARY1: INY
         LDA     (LOWTR),Y               ;GET LENGTH.
         CLC
@@ -4205,6 +4706,30 @@ BSERR:  LDX     #ERRBS          ;GET BAD SUB ERROR NUMBER.
         SKIP2
 FCERR:  LDX     #ERRFC          ;TOO BIG. "FUNCTION CALL" ERROR.
 ERRGO3: JMP     ERROR
+.IF ARYCSH<>0
+ARYMIS: LDX     ARYTAB          ;PLACE TO START SEARCH.
+        LDA     ARYTAB+1
+        JMP     LOPFDA
+ARYSET: LDA     VARNAM          ;REMEMBER IT FOR NEXT TIME.
+        STA     ARYNAM
+        LDA     VARNAM+1
+        STA     ARYNAM+1
+        LDA     LOWTR
+        STA     ARYADR
+        LDA     LOWTR+1
+        STA     ARYADR+1
+        BNE     GOTARY          ;ALWAYS.
+ARYFND: LDA     VARNAM          ;SAME ARRAY AS LAST TIME?
+        CMP     ARYNAM
+        BNE     ARYMIS
+        LDA     VARNAM+1
+        CMP     ARYNAM+1
+        BNE     ARYMIS
+        LDA     ARYADR          ;YES, NO NEED TO SEARCH.
+        STA     LOWTR
+        LDA     ARYADR+1
+        STA     LOWTR+1
+.ENDIF
 GOTARY: LDX     #ERRDD          ;PERHAPS A "RE-DIMENSION" ERROR
         LDA     DIMFLG          ;TEST THE DIMFLG
         BNE     ERRGO3
@@ -4240,7 +4765,14 @@ GOTARY: LDX     #ERRDD          ;PERHAPS A "RE-DIMENSION" ERROR
 ;       OTHERWISE INDEX INTO THE VARIABLE AS IF IT
 ;        WERE FOUND ON THE INITIAL SEARCH.
 ;
+.IF ARYCSH<>0
+NOTFDD: LDA     #0
+        STA     ARYNAM          ;FORGET THE LAST ARRAY.
+        JSR     FMAPTR          ;FORM ARYPNT.
+.ENDIF
+.IF ARYCSH=0
 NOTFDD: JSR     FMAPTR          ;FORM ARYPNT.
+.ENDIF
         JSR     REASON
         LDA     #0
         TAY
@@ -4375,6 +4907,7 @@ ADDIND: ADC     INDICE+1
         DEC     COUNT           ;ANY MORE?
         BNE     INLPNM          ;YES.
         STA     CURTOL+1        ;FIX ARRAY BUG ****
+.IF ARYCSH=0
 .IF ADDPRC=0
         LDX     #4
 .ENDIF
@@ -4393,6 +4926,30 @@ NOTFL1: LDA     VARNAM+1
 STOML1: STX     ADDEND
         LDA     #0
         JSR     UMULTD          ;ON RTS, A&Y=HI . X=LO.
+.ENDIF
+.IF ARYCSH<>0
+        TXA                     ;ELEMENTS HAVE 2, 3 OR 5 BYTES,
+        ASL     A               ;SO SHIFT AND ADD INSTEAD OF "UMULTD".
+        STA     ADDEND
+        LDA     CURTOL+1
+        ROL     A
+        STA     ADDEND+1        ;[ADDEND]=[CURTOL]*2.
+        BIT     VARNAM
+        BMI     ARYMUD          ;INTEGER.
+        BIT     VARNAM+1
+        BMI     ARYMU3          ;STRING.
+        ASL     ADDEND
+        ROL     ADDEND+1        ;[CURTOL]*4 FOR A REAL.
+ARYMU3: TXA
+        CLC
+        ADC     ADDEND
+        STA     ADDEND
+        LDA     CURTOL+1
+        ADC     ADDEND+1
+        STA     ADDEND+1
+ARYMUD: LDX     ADDEND          ;CARRY IS CLEAR SINCE THE
+        LDY     ADDEND+1        ;OFFSET FITS THE ARRAY.
+.ENDIF
         TXA
         ADC     ARYPNT
         STA     VARPNT
@@ -4681,15 +5238,37 @@ TRYAG2: PHA                     ;SAVE FOR LATER.
         LDY     FRETOP+1
         BCS     TRYAG3
         DEY
+.IF GRBCMP<>0
+TRYAG3: SEC
+        SBC     #2              ;ROOM FOR THE BACK POINTER.
+        BCS     TRYAG4
+        DEY
+TRYAG4: CPY     STREND+1        ;COMPARE HIGH ORDERS.
+.ENDIF
+.IF GRBCMP=0
 TRYAG3: CPY     STREND+1        ;COMPARE HIGH ORDERS.
+.ENDIF
         BCC     GARBAG          ;MAKE ROOM FOR MORE.
         BNE     STRFRE          ;SAVE NEW FRETOP.
         CMP     STREND          ;COMPARE LOW ORDERS.
         BCC     GARBAG          ;CLEAN UP.
 STRFRE: STWD    FRETOP          ;SAVE NEW [FRETOP].
         STWD    FRESPC          ;PUT IT THERE OLD MAN.
+.IF GRBCMP=0
         TAX                     ;PRESERVE A IN X.
         PLA                     ;GET COUNT BACK IN ACCA.
+.ENDIF
+.IF GRBCMP<>0
+        PLA                     ;GET COUNT BACK IN ACCA.
+        TAY
+        STA     (FRETOP),Y              ;MARK THE STRING AS NOT IN USE.
+        INY
+        PHA
+        LDA     #255
+        STA     (FRETOP),Y
+        PLA
+        LDXY    FRETOP
+.ENDIF
         RTS                     ;ALL DONE.
 GARBAG: LDX     #ERROM          ;"OUT OF STRING SPACE"
         LDA     GARBFL
@@ -4704,6 +5283,7 @@ GARBA2:                         ;START FROM TOP DOWN.
         LDA     #7              ;TYPE "BELL".
         JSR     OUTDO
 .ENDIF
+.IF GRBCMP=0
         LDX     MEMSIZ
         LDA     MEMSIZ+1
 FNDVAR: STX     FRETOP          ;LIKE SO.
@@ -4713,6 +5293,10 @@ FNDVAR: STX     FRETOP          ;LIKE SO.
         STY     GRBPNT          ;BOTH BYTES SET TO ZERO (FIX BUG)
         LDWX    STREND
         STWX    GRBTOP
+.ENDIF
+.IF GRBCMP<>0
+        LDY     #0              ;FIRST STORE THE BACK POINTERS.
+.ENDIF
         LDWXI   TEMPST
         STWX    INDEX1
 TVAR:   CMP     TEMPPT          ;DONE WITH TEMPS?
@@ -4787,16 +5371,48 @@ DVARS:
         INY
 DVAR:   LDA     (INDEX1),Y              ;IS LENGTH=0?
         BEQ     DVARTS          ;YES, RETURN.
+.IF GRBCMP<>0
+        STA     SIZE            ;SAVE THE LENGTH.
+        TYA
+        CLC
+        ADC     INDEX1
+        STA     GRBPNT          ;[GRBPNT]=ADDR OF THE DESCRIPTOR.
+        LDA     INDEX1+1
+        ADC     #0
+        STA     GRBPNT+1
+.ENDIF
         INY
         LDA     (INDEX1),Y              ;GET LOW(ADR).
         TAX
         INY
         LDA     (INDEX1),Y
         CMP     FRETOP+1        ;COMPARE HIGHS.
+.IF GRBCMP<>0
+        BCC     DVARTS          ;NOT IN STRING SPACE.
+        BNE     GRBMRK
+        CPX     FRETOP          ;COMPARE LOWS.
+        BCC     DVARTS
+GRBMRK: STA     GRBTOP+1
+        TXA
+        CLC
+        ADC     SIZE            ;POINT BEHIND THE STRING.
+        STA     GRBTOP
+        BCC     GRBMK1
+        INC     GRBTOP+1
+GRBMK1: LDY     #0
+        LDA     GRBPNT
+        STA     (GRBTOP),Y              ;STORE THE BACK POINTER.
+        INY
+        LDA     GRBPNT+1
+        STA     (GRBTOP),Y
+        JMP     DVARTS          ;DESCRIPTORS MAY BE ON PAGE ZERO.
+.ENDIF
+.IF GRBCMP=0
         BCC     DVAR2           ;IF THIS STRING'S PNTR .GE. [FRETOP]
         BNE     DVARTS          ;NO NEED TO MESS WITH IT FURTHER.
         CPX     FRETOP          ;COMPARE LOWS.
         BCS     DVARTS
+.ENDIF
 DVAR2:  CMP     GRBTOP+1
         BCC     DVARTS          ;IF THIS STRING IS BELOW PREVIOUS,
                                 ;FORGET IT.
@@ -4821,6 +5437,86 @@ GRBRTS: LDX     INDEX1+1
 ;
 ; HERE WHEN MADE ONE COMPLETE PASS THROUGH STRING VARIABLES.
 ;
+.IF GRBCMP<>0
+;
+; NOW MOVE THE STRINGS FROM THE TOP DOWN. [GRBPNT] IS THE
+; END OF THE NEXT STRING AND [HIGHDS] THE END OF THE FREE
+; SPACE ABOVE IT. A STRING IN USE HAS THE POINTER TO ITS
+; DESCRIPTOR IN THE TWO BYTES FOLLOWING IT, ANY OTHER
+; STRING HAS ITS LENGTH AND 255.
+;
+GRBPAS: LDWX    MEMSIZ          ;START FROM THE TOP.
+        STWX    HIGHDS
+GRBNXT: STWX    GRBPNT
+        CMP     FRETOP          ;REACHED THE BOTTOM?
+        BNE     GRBSTR
+        CPX     FRETOP+1
+        BNE     GRBSTR
+        LDWX    HIGHDS          ;YES, ALL DONE.
+        STWX    FRETOP
+        RTS
+GRBSTR: SEC
+        SBC     #2              ;POINT TO THE BACK POINTER.
+        STA     LOWTR
+        BCS     GRBST1
+        DEX
+GRBST1: STX     LOWTR+1
+        LDY     #1
+        LDA     (LOWTR),Y
+        CMP     #255            ;IS THE STRING IN USE?
+        BNE     GRBUSE          ;YES.
+        JSR     GRBBEG          ;NO, JUST SKIP IT.
+        JMP     GRBNXT
+GRBUSE: STA     INDEX1+1
+        DEY
+        LDA     (LOWTR),Y
+        STA     INDEX1          ;[INDEX1]=ADDR OF THE DESCRIPTOR.
+        LDA     (INDEX1),Y              ;GET THE LENGTH.
+        STA     (LOWTR),Y               ;MARK THE STRING AS NOT IN USE AGAIN.
+        INY
+        LDA     #255
+        STA     (LOWTR),Y
+        JSR     GRBBEG          ;[LOWTR]=START OF THE STRING.
+        LDA     HIGHDS
+        SEC
+        SBC     GRBPNT
+        STA     HIGHTR
+        LDA     HIGHDS+1
+        SBC     GRBPNT+1
+        STA     HIGHTR+1
+        ORA     HIGHTR          ;DOES THE STRING HAVE TO MOVE?
+        BEQ     GRBSKP          ;NO.
+        LDY     #1
+        LDA     HIGHTR
+        CLC
+        ADC     LOWTR
+        STA     (INDEX1),Y              ;CHANGE ADDR OF STRING IN VAR.
+        INY
+        LDA     HIGHTR+1
+        ADC     LOWTR+1
+        STA     (INDEX1),Y
+        LDWX    GRBPNT
+        STWX    HIGHTR
+        JSR     BLTUC           ;MOVE IT WITH ITS BACK POINTER.
+        INC     HIGHDS+1        ;[HIGHDS]=START OF RESULT.
+        LDWX    LOWTR           ;CONTINUE BELOW THE OLD STRING.
+        JMP     GRBNXT
+GRBSKP: LDWX    LOWTR
+        STWX    HIGHDS
+        JMP     GRBNXT
+GRBBEG: LDY     #0              ;SUBTRACT THE LENGTH FROM [LOWTR].
+        LDA     (LOWTR),Y
+        EOR     #255
+        SEC
+        ADC     LOWTR
+        STA     LOWTR
+        LDX     LOWTR+1
+        BCS     GRBBG1
+        DEX
+        STX     LOWTR+1
+GRBBG1: RTS
+.ENDIF
+.IF GRBCMP=0
 GRBPAS: LDA     GRBPNT+1        ;VARIABLE POINTER.
         ORA     GRBPNT
         BEQ     GRBRTS          ;ALL DONE.
@@ -4849,6 +5545,7 @@ GRBPAS: LDA     GRBPNT+1        ;VARIABLE POINTER.
         INY
         STA     (GRBPNT),Y              ;CHANGE ADDR OF STRING IN VAR.
         JMP     FNDVAR          ;GO TO FNDVAR WITH SOMETHING FOR
+.ENDIF
                                 ;[FRETOP].
 ;
 ; THE FOLLOWING ROUTINE CONCATENATES TWO STRINGS.
@@ -4943,11 +5640,23 @@ FRETMP: STWD    INDEX           ;GET LENGTH FOR LATER.
         CPX     FRETOP
         BNE     FRETRT
         PHA
+.IF GRBCMP=0
         CLC
         ADC     FRETOP
         STA     FRETOP
         BCC     FREPLA
         INC     FRETOP+1
+.ENDIF
+.IF GRBCMP<>0
+        SEC                     ;ALSO FREE THE BACK POINTER.
+        ADC     FRETOP
+        STA     FRETOP
+        BCC     FREPL1
+        INC     FRETOP+1
+FREPL1: INC     FRETOP
+        BNE     FREPLA
+        INC     FRETOP+1
+.ENDIF
 FREPLA: PLA                     ;GET COUNT BACK.
 FRETRT: STXY    INDEX           ;SAVE FOR LATER USE.
         RTS
@@ -5603,10 +6312,16 @@ LOG:    JSR     SIGN            ;IS IT POSITIVE?
         BPL     LOG1
 LOGERR: JMP     FCERR           ;CAN'T TOLERATE NEG OR ZERO.
 LOG1:   LDA     FACEXP          ;GET EXPONENT INTO ACCA.
+.IF TRNTAB=0
         SBC     #$7F            ;REMOVE BIAS. (CARRY IS OFF)
+.ENDIF
+.IF TRNTAB<>0
+        SBC     #$80            ;ONE MORE AS LOG2(F)=LOG2(2*F)-1.
+.ENDIF
         PHA                     ;SAVE AWHILE.
         LDA     #$80
         STA     FACEXP          ;RESULT IS FAC IN RANGE [0.5,1].
+.IF TRNTAB=0
         LDWDI   SQRHLF          ;GET POINTER TO SQR(0.5).
 
 ; CALCULATE (F-SQR(.5))/(F+SQR(.5))
@@ -5620,6 +6335,14 @@ LOG1:   LDA     FACEXP          ;GET EXPONENT INTO ACCA.
         JSR     POLYX           ;EVALUATE APPROXIMATION POLYNOMIAL.
         LDWDI   NEGHLF          ;ADD IN LAST CONSTANT.
         JSR     FADD
+.ENDIF
+.IF TRNTAB<>0
+        LDWDI   NEGHLF          ;F-1/2 IN RANGE [0,0.5].
+        JSR     FADD
+        LDX     #$84            ;16 INTERVALS PER UNIT.
+        LDWDI   LOGTBL
+        JSR     TBLPOL          ;LOG2(2*F).
+.ENDIF
         PLA                     ;GET EXPONENT BACK.
         JSR     FINLOG          ;ADD IT IN.
 MULLN2: LDWDI   LOG2            ;MULTIPLY RESULT BY LOG(2.0).
@@ -5629,6 +6352,24 @@ MULLN2: LDWDI   LOG2            ;MULTIPLY RESULT BY LOG(2.0).
 FMULT:  JSR     CONUPK          ;UNPACK THE CONSTANT INTO ARG FOR USE.
 FMULTT: JEQ     MULTRT          ;IF FAC=0, RETURN. FAC IS SET.
         JSR     MULDIV          ;FIX UP THE EXPONENTS.
+.IF QSQMUL<>0
+        LDA     DEFPNT          ;SAVE TEMPF3, IT HOLDS TWO TABLE POINTERS.
+        PHA
+        LDA     DEFPNT+1
+        PHA
+        LDA     DSCPNT
+        PHA
+        LDA     DSCPNT+1
+        PHA
+        LDA     #QSQ1L/256      ;SET UP THE HIGH ORDERS OF THE POINTERS.
+        STA     INDEX1+1
+        LDA     #QSQ2L/256
+        STA     INDEX2+1
+        LDA     #QSQ1H/256
+        STA     DEFPNT+1
+        LDA     #QSQ2H/256
+        STA     DSCPNT+1
+.ENDIF
         LDA     #$00            ;TO CLEAR RESULT.
         STA     RESHO
 .IF ADDPRC<>0
@@ -5648,9 +6389,115 @@ FMULTT: JEQ     MULTRT          ;IF FAC=0, RETURN. FAC IS SET.
 .ENDIF
         LDA     FACHO           ;MLTPLY ARG BY FACHO.
         JSR     MLTPL1
+.IF QSQMUL<>0
+        PLA                     ;RESTORE TEMPF3.
+        STA     DSCPNT+1
+        PLA
+        STA     DSCPNT
+        PLA
+        STA     DEFPNT+1
+        PLA
+        STA     DEFPNT
+.ENDIF
         JMP     MOVFR           ;MOVE RESULT INTO FAC,
                                 ;NORMALIZE RESULT, AND RETURN.
 MLTPLY: JEQ     MULSHF          ;SHIFT RESULT RIGHT 1 BYTE.
+.IF QSQMUL<>0
+MLTPL1: STA     INDEX1          ;POINT TO THE SQUARES OF [ACCA]+X
+        STA     DEFPNT
+        EOR     #$FF
+        STA     INDEX2          ;AND OF X-[ACCA].
+        STA     DSCPNT
+        LDY     ARGLO           ;[Y,X]=ARGLO*[ACCA].
+        LDA     (INDEX1),Y
+        SEC
+        SBC     (INDEX2),Y
+        TAX
+        LDA     (DEFPNT),Y
+        SBC     (DSCPNT),Y
+        TAY
+        TXA
+        CLC
+        ADC     RESLO           ;ADD THE PRODUCTS TO THE RESULT
+        STA     FACOV           ;AND SHIFT IT RIGHT 1 BYTE.
+        TYA
+        ADC     RESMO
+        STA     RESLO
+        PHP
+.IF ADDPRC<>0
+        LDY     ARGMOH          ;[Y,X]=ARGMOH*[ACCA].
+        LDA     (INDEX1),Y
+        SEC
+        SBC     (INDEX2),Y
+        TAX
+        LDA     (DEFPNT),Y
+        SBC     (DSCPNT),Y
+        TAY
+        PLP
+        TXA
+        ADC     RESMOH
+        STA     RESMO
+        TYA
+        ADC     RESHO
+        STA     RESMOH
+.ENDIF
+.IF ADDPRC=0
+        LDY     ARGHO           ;[Y,X]=ARGHO*[ACCA].
+        LDA     (INDEX1),Y
+        SEC
+        SBC     (INDEX2),Y
+        TAX
+        LDA     (DEFPNT),Y
+        SBC     (DSCPNT),Y
+        TAY
+        PLP
+        TXA
+        ADC     RESHO
+        STA     RESMO
+        TYA
+.ENDIF
+        LDA     #$00
+        ADC     #$00
+        STA     RESHO
+        LDY     ARGMO           ;[Y,X]=ARGMO*[ACCA].
+        LDA     (INDEX1),Y
+        SEC
+        SBC     (INDEX2),Y
+        TAX
+        LDA     (DEFPNT),Y
+        SBC     (DSCPNT),Y
+        TAY
+        TXA
+        CLC
+        ADC     RESLO
+        STA     RESLO
+        TYA
+        ADC     RESMO
+        STA     RESMO
+.IF ADDPRC<>0
+        PHP
+        LDY     ARGHO           ;[Y,X]=ARGHO*[ACCA].
+        LDA     (INDEX1),Y
+        SEC
+        SBC     (INDEX2),Y
+        TAX
+        LDA     (DEFPNT),Y
+        SBC     (DSCPNT),Y
+        TAY
+        PLP
+        TXA
+        ADC     RESMOH
+        STA     RESMOH
+        TYA
+.ENDIF
+.IF ADDPRC=0
+        LDA     #$00
+.ENDIF
+        ADC     RESHO
+        STA     RESHO
+        SEC                     ;LEAVE WITH CARRY SET LIKE THE LOOP.
+.ENDIF
+.IF QSQMUL=0
 MLTPL1: LSR     A
         ORA     #$80
 MLTPL2: TAY
@@ -5680,6 +6527,7 @@ MLTPL3: ROR     RESHO
         TYA
         LSR     A               ;CLEAR MSB SO WE GET A CLOSER TO 0.
         BNE     MLTPL2          ;SLOW AS A TURTLE !
+.ENDIF
 MULTRT: RTS
 
         ;ROUTINE TO UNPACK MEMORY INTO ARG.
@@ -6131,6 +6979,17 @@ FINE:   LDA     TENEXP
 FINE1:  SEC
         SBC     DECCNT          ;GET NUMBER OF PLACES TO SHIFT.
         STA     TENEXP
+.IF FINACC<>0
+        BMI     FINE3           ;DIVIDE THE FLOATED NUMBER.
+        BEQ     FINE3
+FINE2:  LDA     #'0'
+        JSR     FINTEN          ;MULTIPLY THE INTEGER WHILE IT FITS.
+        BCS     FINE3
+        DEC     TENEXP          ;DONE?
+        BNE     FINE2           ;NO.
+FINE3:  JSR     FINFLO          ;FLOAT THE INTEGER.
+        LDA     TENEXP
+.ENDIF
         BEQ     FINQNG          ;NEGATE?
         BPL     FINMUL          ;POSITIVE SO MULTIPLY.
 FINDIV: JSR     DIV10
@@ -6149,7 +7008,17 @@ FINDIG: PHA
         BIT     DPTFLG
         BPL     FINDG1
         INC     DECCNT
+.IF FINACC=0
 FINDG1: JSR     MUL10
+.ENDIF
+.IF FINACC<>0
+FINDG1: JSR     FINTEN          ;ADD IT TO THE INTEGER.
+        BCS     FINDG2          ;NO ROOM.
+        PLA
+        JMP     FINC
+FINDG2: JSR     FINFLO          ;FLOAT THE INTEGER.
+        JSR     MUL10
+.ENDIF
         PLA                     ;GET IT BACK.
         SEC
         SBC     #'0'
@@ -6188,6 +7057,95 @@ MLEX10: ASL     A               ;MULT BY 2 TWICE
         SBC     #'0'
 MLEXMI: STA     TENEXP          ;SAVE RESULT.
         JMP     FINEC
+.IF FINACC<>0
+;
+; FINTEN MULTIPLIES THE INTEGER IN THE MANTISSA OF THE FAC BY TEN
+; AND ADDS THE DIGIT IN ACCA. C=1 IF THE FAC IS FLOATED ALREADY
+; OR THE RESULT MIGHT NOT FIT.
+;
+FINTEN: LDX     FACEXP
+        CPX     #$01            ;STILL AN INTEGER?
+        BCS     FINTRT          ;NO.
+        LDX     FACHO
+        CPX     #$19            ;WILL TEN TIMES IT FIT?
+        BCS     FINTRT          ;MAYBE NOT.
+        AND     #$0F            ;GET THE VALUE OF THE DIGIT.
+        TAY
+        LDA     FACLO           ;COPY THE INTEGER INTO ARG.
+        STA     ARGLO
+        LDA     FACMO
+        STA     ARGMO
+.IF ADDPRC<>0
+        LDA     FACMOH
+        STA     ARGMOH
+.ENDIF
+        LDA     FACHO
+        STA     ARGHO
+        LDX     #$02
+FINTN1: ASL     FACLO           ;MULTIPLY BY FOUR.
+        ROL     FACMO
+.IF ADDPRC<>0
+        ROL     FACMOH
+.ENDIF
+        ROL     FACHO
+        DEX
+        BNE     FINTN1
+        CLC                     ;ADD IN THE COPY.
+        LDA     FACLO
+        ADC     ARGLO
+        STA     FACLO
+        LDA     FACMO
+        ADC     ARGMO
+        STA     FACMO
+.IF ADDPRC<>0
+        LDA     FACMOH
+        ADC     ARGMOH
+        STA     FACMOH
+.ENDIF
+        LDA     FACHO
+        ADC     ARGHO
+        ASL     FACLO           ;AND NOW BY TEN.
+        ROL     FACMO
+.IF ADDPRC<>0
+        ROL     FACMOH
+.ENDIF
+        ROL     A
+        STA     FACHO
+        TYA                     ;ADD THE DIGIT, C IS CLEAR.
+        ADC     FACLO
+        STA     FACLO
+        BCC     FINTN2
+        INC     FACMO
+        BNE     FINTN2
+.IF ADDPRC<>0
+        INC     FACMOH
+        BNE     FINTN2
+.ENDIF
+        INC     FACHO
+FINTN2: STX     FACOV           ;ZERO IT LIKE FLOAT.
+        CLC
+FINTRT: RTS
+;
+; FINFLO FLOATS THE INTEGER IN THE MANTISSA OF THE FAC UNLESS
+; IT IS FLOATED ALREADY. ZERO IS THE SAME EITHER WAY.
+;
+FINFLO: PHA
+        LDA     FACEXP
+        BNE     FINFL1          ;FLOATED ALREADY.
+        LDA     FACHO
+.IF ADDPRC<>0
+        ORA     FACMOH
+.ENDIF
+        ORA     FACMO
+        ORA     FACLO
+        BEQ     FINFL1          ;ZERO.
+        LDX     #152+8*ADDPRC   ;2^24 OR 2^32.
+        LDA     #$00
+        SEC                     ;POSITIVE.
+        JSR     FLOATB
+FINFL1: PLA
+        RTS
+.ENDIF
 ; SUBTTL        FLOATING POINT OUTPUT ROUTINE.
 
 .IF ADDPRC=0
@@ -6245,6 +7203,50 @@ FOUT1:  STA     FBUFFR-1,Y      ;STORE THE CHARACTER.
         LDA     #'0'            ;GET ZERO TO TYPE IF FAC=0.
         LDX     FACEXP
         JEQ     FOUT19
+.IF FOUTTB<>0
+        LDA     FACOV
+        BNE     FOUTFL          ;NOT EXACT.
+        CPX     #$81
+        BCC     FOUTFL          ;LESS THAN 1.
+        CPX     #$9E
+        BCS     FOUTFL          ;2^29 OR MORE.
+        TXA
+        EOR     #$FF
+        ADC     #$A1            ;NUMBER OF BITS BEHIND THE POINT.
+        LDX     #$03
+FOUTI1: CMP     #$08
+        BCC     FOUTI2
+        LDY     FACHO,X
+        BNE     FOUTFL          ;NOT AN INTEGER.
+        SBC     #$08
+        DEX
+        BPL     FOUTI1
+FOUTI2: TAY
+        LDA     FACHO,X
+        AND     FOUTMK,Y
+        BNE     FOUTFL
+        JSR     QINT
+        JSR     FOUTPR
+        LDA     #$00
+        STA     DECCNT          ;NO DECIMAL POINT
+        STA     TENEXP          ;AND NO EXPONENT.
+        JSR     FOUTEM
+        LDY     FBUFPT
+        INY
+        LDA     #'.'            ;FOULDY REMOVES IT AGAIN,
+        STA     FBUFFR-1,Y      ;BUT NOT THE ZEROES BEFORE IT.
+        STY     FBUFPT
+        JMP     FOULDY
+FOUTMK: .BYTE 0
+        .BYTE 1
+        .BYTE 3
+        .BYTE 7
+        .BYTE 15
+        .BYTE 31
+        .BYTE 63
+        .BYTE 127
+FOUTFL: LDX     FACEXP
+.ENDIF
         LDA     #$00
         CPX     #$80            ;IS NUMBER .LT. 1.0 ?
         BEQ     FOUT37          ;NO.
@@ -6302,7 +7304,15 @@ FOUT39: LDY     FBUFPT          ;GET POINTER TO OUTPUT.
         INY
         STA     FBUFFR-1,Y
 FOUT16: STY     FBUFPT          ;SAVE FOR LATER.
+.IF FOUTTB<>0
+FOUT8:  JSR     FOUTPR
+        JSR     FOUTEM
+        JMP     FOULDY
+        LDY     #$00
+.ENDIF
+.IF FOUTTB=0
 FOUT8:  LDY     #$00
+.ENDIF
 FOUTIM: LDX     #$80            ;FIRST PASS THRU, ACCX HAS MSB SET.
 FOUT2:  LDA     FACLO
         CLC
@@ -6491,6 +7501,138 @@ FDCEND:
         .BYTE 60
 TIMEND:
 .ENDIF
+.IF FOUTTB<>0
+;
+; GET THE INTEGER IN THE FAC AS FIVE PAIRS OF DECIMAL DIGITS
+; INTO ARGEXP THRU ARGLO, HIGH PAIR FIRST. EVERY BYTE OF THE
+; FAC ADDS UP ITS PAIRS FROM THE TABLES, ASSUMES ADDPRC.
+;
+FOUTPR: LDX     FACHO
+        LDA     FOT3P0,X
+        STA     ARGLO
+        LDA     FOT3P1,X
+        STA     ARGMO
+        LDA     FOT3P2,X
+        STA     ARGMOH
+        LDA     FOT3P3,X
+        STA     ARGHO
+        LDA     FOT3P4,X
+        STA     ARGEXP
+        LDX     FACMOH
+        CLC
+        LDA     FOT2P0,X
+        ADC     ARGLO
+        CMP     #$64            ;A PAIR IS LESS THAN 100.
+        BCC     FOUTA1
+        SBC     #$64            ;LEAVES C ON FOR THE NEXT PAIR.
+FOUTA1: STA     ARGLO
+        LDA     FOT2P1,X
+        ADC     ARGMO
+        CMP     #$64
+        BCC     FOUTA2
+        SBC     #$64
+FOUTA2: STA     ARGMO
+        LDA     FOT2P2,X
+        ADC     ARGMOH
+        CMP     #$64
+        BCC     FOUTA3
+        SBC     #$64
+FOUTA3: STA     ARGMOH
+        LDA     FOT2P3,X
+        ADC     ARGHO
+        CMP     #$64
+        BCC     FOUTA4
+        SBC     #$64
+FOUTA4: STA     ARGHO
+        LDY     #$00
+        JSR     FOUTCY
+        LDX     FACMO
+        LDA     FOT1P0,X
+        ADC     ARGLO
+        CMP     #$64
+        BCC     FOUTA5
+        SBC     #$64
+FOUTA5: STA     ARGLO
+        LDA     FOT1P1,X
+        ADC     ARGMO
+        CMP     #$64
+        BCC     FOUTA6
+        SBC     #$64
+FOUTA6: STA     ARGMO
+        LDA     FOT1P2,X
+        ADC     ARGMOH
+        CMP     #$64
+        BCC     FOUTA7
+        SBC     #$64
+FOUTA7: STA     ARGMOH
+        LDY     #$01
+        JSR     FOUTCY
+        LDX     FACLO
+        LDA     FOT0P0,X
+        ADC     ARGLO
+        CMP     #$64
+        BCC     FOUTA8
+        SBC     #$64
+FOUTA8: STA     ARGLO
+        LDA     FOT0P1,X
+        ADC     ARGMO
+        CMP     #$64
+        BCC     FOUTA9
+        SBC     #$64
+FOUTA9: STA     ARGMO
+        LDY     #$02
+                                ;FALL INTO FOUTCY.
+;
+; ADD THE CARRY TO THE PAIRS FROM ARGEXP+[Y] UP.
+;
+FOUTCY: BCC     FOUTC2
+        LDA     ARGEXP,Y
+        ADC     #$00
+        CMP     #$64
+        BCC     FOUTC1
+        SBC     #$64
+FOUTC1: STA     ARGEXP,Y
+        DEY
+        BPL     FOUTCY
+FOUTC2: RTS
+;
+; PUT THE DIGITS OF THE PAIRS INTO FBUFFR LIKE FOUTYP,
+; BUT WITHOUT THE LEADING ZEROES.
+;
+FOUTEM: LDA     #$00
+        STA     ARGSGN          ;NO DIGIT YET.
+        TAX
+FOUTE1: LDY     ARGEXP,X
+        LDA     FOUTDT,Y        ;GET BOTH DIGITS OF THE PAIR.
+        PHA
+        LSR     A
+        LSR     A
+        LSR     A
+        LSR     A
+        JSR     FOUTED
+        PLA
+        AND     #$0F
+        JSR     FOUTED
+        INX
+        CPX     #$05
+        BNE     FOUTE1
+        RTS
+FOUTED: ORA     ARGSGN
+        BEQ     FOUTE3          ;A LEADING ZERO.
+        ORA     #'0'
+        LDY     FBUFPT
+        INY
+        STA     FBUFFR-1,Y
+        LDA     #'0'
+        STA     ARGSGN
+        DEC     DECCNT
+        BNE     FOUTE2          ;NOT TIME FOR DP YET.
+        LDA     #'.'
+        INY
+        STA     FBUFFR-1,Y      ;STORE DP.
+FOUTE2: STY     FBUFPT
+FOUTE3: RTS
+.ENDIF
 
 ; SUBTTL        EXPONENTIATION AND SQUARE ROOT FUNCTION.
         ;SQUARE ROOT FUNCTION --- SQR(A)
@@ -6671,8 +7813,15 @@ SWAPLP: LDA     ARGEXP,X
         STA     FACOV
         JSR     FSUBT
         JSR     NEGOP           ;NEGATE FAC.
+.IF TRNTAB=0
         LDWDI   EXPCON
         JSR     POLY
+.ENDIF
+.IF TRNTAB<>0
+        LDX     #$85            ;8 INTERVALS PER UNIT.
+        LDWDI   EXPTBL
+        JSR     TBLPOL
+.ENDIF
         CLR     ARISGN          ;MULTIPLY BY POSITIVE 1.0.
         PLA                     ;GET SCALE FACTOR.
         JSR     MLDEXP          ;MODIFY FACEXP AND CHECK FOR OVERFLOW.
@@ -6720,6 +7869,320 @@ POLY4:  STWD    POLYPT
         DEC     DEGREE          ;DONE?
         BNE     POLY2
 RANDRT: RTS                     ;YES.
+.IF TRNTAB<>0
+;
+; EVALUATE THE PIECEWISE POLYNOMIAL OF THE TABLE AT [Y,A] FOR
+; A POSITIVE FAC. [X] IS 210 MINUS LOG2 OF THE INTERVALS PER UNIT.
+; EACH INTERVAL HAS THE NEGATIVE OF ITS START FOLLOWED BY ITS
+; POLYNOMIAL IN THE FORMAT OF "POLY", OF DEGREE 7 AT MOST.
+; A ZERO ENDS THE TABLE, BEYOND IT THE LAST INTERVAL IS USED.
+;
+TBLPOL: STWD    POLYPT
+        TXA
+        SEC
+        SBC     FACEXP          ;SHIFTS TO GET THE INTERVAL FROM FACHO.
+        TAY
+        LDA     FACHO
+        INY
+TBLPL1: DEY
+        BEQ     TBLPL2
+        LSR     A
+        BNE     TBLPL1          ;ZERO IN THE FIRST INTERVAL.
+TBLPL2: TAX                     ;NUMBER OF INTERVALS TO SKIP.
+TBLPL3: DEX
+        BMI     TBLPL4
+        LDY     #$05
+        LDA     (POLYPT),Y              ;GET THE DEGREE.
+        STA     DEGREE
+        ASL     A
+        ASL     A
+        ADC     DEGREE          ;FIVE BYTES FOR EACH COEFFICIENT
+        ADC     #$0B            ;AND ELEVEN FOR THE REST.
+        TAY
+        LDA     (POLYPT),Y              ;END OF THE TABLE?
+        BEQ     TBLPL4          ;YES, USE THE LAST INTERVAL.
+        TYA
+        ADC     POLYPT          ;CARRY IS OFF.
+        STA     POLYPT
+        BCC     TBLPL3
+        INC     POLYPT+1
+        BNE     TBLPL3          ;ALWAYS.
+TBLPL4: LDWD    POLYPT
+        JSR     FADD            ;SUBTRACT THE START OF THE INTERVAL.
+        LDWD    POLYPT
+        CLC
+        ADC     #$05            ;POINT TO THE POLYNOMIAL.
+        BCC     TBLPL5
+        INY
+TBLPL5: JMP     POLY
+.ENDIF
+.IF TRNTAB<>0
+;
+; THE POLYNOMIALS INTERPOLATE THE FUNCTION AT THE CHEBYSHEV
+; NODES OF EACH INTERVAL. THE FIRST INTERVAL OF A FUNCTION WHICH
+; IS ZERO AT ZERO HAS NO CONSTANT TERM TO KEEP SMALL RESULTS EXACT.
+;
+SINTBL:                         ;SIN(2*PI*X), 8 INTERVALS OF .03125.
+  .BYTE $00,$00,$00,$00,$00     ; 0
+  .BYTE 5                       ;DEGREE
+  .BYTE $87,$22,$9A,$37,$14     ; 81.301201463
+  .BYTE $7A,$33,$98,$11,$35     ; .010961548618
+  .BYTE $86,$A5,$5E,$0A,$BC     ; -41.341837823
+  .BYTE $6C,$14,$71,$E3,$5E     ; 5.5300025492E-07
+  .BYTE $83,$49,$0F,$DA,$A2     ; 6.2831853069
+  .BYTE $00,$00,$00,$00,$00     ; 0
+  .BYTE $7C,$80,$00,$00,$00     ; -.03125
+  .BYTE 5                       ;DEGREE
+  .BYTE $87,$1C,$21,$03,$3D     ; 78.064477831
+  .BYTE $84,$4B,$E3,$7E,$E6     ; 12.743040942
+  .BYTE $86,$A2,$31,$BB,$95     ; -40.548567131
+  .BYTE $82,$F6,$75,$76,$C3     ; -3.8509194283
+  .BYTE $83,$45,$32,$D6,$2B     ; 6.1624556389
+  .BYTE $7E,$47,$C5,$C1,$E3     ; .195090322
+  .BYTE $7D,$80,$00,$00,$00     ; -.0625
+  .BYTE 5                       ;DEGREE
+  .BYTE $87,$0F,$E3,$A7,$0C     ; 71.944633842
+  .BYTE $85,$47,$D0,$79,$88     ; 24.976794302
+  .BYTE $86,$98,$C9,$8B,$1F     ; -38.196819767
+  .BYTE $83,$F1,$B9,$29,$BE     ; -7.553852912
+  .BYTE $83,$39,$C1,$CA,$C8     ; 5.8049062639
+  .BYTE $7F,$43,$EF,$15,$36     ; .38268343243
+  .BYTE $7D,$C0,$00,$00,$00     ; -.09375
+  .BYTE 5                       ;DEGREE
+  .BYTE $86,$7C,$3D,$70,$54     ; 63.05999881
+  .BYTE $86,$11,$00,$B8,$64     ; 36.250703394
+  .BYTE $86,$89,$82,$3E,$1B     ; -34.377190039
+  .BYTE $84,$AF,$76,$C4,$93     ; -10.966496062
+  .BYTE $83,$27,$2D,$48,$35     ; 5.2242775951
+  .BYTE $80,$0E,$39,$D9,$CE     ; .55557023315
+  .BYTE $7E,$80,$00,$00,$00     ; -.125
+  .BYTE 5                       ;DEGREE
+  .BYTE $86,$4F,$02,$0D,$58     ; 51.752004027
+  .BYTE $86,$38,$86,$AC,$B9     ; 46.13151826
+  .BYTE $85,$E9,$E4,$47,$55     ; -29.23646418
+  .BYTE $84,$DF,$52,$C0,$4C     ; -13.95770292
+  .BYTE $83,$0E,$2C,$18,$B2     ; 4.4428828694
+  .BYTE $80,$35,$04,$F3,$34     ; .70710678119
+  .BYTE $7E,$A0,$00,$00,$00     ; -.15625
+  .BYTE 5                       ;DEGREE
+  .BYTE $86,$19,$D2,$22,$13     ; 38.455208108
+  .BYTE $86,$58,$F5,$45,$FB     ; 54.239524767
+  .BYTE $85,$B7,$C7,$0F,$6F     ; -22.972197406
+  .BYTE $85,$83,$4C,$D8,$E7     ; -16.412523083
+  .BYTE $82,$5F,$68,$75,$67     ; 3.4907506471
+  .BYTE $80,$54,$DB,$31,$49     ; .83146961243
+  .BYTE $7E,$C0,$00,$00,$00     ; -.1875
+  .BYTE 5                       ;DEGREE
+  .BYTE $85,$3D,$71,$DE,$4F     ; 23.680599801
+  .BYTE $86,$71,$0D,$73,$BC     ; 60.263136804
+  .BYTE $84,$FD,$33,$B3,$15     ; -15.825121958
+  .BYTE $85,$91,$E4,$98,$9A     ; -18.236619189
+  .BYTE $82,$19,$E2,$D9,$A3     ; 2.4044708339
+  .BYTE $80,$6C,$83,$5E,$7A     ; .92387953261
+  .BYTE $7E,$E0,$00,$00,$00     ; -.21875
+  .BYTE 5                       ;DEGREE
+  .BYTE $83,$7F,$DE,$E6,$B0     ; 7.9959596097
+  .BYTE $86,$7F,$E2,$2B,$CF     ; 63.970870242
+  .BYTE $84,$81,$1E,$4B,$38     ; -8.0698959529
+  .BYTE $85,$9A,$E1,$0F,$2F     ; -19.359892242
+  .BYTE $81,$1C,$E6,$A3,$B0     ; 1.225788556
+  .BYTE $80,$7B,$14,$BE,$80     ; .98078528047
+  .BYTE 0                       ;END OF TABLE.
+ATNTBL:                         ;ATN(X), 8 INTERVALS OF .125.
+  .BYTE $00,$00,$00,$00,$00     ; 0
+  .BYTE 7                       ;DEGREE
+  .BYTE $7E,$85,$77,$C4,$0D     ; -.13033968286
+  .BYTE $78,$B9,$E2,$64,$21     ; -.0028363699394
+  .BYTE $7E,$4D,$13,$5E,$79     ; .2002691995
+  .BYTE $70,$D0,$99,$70,$B1     ; -1.2433491694E-05
+  .BYTE $7F,$AA,$AA,$A1,$B7     ; -.33333306655
+  .BYTE $64,$91,$46,$4C,$99     ; -2.1140237555E-09
+  .BYTE $81,$00,$00,$00,$00     ; 1
+  .BYTE $00,$00,$00,$00,$00     ; 0
+  .BYTE $7E,$80,$00,$00,$00     ; -.125
+  .BYTE 5                       ;DEGREE
+  .BYTE $7D,$61,$2D,$AC,$BD     ; .10995039894
+  .BYTE $7D,$7A,$B1,$F9,$E6     ; .1224097751
+  .BYTE $7F,$9B,$80,$65,$AD     ; -.30371396767
+  .BYTE $7D,$F8,$28,$24,$14     ; -.12117031275
+  .BYTE $80,$7C,$0F,$BE,$9E     ; .98461524351
+  .BYTE $7D,$7E,$AD,$D4,$DE     ; .1243549948
+  .BYTE $7F,$80,$00,$00,$00     ; -.25
+  .BYTE 5                       ;DEGREE
+  .BYTE $7A,$17,$65,$C3,$B7     ; .0092405711439
+  .BYTE $7E,$43,$38,$A1,$5D     ; .19064571505
+  .BYTE $7E,$E7,$A8,$19,$F4     ; -.22622719337
+  .BYTE $7E,$E2,$C1,$5B,$5D     ; -.22144072299
+  .BYTE $80,$70,$F0,$EE,$B1     ; .94117633649
+  .BYTE $7E,$7A,$DB,$AF,$CD     ; .24497866334
+  .BYTE $7F,$C0,$00,$00,$00     ; -.375
+  .BYTE 5                       ;DEGREE
+  .BYTE $7C,$F7,$A1,$5F,$59     ; -.060456631138
+  .BYTE $7E,$46,$C5,$7A,$16     ; .19411268958
+  .BYTE $7E,$85,$36,$9B,$A9     ; -.13009112567
+  .BYTE $7F,$93,$92,$8E,$FD     ; -.28822752798
+  .BYTE $80,$60,$70,$36,$ED     ; .87671225821
+  .BYTE $7F,$37,$B0,$CA,$10     ; .35877067037
+  .BYTE $80,$80,$00,$00,$00     ; -.5
+  .BYTE 5                       ;DEGREE
+  .BYTE $7D,$AB,$C4,$78,$BE     ; -.083870833681
+  .BYTE $7E,$1D,$ED,$05,$40     ; .15422447398
+  .BYTE $7C,$AE,$E6,$B2,$F9     ; -.042700480568
+  .BYTE $7F,$A3,$D6,$EC,$5E     ; -.31999910972
+  .BYTE $80,$4C,$CC,$CC,$A6     ; .79999999097
+  .BYTE $7F,$6D,$63,$38,$2B     ; .46364760899
+  .BYTE $80,$A0,$00,$00,$00     ; -.625
+  .BYTE 5                       ;DEGREE
+  .BYTE $7D,$9A,$1B,$64,$1C     ; -.075247556786
+  .BYTE $7D,$4E,$4F,$05,$9F     ; .10073665992
+  .BYTE $7B,$2F,$21,$9B,$93     ; .021378330093
+  .BYTE $7F,$A5,$79,$A6,$28     ; -.32319373358
+  .BYTE $80,$38,$17,$03,$47     ; .71910114749
+  .BYTE $80,$0F,$00,$5D,$5F     ; .55859931535
+  .BYTE $80,$C0,$00,$00,$00     ; -.75
+  .BYTE 5                       ;DEGREE
+  .BYTE $7C,$DE,$5C,$F2,$90     ; -.054287860403
+  .BYTE $7C,$5B,$17,$01,$60     ; .053488736507
+  .BYTE $7C,$76,$7B,$15,$08     ; .060175974038
+  .BYTE $7F,$9D,$49,$B5,$20     ; -.30720296875
+  .BYTE $80,$23,$D7,$0A,$C6     ; .6400000318
+  .BYTE $80,$24,$BC,$7D,$19     ; .64350110875
+  .BYTE $80,$E0,$00,$00,$00     ; -.875
+  .BYTE 5                       ;DEGREE
+  .BYTE $7C,$89,$91,$AB,$60     ; -.033586186823
+  .BYTE $7B,$21,$C8,$F0,$21     ; .019749135019
+  .BYTE $7D,$21,$06,$2A,$C6     ; .078625044029
+  .BYTE $7F,$8F,$B5,$97,$17     ; -.28068229824
+  .BYTE $80,$10,$FD,$BC,$7D     ; .56637170841
+  .BYTE $80,$38,$05,$3E,$2C     ; .71882999968
+  .BYTE 0                       ;END OF TABLE.
+LOGTBL:                         ;LOG2(1+2*X), 8 INTERVALS OF .0625.
+  .BYTE $00,$00,$00,$00,$00     ; 0
+  .BYTE 7                       ;DEGREE
+  .BYTE $85,$12,$40,$2D,$78     ; 18.281336725
+  .BYTE $84,$EB,$E7,$63,$54     ; -14.743991211
+  .BYTE $84,$13,$4E,$EB,$9D     ; 9.2067676671
+  .BYTE $83,$B8,$A5,$94,$E6     ; -5.7702126019
+  .BYTE $82,$76,$38,$36,$60     ; 3.8471809328
+  .BYTE $82,$B8,$AA,$3B,$11     ; -2.8853900591
+  .BYTE $82,$38,$AA,$3B,$29     ; 2.8853900814
+  .BYTE $00,$00,$00,$00,$00     ; 0
+  .BYTE $7D,$80,$00,$00,$00     ; -.0625
+  .BYTE 5                       ;DEGREE
+  .BYTE $82,$7A,$FD,$76,$7D     ; 3.9217201443
+  .BYTE $82,$E1,$76,$47,$3F     ; -3.5228441348
+  .BYTE $82,$2C,$C4,$58,$0F     ; 2.6994838854
+  .BYTE $82,$91,$E7,$E2,$07     ; -2.2797780102
+  .BYTE $82,$24,$25,$89,$1C     ; 2.5647909902
+  .BYTE $7E,$2E,$00,$D1,$D3     ; .16992500162
+  .BYTE $7E,$80,$00,$00,$00     ; -.125
+  .BYTE 5                       ;DEGREE
+  .BYTE $82,$18,$16,$6E,$90     ; 2.3763691336
+  .BYTE $82,$94,$80,$BA,$F1     ; -2.3203570703
+  .BYTE $81,$7B,$F4,$25,$25     ; 1.968388217
+  .BYTE $81,$EC,$5E,$5D,$A5     ; -1.8466298156
+  .BYTE $82,$13,$BB,$62,$16     ; 2.3083119597
+  .BYTE $7F,$24,$D3,$C2,$5F     ; .32192809496
+  .BYTE $7E,$C0,$00,$00,$00     ; -.1875
+  .BYTE 5                       ;DEGREE
+  .BYTE $81,$40,$EE,$B8,$59     ; 1.5072851595
+  .BYTE $81,$CB,$75,$C7,$E3     ; -1.589531885
+  .BYTE $81,$3D,$53,$CB,$7C     ; 1.4791197162
+  .BYTE $81,$C3,$58,$BA,$AC     ; -1.5261452999
+  .BYTE $82,$06,$4D,$42,$0B     ; 2.0984654529
+  .BYTE $7F,$6B,$3A,$9F,$02     ; .45943161868
+  .BYTE $7F,$80,$00,$00,$00     ; -.25
+  .BYTE 5                       ;DEGREE
+  .BYTE $80,$7E,$3C,$BF,$32     ; .99311442347
+  .BYTE $81,$8F,$FC,$C6,$35     ; -1.1249015578
+  .BYTE $81,$11,$D8,$DC,$CD     ; 1.1394306184
+  .BYTE $81,$A4,$25,$4F,$F9     ; -1.2823886839
+  .BYTE $81,$76,$38,$4E,$93     ; 1.9235933512
+  .BYTE $80,$15,$C0,$1A,$3A     ; .58496250072
+  .BYTE $7F,$A0,$00,$00,$00     ; -.3125
+  .BYTE 5                       ;DEGREE
+  .BYTE $80,$2C,$FC,$BE,$03     ; .67573154042
+  .BYTE $80,$D1,$75,$7A,$4B     ; -.81819881755
+  .BYTE $80,$65,$71,$DF,$4B     ; .89626880246
+  .BYTE $81,$8B,$DD,$31,$50     ; -1.0926877633
+  .BYTE $81,$63,$47,$AB,$15     ; 1.7756246426
+  .BYTE $80,$33,$50,$04,$72     ; .70043971809
+  .BYTE $7F,$C0,$00,$00,$00     ; -.375
+  .BYTE 5                       ;DEGREE
+  .BYTE $7F,$71,$FC,$15,$0D     ; .47262635978
+  .BYTE $80,$9B,$F4,$7E,$9D     ; -.60919944127
+  .BYTE $80,$37,$B7,$CD,$03     ; .71764832805
+  .BYTE $80,$F1,$31,$BF,$F5     ; -.94216537219
+  .BYTE $81,$53,$0B,$B1,$34     ; 1.6487943176
+  .BYTE $80,$4E,$AE,$CF,$EB     ; .80735492217
+  .BYTE $7F,$E0,$00,$00,$00     ; -.4375
+  .BYTE 5                       ;DEGREE
+  .BYTE $7F,$2D,$57,$31,$15     ; .33855584508
+  .BYTE $7F,$EC,$F9,$36,$BD     ; -.46283885057
+  .BYTE $80,$15,$60,$70,$5E     ; .58350279136
+  .BYTE $80,$D2,$1B,$72,$37     ; -.82073129504
+  .BYTE $81,$44,$F9,$D8,$9F     ; 1.5388747002
+  .BYTE $80,$68,$29,$FB,$69     ; .90689059556
+  .BYTE 0                       ;END OF TABLE.
+EXPTBL:                         ;2^X, 8 INTERVALS OF .125.
+  .BYTE $00,$00,$00,$00,$00     ; 0
+  .BYTE 4                       ;DEGREE
+  .BYTE $7A,$24,$92,$B7,$5B     ; .010044745501
+  .BYTE $7C,$63,$26,$FB,$71     ; .055457098191
+  .BYTE $7E,$75,$FE,$7D,$4C     ; .24022861267
+  .BYTE $80,$31,$72,$17,$6A     ; .69314714754
+  .BYTE $81,$00,$00,$00,$00     ; 1
+  .BYTE $7E,$80,$00,$00,$00     ; -.125
+  .BYTE 4                       ;DEGREE
+  .BYTE $7A,$33,$77,$DF,$2F     ; .010953872636
+  .BYTE $7C,$77,$B6,$18,$83     ; .060476394414
+  .BYTE $7F,$06,$21,$15,$77     ; .26197115972
+  .BYTE $80,$41,$81,$81,$07     ; .75588232442
+  .BYTE $81,$0B,$95,$C1,$E4     ; 1.0905077327
+  .BYTE $7F,$80,$00,$00,$00     ; -.25
+  .BYTE 4                       ;DEGREE
+  .BYTE $7A,$43,$B6,$25,$C9     ; .01194528284
+  .BYTE $7D,$07,$10,$C7,$E8     ; .065949975746
+  .BYTE $7F,$12,$44,$DA,$FF     ; .28568157542
+  .BYTE $80,$53,$05,$07,$FB     ; .82429551962
+  .BYTE $81,$18,$37,$F0,$52     ; 1.1892071152
+  .BYTE $7F,$C0,$00,$00,$00     ; -.375
+  .BYTE 4                       ;DEGREE
+  .BYTE $7A,$55,$6C,$C7,$81     ; .01302642329
+  .BYTE $7D,$13,$4A,$3F,$37     ; .071918958536
+  .BYTE $7F,$1F,$81,$E7,$88     ; .31153796706
+  .BYTE $80,$66,$1E,$5A,$2B     ; .8989006381
+  .BYTE $81,$25,$FE,$D6,$AA     ; 1.2968395548
+  .BYTE $80,$80,$00,$00,$00     ; -.5
+  .BYTE 4                       ;DEGREE
+  .BYTE $7A,$68,$BD,$D4,$92     ; .014205415333
+  .BYTE $7D,$20,$9E,$F4,$2F     ; .078428180394
+  .BYTE $7F,$2D,$F1,$B0,$43     ; .33973456209
+  .BYTE $80,$7A,$F2,$31,$D4     ; .98025809694
+  .BYTE $81,$35,$04,$F3,$34     ; 1.4142135624
+  .BYTE $80,$A0,$00,$00,$00     ; -.625
+  .BYTE 4                       ;DEGREE
+  .BYTE $7A,$7D,$CE,$72,$57     ; .015491115246
+  .BYTE $7D,$2F,$28,$89,$81     ; .085526537179
+  .BYTE $7F,$3D,$AF,$F8,$3C     ; .370483167
+  .BYTE $81,$08,$D4,$4E,$15     ; 1.0689790347
+  .BYTE $81,$45,$67,$2A,$12     ; 1.5422108257
+  .BYTE $80,$C0,$00,$00,$00     ; -.75
+  .BYTE 4                       ;DEGREE
+  .BYTE $7B,$0A,$63,$91,$7C     ; .016893180989
+  .BYTE $7D,$3F,$02,$F3,$D5     ; .093267350137
+  .BYTE $7F,$4E,$DB,$05,$BD     ; .40401475842
+  .BYTE $81,$15,$36,$A3,$31     ; 1.1657299032
+  .BYTE $81,$57,$44,$FC,$CB     ; 1.6817928306
+  .BYTE $80,$E0,$00,$00,$00     ; -.875
+  .BYTE 4                       ;DEGREE
+  .BYTE $7B,$16,$EA,$09,$89     ; .018422144531
+  .BYTE $7D,$50,$4C,$AF,$90     ; .10170876654
+  .BYTE $7F,$61,$93,$DC,$87     ; .44058121822
+  .BYTE $81,$22,$B7,$E8,$D8     ; 1.2712374739
+  .BYTE $81,$6A,$C0,$C6,$E8     ; 1.8340080865
+  .BYTE 0                       ;END OF TABLE.
+.ENDIF
 
         ;PSUEDO-RANDOM NUMBER GENERATOR.
         ;IF ARG=0, THE LAST RANDOM NUMBER GENERATED IS RETURNED.
@@ -6836,8 +8299,24 @@ SIN2:   LDWDI   FR4             ;POINTER TO 1/4.
         PLA                     ;GET ORIGINAL QUADRANT.
         BPL     SIN3
         JSR     NEGOP           ;IF NEGATIVE, NEGATE RESULT.
+.IF TRNTAB=0
 SIN3:   LDWDI   SINCON
 GPOLYX: JMP     POLYX           ;DO APPROXIMATION POLYNOMIAL.
+.ENDIF
+.IF TRNTAB<>0
+SIN3:   JSR     MOV1F           ;TAN GETS THE REDUCED ARGUMENT FROM TEMPF1.
+        LDA     FACSGN          ;USE SIN(-X)=-SIN(X).
+        PHA
+        LDA     #$00
+        STA     FACSGN
+        LDX     #$83            ;32 INTERVALS PER UNIT.
+        LDWDI   SINTBL
+        JSR     TBLPOL
+        PLA
+        BPL     SIN4
+        JMP     NEGOP           ;NEGATE THE RESULT.
+SIN4:   RTS
+.ENDIF
 
 
         ;TANGENT FUNCTION.
@@ -6959,8 +8438,15 @@ ATN1:   LDA     FACEXP
         LDWDI   FONE            ;GET PNTR TO 1.0 .
         JSR     FDIV            ;COMPUTE RECIPROCAL.
                                 ;USE ARCTAN(X)=PI/2-ARCTAN(1/X) .
+.IF TRNTAB=0
 ATN2:   LDWDI   ATNCON          ;PNTR TO ARCTAN CONSTANTS.
         JSR     POLYX
+.ENDIF
+.IF TRNTAB<>0
+ATN2:   LDX     #$85            ;8 INTERVALS PER UNIT.
+        LDWDI   ATNTBL
+        JSR     TBLPOL
+.ENDIF
         PLA
         CMP     #$81            ;WAS ORIGINAL ARGUMENT .LT. 1 ?
         BCC     ATN3            ;YES.
@@ -7075,6 +8561,98 @@ ATNCON: .BYTE 11        ;DEGREE-1.
         .BYTE 0
 .ENDIF
 .ENDIF
+.IF QSQMUL<>0
+;
+; QSQ1L AND QSQ1H HOLD THE LOW AND HIGH ORDER OF X*X/4
+; FOR X=0 THRU 511, QSQ2L AND QSQ2H THE SAME FOR X-255.
+;
+  .IF (* & 255) <> 0
+    .RES 256 - (* & 255)
+  .ENDIF
+QSQ1L:
+.REPEAT 512,I
+  .BYTE <(I*I/4)
+.ENDREP
+QSQ1H:
+.REPEAT 512,I
+  .BYTE >(I*I/4)
+.ENDREP
+QSQ2L:
+.REPEAT 512,I
+  .BYTE <((I-255)*(I-255)/4)
+.ENDREP
+QSQ2H:
+.REPEAT 512,I
+  .BYTE >((I-255)*(I-255)/4)
+.ENDREP
+.ENDIF
+.IF FOUTTB<>0
+;
+; FOTKPJ HOLDS PAIR J OF THE DECIMAL DIGITS OF X*256^K, X IS THE
+; VALUE OF BYTE K OF THE INTEGER IN THE FAC (K=0 IS FACLO).
+; FOUTDT HOLDS BOTH DIGITS OF X=0 THRU 99 AS TWO NIBBLES.
+;
+FOT3P0:
+.REPEAT 60,I
+  .BYTE (I*16777216) .MOD 100
+.ENDREP
+FOT3P1:
+.REPEAT 60,I
+  .BYTE (I*16777216/100) .MOD 100
+.ENDREP
+FOT3P2:
+.REPEAT 60,I
+  .BYTE (I*16777216/10000) .MOD 100
+.ENDREP
+FOT3P3:
+.REPEAT 60,I
+  .BYTE (I*16777216/1000000) .MOD 100
+.ENDREP
+FOT3P4:
+.REPEAT 60,I
+  .BYTE I*16777216/100000000
+.ENDREP
+FOT2P0:
+.REPEAT 256,I
+  .BYTE (I*65536) .MOD 100
+.ENDREP
+FOT2P1:
+.REPEAT 256,I
+  .BYTE (I*65536/100) .MOD 100
+.ENDREP
+FOT2P2:
+.REPEAT 256,I
+  .BYTE (I*65536/10000) .MOD 100
+.ENDREP
+FOT2P3:
+.REPEAT 256,I
+  .BYTE I*65536/1000000
+.ENDREP
+FOT1P0:
+.REPEAT 256,I
+  .BYTE (I*256) .MOD 100
+.ENDREP
+FOT1P1:
+.REPEAT 256,I
+  .BYTE (I*256/100) .MOD 100
+.ENDREP
+FOT1P2:
+.REPEAT 256,I
+  .BYTE I*256/10000
+.ENDREP
+FOT0P0:
+.REPEAT 256,I
+  .BYTE I .MOD 100
+.ENDREP
+FOT0P1:
+.REPEAT 256,I
+  .BYTE I/100
+.ENDREP
+FOUTDT:
+.REPEAT 100,I
+  .BYTE I/10*16+I .MOD 10
+.ENDREP
+.ENDIF
 ; SUBTTL        SYSTEM INITIALIZATION CODE.
 ; THIS INITIALIZES THE BASIC INTERPRETER FOR THE M6502 AND SHOULD BE
 ; LOCATED WHERE IT WILL BE WIPED OUT IN RAM IF CODE IS ALL IN RAM.
@@ -7180,6 +8758,10 @@ MOVCHG: LDA     INITAT-1,X
 .ENDIF
         LDX     #TEMPST
         STX     TEMPPT          ;SET UP STRING TEMPORARIES.
+.IF MEMTOP<>0
+        LDWDI   MEMTOP          ;SIZE OF MEMORY IS KNOWN.
+.ENDIF
+.IF MEMTOP=0
 .IF (REALIO|LONGI)<>0
 .IF REALIO<>3
         LDWDI   MEMORY
@@ -7252,6 +8834,7 @@ USEDE9: JSR     CHRGOT          ;GET CURRENT CHARACTER.
 USEDEC: LDWD    LINNUM          ;GET SIZE OF MEMORY INPUT.
 USEDEF:                         ;HIGHEST ADDRESS.
 .ENDIF
+.ENDIF
 .IF (REALIO|LONGI)=0
         LDWDI   16190           ;A STRANGE NUMBER.
 .ENDIF
@@ -7329,6 +8912,7 @@ HAVFNS:
 .ENDIF
 QROOM:  LDWD    TXTTAB          ;PREPARE TO USE "REASON".
         JSR     REASON
+.IF MEMTOP=0
 .IF REALIO=3
         LDWDI   FREMES
         JSR     STROUT
@@ -7345,6 +8929,7 @@ QROOM:  LDWD    TXTTAB          ;PREPARE TO USE "REASON".
         JSR     LINPRT          ;TYPE THIS VALUE.
         LDWDI   WORDS           ;MORE BULLSHIT.
         JSR     STROUT
+.ENDIF
         JSR     SCRTCH          ;SET UP EVERYTHING ELSE.
 .IF REALIO=3
         JMP     READY
@@ -7377,6 +8962,7 @@ TTYWID:
         DT"WIDTH"
         .BYTE 0
 .ENDIF
+.IF MEMTOP=0
 WORDS:  DT" BYTES FREE"
 .IF REALIO<>3
         ACRLF
@@ -7413,6 +8999,7 @@ DT"STM BASIC V1.1"
         ACRLF
 .ENDIF
         .BYTE 0
+.ENDIF
 .IF ROMSW=0
 LASTWR:
         .RES 100                ;SPACE FOR TEMP STACK.